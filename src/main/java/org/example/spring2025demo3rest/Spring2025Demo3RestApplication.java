@@ -2,8 +2,10 @@ package org.example.spring2025demo3rest;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 
 @SpringBootApplication
+@EnableCaching
 public class Spring2025Demo3RestApplication {
 
     public static void main(String[] args) {
@@ -0,0 +1,44 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.spring2025demo3rest.controllers.RESTNouns;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Puts the {@link DbAdmissionFilter} in front of the API, sized from app.db.admission.* in application.properties.
+ * Off unless enabled, which by default follows spring.threads.virtual.enabled: platform threads are already
+ * bounded by Tomcat's pool. Actuator endpoints are left out so health checks and scrapes still answer under load.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.db.admission.enabled", havingValue = "true")
+public class DbAdmissionConfig {
+
+    /**
+     * Registers the admission filter for /v1 requests; see the filter for the routes it lets through.
+     *
+     * @param maxConcurrent requests allowed to run at once, by default the connection pool size
+     * @param maxQueue requests allowed to wait for a permit
+     * @param queueTimeout how long a request may wait for a permit
+     * @param retryAfter the Retry-After sent with a 503
+     * @param registry the meter registry
+     * @return the filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<DbAdmissionFilter> dbAdmissionFilter(
+            @Value("${app.db.admission.max-concurrent:${spring.datasource.hikari.maximum-pool-size:10}}") int maxConcurrent,
+            @Value("${app.db.admission.max-queue:200}") int maxQueue,
+            @Value("${app.db.admission.queue-timeout:1s}") Duration queueTimeout,
+            @Value("${app.db.admission.retry-after:1s}") Duration retryAfter,
+            MeterRegistry registry) {
+        FilterRegistrationBean<DbAdmissionFilter> registration = new FilterRegistrationBean<>(
+                new DbAdmissionFilter(maxConcurrent, maxQueue, queueTimeout, retryAfter, registry));
+        registration.addUrlPatterns(RESTNouns.VERSION_1 + "/*");
+        return registration;
+    }
+}
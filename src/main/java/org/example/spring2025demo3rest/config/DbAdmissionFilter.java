@@ -0,0 +1,214 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.spring2025demo3rest.controllers.RESTNouns;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps the number of API requests that run at once, so excess requests wait here or are turned
+ * away instead of piling up on the connection pool.
+ * <p>
+ * With open-session-in-view a request holds its connection from first use to the end of the
+ * request, so one permit per request matches one connection. With read/write routing on,
+ * connections go back to the pool after each transaction and reads spread over the replicas,
+ * so fewer requests hold a primary connection at any time than hold a permit; size
+ * max-concurrent from the measured db.admission.active and hikaricp.connections.active there.
+ * Without a limit, platform threads queue in Tomcat and virtual threads queue on the pool,
+ * where a timeout surfaces as a 500. Here a request waits at most the queue timeout, behind at
+ * most max-queue others, and is otherwise answered 503 with Retry-After. Streaming responses
+ * keep their permit until the asynchronous part completes.
+ * <p>
+ * Routes that answer from memory (book statistics, analytics, write-behind and asynchronous
+ * deletes that only queue work) skip the filter, as do exports and imports, which stream for
+ * as long as the client sends or reads and would hold a permit meant for short requests.
+ * Idempotent replays are answered by the idempotency filter before they get here. Cached reads
+ * still take a permit, as a miss is only known inside the handler.
+ */
+public class DbAdmissionFilter extends OncePerRequestFilter {
+
+    private static final List<String> EXEMPT_PATHS = List.of(
+            RESTNouns.VERSION_1 + RESTNouns.STATS,
+            RESTNouns.VERSION_1 + RESTNouns.ANALYTICS,
+            RESTNouns.VERSION_1 + RESTNouns.EXPORT,
+            RESTNouns.VERSION_1 + RESTNouns.IMPORT);
+
+    /**
+     * Routes that only queue work when called with async=true. Every other route takes a permit, whatever its
+     * parameters say.
+     */
+    private static final List<AsyncWrite> ASYNC_WRITES = List.of(
+            AsyncWrite.of(HttpMethod.POST, RESTNouns.VERSION_1 + RESTNouns.USER + RESTNouns.ID + RESTNouns.HOME),
+            AsyncWrite.of(HttpMethod.POST, RESTNouns.VERSION_1 + RESTNouns.USER + RESTNouns.ID + RESTNouns.AUTO),
+            AsyncWrite.of(HttpMethod.DELETE, RESTNouns.VERSION_1 + RESTNouns.USER + RESTNouns.BATCH));
+
+    private final Semaphore permits;
+    private final int maxQueue;
+    private final long queueTimeoutNanos;
+    private final String retryAfterSeconds;
+    private final Timer waitTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    /**
+     * Creates the filter and registers its meters: db.admission.active, db.admission.queued,
+     * db.admission.wait and db.admission.rejected (tagged by reason).
+     *
+     * @param maxConcurrent requests allowed to run at once, normally the connection pool size
+     * @param maxQueue requests allowed to wait for a permit, further ones are rejected at once
+     * @param queueTimeout how long a request may wait for a permit, zero to never wait
+     * @param retryAfter the Retry-After sent with a rejection
+     * @param registry the meter registry
+     */
+    public DbAdmissionFilter(int maxConcurrent, int maxQueue, Duration queueTimeout, Duration retryAfter,
+                             MeterRegistry registry) {
+        //Fair, so waiting requests are admitted in arrival order
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxQueue = maxQueue;
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        this.retryAfterSeconds = Long.toString(Math.max(1, retryAfter.toSeconds()));
+        Gauge.builder("db.admission.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("Requests holding a database admission permit").register(registry);
+        Gauge.builder("db.admission.queued", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for a database admission permit").register(registry);
+        this.waitTimer = Timer.builder("db.admission.wait")
+                .description("Time spent waiting for a database admission permit")
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+        this.rejectedQueueFull = Counter.builder("db.admission.rejected").tag("reason", "queue_full")
+                .description("Requests answered 503 because the database was saturated").register(registry);
+        this.rejectedTimeout = Counter.builder("db.admission.rejected").tag("reason", "timeout")
+                .description("Requests answered 503 because the database was saturated").register(registry);
+    }
+
+    /**
+     * Lets requests that do not need a database permit through without one.
+     *
+     * @param request the request
+     * @return true for the exempt paths and for asynchronous writes, which only queue work
+     */
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (EXEMPT_PATHS.stream().anyMatch(path::startsWith)) {
+            return true;
+        }
+        if (!"true".equals(request.getParameter("async"))) {
+            return false;
+        }
+        PathContainer container = PathContainer.parsePath(path);
+        return ASYNC_WRITES.stream().anyMatch(write -> write.matches(request.getMethod(), container));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!admit()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Database busy, retry later");
+            return;
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        Runnable release = () -> {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        };
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Takes a permit, waiting up to the queue timeout unless the queue is already full.
+     *
+     * @return true if the request may proceed
+     */
+    private boolean admit() {
+        try {
+            //Timed even without waiting: the untimed tryAcquire would barge past requests already queued
+            if (permits.tryAcquire(0, TimeUnit.NANOSECONDS)) {
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return true;
+            }
+            if (queueTimeoutNanos <= 0 || permits.getQueueLength() >= maxQueue) {
+                rejectedQueueFull.increment();
+                return false;
+            }
+            long start = System.nanoTime();
+            boolean admitted = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!admitted) {
+                rejectedTimeout.increment();
+            }
+            return admitted;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejectedTimeout.increment();
+            return false;
+        }
+    }
+
+    /**
+     * A route, by method and path template, whose async=true variant skips the filter.
+     */
+    private record AsyncWrite(HttpMethod method, PathPattern path) {
+        static AsyncWrite of(HttpMethod method, String template) {
+            return new AsyncWrite(method, PathPatternParser.defaultInstance.parse(template));
+        }
+
+        boolean matches(String requestMethod, PathContainer requestPath) {
+            return method.matches(requestMethod) && path.matches(requestPath);
+        }
+    }
+
+    /**
+     * Gives the permit back once a streaming response has been written, whatever the outcome.
+     */
+    private record ReleaseOnComplete(Runnable release) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.spring2025demo3rest.controllers.RESTNouns;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Puts the {@link IdempotencyFilter} in front of the API, sized from app.idempotency.* in application.properties.
+ * It runs before the {@link DbAdmissionFilter}, so replayed responses never wait for a database permit.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.idempotency.enabled", havingValue = "true", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    /**
+     * Registers the idempotency filter for every /v1 request.
+     *
+     * @param maxSize the total size of kept response bodies
+     * @param maxBodySize the largest request body a keyed request may carry
+     * @param ttl how long a response is kept
+     * @param waitTimeout how long a duplicate waits for the request that is still running
+     * @param registry the meter registry
+     * @return the filter registration
+     */
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(
+            @Value("${app.idempotency.max-size:64MB}") DataSize maxSize,
+            @Value("${app.idempotency.max-body-size:1MB}") DataSize maxBodySize,
+            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+            @Value("${app.idempotency.wait-timeout:10s}") Duration waitTimeout,
+            MeterRegistry registry) {
+        FilterRegistrationBean<IdempotencyFilter> registration = new FilterRegistrationBean<>(
+                new IdempotencyFilter(maxSize.toBytes(), Math.toIntExact(maxBodySize.toBytes()), ttl, waitTimeout, registry));
+        registration.addUrlPatterns(RESTNouns.VERSION_1 + "/*");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 10);
+        return registration;
+    }
+}
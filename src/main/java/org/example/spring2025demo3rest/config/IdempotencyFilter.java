@@ -0,0 +1,295 @@
+package org.example.spring2025demo3rest.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes POST requests that carry an Idempotency-Key header safe to retry.
+ * <p>
+ * The first request with a key runs normally and its successful response is kept; a retry with
+ * the same key, path, parameters and body gets that response back without reaching a controller
+ * or the database. The body is read up front to be hashed, so a keyed request may carry at most
+ * max-body-bytes; a larger one is answered 413 rather than replayed on a guess.
+ * A duplicate that arrives while the first is still running waits for it rather than running
+ * too. Responses that are not 2xx are not kept, so a failed request can be retried for real.
+ * <p>
+ * The store is a Caffeine cache: lock-striped like ConcurrentHashMap, bounded by the total size
+ * of the kept bodies and evicting keys a fixed time after the response was stored.
+ */
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String REPLAYED = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    /**
+     * Response headers kept with the body, besides the content type.
+     */
+    private static final String[] KEPT_HEADERS = {HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL};
+
+    private final Cache<String, CompletableFuture<StoredResponse>> store;
+    private final long waitTimeoutNanos;
+    private final int maxBodyBytes;
+
+    /**
+     * Creates the filter and registers the store's cache.* metrics under cache=idempotency,
+     * with the same tag keys as the Spring-managed caches so Prometheus accepts both.
+     *
+     * @param maxBytes the total size of kept response bodies
+     * @param maxBodyBytes the largest request body a keyed request may carry
+     * @param ttl how long a response is kept after it was stored
+     * @param waitTimeout how long a duplicate waits for the request that is still running
+     * @param registry the meter registry
+     */
+    public IdempotencyFilter(long maxBytes, int maxBodyBytes, Duration ttl, Duration waitTimeout,
+                             MeterRegistry registry) {
+        this.store = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CompletableFuture<StoredResponse> response) -> weightOf(key, response))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.waitTimeoutNanos = waitTimeout.toNanos();
+        this.maxBodyBytes = maxBodyBytes;
+        CaffeineCacheMetrics.monitor(registry, store, "idempotency",
+                Tags.of("cache.manager", "idempotency", "name", "idempotency"));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod()) || request.getHeader(IDEMPOTENCY_KEY) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String key = request.getHeader(IDEMPOTENCY_KEY);
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+                    IDEMPOTENCY_KEY + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+            return;
+        }
+        //Form bodies are parsed into the parameters, which only the container can still read
+        byte[] body = new byte[0];
+        if (!isForm(request)) {
+            if (request.getContentLengthLong() > maxBodyBytes
+                    || (body = request.getInputStream().readNBytes(maxBodyBytes + 1)).length > maxBodyBytes) {
+                response.sendError(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE,
+                        "Requests with an " + IDEMPOTENCY_KEY + " may carry at most " + maxBodyBytes + " bytes");
+                return;
+            }
+            request = new BufferedBodyRequest(request, body);
+        }
+        //Keys are scoped to the path, so the same key on two endpoints names two requests
+        String scope = request.getRequestURI() + ' ' + key;
+        String fingerprint = fingerprint(request, body);
+        while (true) {
+            CompletableFuture<StoredResponse> mine = new CompletableFuture<>();
+            CompletableFuture<StoredResponse> first = store.asMap().putIfAbsent(scope, mine);
+            if (first == null) {
+                execute(scope, fingerprint, mine, request, response, chain);
+                return;
+            }
+            StoredResponse stored;
+            try {
+                stored = first.get(waitTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                response.sendError(HttpServletResponse.SC_CONFLICT,
+                        "A request with this " + IDEMPOTENCY_KEY + " is still in progress or failed, retry later");
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                return;
+            }
+            if (stored == null) {
+                //The first request was not kept, so this one gets its own turn
+                continue;
+            }
+            if (!stored.fingerprint().equals(fingerprint)) {
+                response.sendError(422, IDEMPOTENCY_KEY + " was already used with different parameters");
+                return;
+            }
+            stored.writeTo(response);
+            return;
+        }
+    }
+
+    /**
+     * Runs the first request for a key, then keeps its response if it succeeded and hands it to any waiting duplicates.
+     */
+    private void execute(String scope, String fingerprint, CompletableFuture<StoredResponse> mine,
+                         HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        StoredResponse stored = null;
+        try {
+            chain.doFilter(request, wrapper);
+            int status = wrapper.getStatus();
+            if (status >= 200 && status < 300) {
+                stored = StoredResponse.of(fingerprint, wrapper);
+            }
+        } finally {
+            if (stored == null) {
+                store.asMap().remove(scope, mine);
+            } else {
+                //Put again so the store weighs the finished response rather than the empty placeholder
+                store.asMap().replace(scope, mine, CompletableFuture.completedFuture(stored));
+            }
+            mine.complete(stored);
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    /**
+     * Sums up what makes two requests with the same key the same request: the path, the parameters
+     * and a hash of the body.
+     */
+    private static String fingerprint(HttpServletRequest request, byte[] body) {
+        StringBuilder fingerprint = new StringBuilder(request.getRequestURI());
+        Map<String, String[]> parameters = new TreeMap<>(request.getParameterMap());
+        parameters.forEach((name, values) -> fingerprint.append('\n').append(name).append('=').append(Arrays.toString(values)));
+        if (body.length > 0) {
+            try {
+                fingerprint.append("\nbody=").append(HexFormat.of().formatHex(
+                        MessageDigest.getInstance("SHA-256").digest(body)));
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is required of every JVM", e);
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private static boolean isForm(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(MediaType.parseMediaType(contentType));
+    }
+
+    private static int weightOf(String key, CompletableFuture<StoredResponse> response) {
+        StoredResponse stored = response.getNow(null);
+        return key.length() + (stored == null ? 0 : stored.fingerprint().length() + stored.body().length);
+    }
+
+    /**
+     * The request with its body already read, handed to the controller from memory.
+     */
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BufferedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return in.read(buffer, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("The body was already read");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() == null ? StandardCharsets.UTF_8 : Charset.forName(getCharacterEncoding());
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+
+    /**
+     * A kept response: what is needed to send it again.
+     */
+    private record StoredResponse(String fingerprint, int status, String contentType, Map<String, String> headers,
+                                  byte[] body) {
+
+        static StoredResponse of(String fingerprint, ContentCachingResponseWrapper response) {
+            Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (String name : KEPT_HEADERS) {
+                String value = response.getHeader(name);
+                if (value != null) {
+                    headers.put(name, value);
+                }
+            }
+            return new StoredResponse(fingerprint, response.getStatus(), response.getContentType(), headers,
+                    response.getContentAsByteArray());
+        }
+
+        void writeTo(HttpServletResponse response) throws IOException {
+            response.setStatus(status);
+            if (contentType != null) {
+                response.setContentType(contentType);
+            }
+            headers.forEach(response::setHeader);
+            response.setHeader(REPLAYED, "true");
+            response.setContentLength(body.length);
+            response.getOutputStream().write(body);
+        }
+    }
+}
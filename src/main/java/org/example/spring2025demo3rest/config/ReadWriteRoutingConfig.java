@@ -0,0 +1,121 @@
+package org.example.spring2025demo3rest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single auto-configured data source with a primary and replicas routed by transaction type,
+ * when app.datasource.routing.enabled is set. See {@link ReadWriteRoutingDataSource}.
+ * <p>
+ * The primary is built from spring.datasource.*, the replicas from app.datasource.routing.replica-urls
+ * with the primary's driver and, unless overridden, its credentials. The URLs are an indexed list
+ * (replica-urls[0]=...), as JDBC URLs may contain commas.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.routing.enabled", havingValue = "true")
+public class ReadWriteRoutingConfig {
+
+    /**
+     * The pool for writes, configured like the auto-configured one.
+     *
+     * @param properties the spring.datasource.* properties
+     * @return the primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * The router between the primary and the replicas.
+     *
+     * @param primary the primary pool
+     * @param properties the spring.datasource.* properties, for the replicas' driver
+     * @param environment the environment, for the indexed list of replica JDBC URLs
+     * @param username the replicas' user name
+     * @param password the replicas' password
+     * @param poolSize connections per replica, by default the primary's pool size
+     * @param readYourWrites whether a request reads from the primary after it has written
+     * @param healthCheckInterval how often replicas out of rotation are retried
+     * @param registry the meter registry
+     * @return the routing data source, closed with the context
+     */
+    @Bean(destroyMethod = "close")
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(
+            HikariDataSource primary, DataSourceProperties properties,
+            Environment environment,
+            @Value("${app.datasource.routing.replica-username:${spring.datasource.username:}}") String username,
+            @Value("${app.datasource.routing.replica-password:${spring.datasource.password:}}") String password,
+            @Value("${app.datasource.routing.replica-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}") int poolSize,
+            @Value("${app.datasource.routing.read-your-writes:true}") boolean readYourWrites,
+            @Value("${app.datasource.routing.health-check-interval:5s}") Duration healthCheckInterval,
+            MeterRegistry registry) {
+        List<String> replicaUrls = Binder.get(environment)
+                .bind("app.datasource.routing.replica-urls", Bindable.listOf(String.class)).orElse(List.of());
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(poolSize);
+            //Fail fast so a dead replica costs one failover, not a request stuck on the pool
+            replica.setConnectionTimeout(Math.min(primary.getConnectionTimeout(), 2_000));
+            replicas.add(replica);
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, readYourWrites, healthCheckInterval, registry);
+    }
+
+    /**
+     * Gives the connection back after each transaction instead of holding it for the whole request,
+     * which is what open-session-in-view otherwise does, so every transaction is routed on its own.
+     *
+     * @return the customizer
+     */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    /**
+     * The data source used by JPA and JDBC. Connections are only fetched from the router at the first
+     * statement, once the transaction's read-only flag is known.
+     *
+     * @param router the routing data source
+     * @return the lazy proxy
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource router) {
+        return new LazyConnectionDataSourceProxy(router);
+    }
+}
@@ -0,0 +1,186 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections of read-only transactions to a replica and everything else to the primary.
+ * <p>
+ * The routing decision is made when a connection is requested, so this must sit behind a
+ * LazyConnectionDataSourceProxy: the transaction manager then only asks for the connection at
+ * the first statement, once the read-only flag of the transaction is known. Replicas are used
+ * round robin. A replica that fails to hand out a connection is taken out of rotation and the
+ * request falls back to the primary; a background check puts it back once it answers again.
+ * <p>
+ * With read-your-writes on, a request that has opened a write transaction keeps reading from
+ * the primary until it ends, so it never misses its own changes on a lagging replica. Work
+ * outside a web request, such as batch jobs, is not affected.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+
+    /**
+     * Request attribute set once the current request has written through the primary.
+     */
+    static final String WROTE_ATTRIBUTE = ReadWriteRoutingDataSource.class.getName() + ".WROTE";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final boolean readYourWrites;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService healthCheck = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "replica-health-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+    private final Counter failovers;
+
+    /**
+     * Creates the router and starts checking unhealthy replicas.
+     * @param primary the data source for writes, and for reads when no replica is usable
+     * @param replicas the data sources for read-only transactions, may be empty
+     * @param readYourWrites whether a request reads from the primary after it has written
+     * @param healthCheckInterval how often replicas out of rotation are retried
+     * @param registry the meter registry, for db.routing.connections, db.routing.failovers and db.routing.replicas.healthy
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, boolean readYourWrites,
+                                     Duration healthCheckInterval, MeterRegistry registry) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.readYourWrites = readYourWrites;
+        this.primaryConnections = Counter.builder("db.routing.connections").tag("target", "primary")
+                .description("Connections handed out, by target").register(registry);
+        this.replicaConnections = Counter.builder("db.routing.connections").tag("target", "replica")
+                .description("Connections handed out, by target").register(registry);
+        this.failovers = Counter.builder("db.routing.failovers")
+                .description("Read-only connections served by the primary because no replica was usable").register(registry);
+        Gauge.builder("db.routing.replicas.healthy", this, ReadWriteRoutingDataSource::healthyReplicas)
+                .description("Replicas in rotation").register(registry);
+        long interval = healthCheckInterval.toMillis();
+        healthCheck.scheduleWithFixedDelay(this::checkReplicas, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!routeToReplica()) {
+            return fromPrimary();
+        }
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaConnections.increment();
+                return connection;
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+                log.warn("Replica {} taken out of rotation: {}", replica.dataSource, e.getMessage());
+            }
+        }
+        failovers.increment();
+        return fromPrimary();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Routed connections use the credentials of each target data source");
+    }
+
+    /**
+     * Tells whether the connection being requested is for a read-only transaction that may see replica data.
+     */
+    private boolean routeToReplica() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return false;
+        }
+        if (!readYourWrites) {
+            return true;
+        }
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request == null || request.getAttribute(WROTE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) == null;
+    }
+
+    private Connection fromPrimary() throws SQLException {
+        if (readYourWrites && TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            RequestAttributes request = RequestContextHolder.getRequestAttributes();
+            if (request != null) {
+                request.setAttribute(WROTE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+            }
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    /**
+     * Retries each replica out of rotation and puts it back if it hands out a valid connection.
+     */
+    private void checkReplicas() {
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                continue;
+            }
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (connection.isValid(1)) {
+                    replica.healthy = true;
+                    log.info("Replica {} back in rotation", replica.dataSource);
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.debug("Replica {} still unavailable: {}", replica.dataSource, e.getMessage());
+            }
+        }
+    }
+
+    private int healthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    /**
+     * Stops the health check and closes the replica pools. The primary is a bean of its own and closed with it.
+     */
+    @Override
+    public void close() throws IOException {
+        healthCheck.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    /**
+     * A replica data source and whether it is in rotation.
+     */
+    private static final class Replica {
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.spring2025demo3rest.controllers;
+
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.ValueGroups;
+import org.example.spring2025demo3rest.pojos.ValueHistogram;
+import org.example.spring2025demo3rest.pojos.ValuePercentiles;
+import org.example.spring2025demo3rest.services.ValueSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Controller for the value distribution questions of the actuaries: percentiles, histograms and group-bys of
+ * Home and Auto values, sliced by location, heating type and build decade. Answered from the in-memory
+ * {@link ValueSnapshot}, so figures can be up to app.analytics.refresh-interval old.
+ */
+@Controller
+@RequestMapping(path = RESTNouns.VERSION_1 + RESTNouns.ANALYTICS)
+public class AnalyticsController {
+
+    private static final String DEFAULT_PERCENTILES = "50,90,95,99";
+
+    @Autowired private ValueSnapshot valueSnapshot;
+
+    /**
+     * Retrieves percentiles of the values of the matching homes.
+     *
+     * @param percentiles The percentiles, each from 0 to 100
+     * @param location Only homes in this location
+     * @param heatingType Only homes with this heating type
+     * @param decade Only homes built in this decade, given by its first year
+     * @return The percentiles, 400 if a parameter is invalid, or 503 with Retry-After while the snapshot is first loaded
+     */
+    @GetMapping(path = RESTNouns.HOME + RESTNouns.PERCENTILES)
+    public ResponseEntity<ValuePercentiles> getHomePercentiles(
+            @RequestParam(name = "p", defaultValue = DEFAULT_PERCENTILES) double[] percentiles,
+            @RequestParam(name = "location", required = false) Home.Location location,
+            @RequestParam(name = "heatingType", required = false) Home.HeatingType heatingType,
+            @RequestParam(name = "decade", required = false) Integer decade) {
+        return answer(() -> valueSnapshot.percentiles(ValueSnapshot.Table.HOMES,
+                new ValueSnapshot.Filter(location, heatingType, decade), percentiles));
+    }
+
+    /**
+     * Retrieves a histogram of the values of the matching homes.
+     *
+     * @param width The width of each bucket
+     * @param location Only homes in this location
+     * @param heatingType Only homes with this heating type
+     * @param decade Only homes built in this decade, given by its first year
+     * @return The histogram, 400 if a parameter is invalid or the values span too many buckets,
+     * or 503 with Retry-After while the snapshot is first loaded
+     */
+    @GetMapping(path = RESTNouns.HOME + RESTNouns.HISTOGRAM)
+    public ResponseEntity<ValueHistogram> getHomeHistogram(
+            @RequestParam(name = "width") int width,
+            @RequestParam(name = "location", required = false) Home.Location location,
+            @RequestParam(name = "heatingType", required = false) Home.HeatingType heatingType,
+            @RequestParam(name = "decade", required = false) Integer decade) {
+        return answer(() -> valueSnapshot.histogram(ValueSnapshot.Table.HOMES,
+                new ValueSnapshot.Filter(location, heatingType, decade), width));
+    }
+
+    /**
+     * Retrieves count, total and range of the values of the matching homes, grouped by one dimension.
+     *
+     * @param by The dimension: location, heatingType or decade
+     * @param location Only homes in this location
+     * @param heatingType Only homes with this heating type
+     * @param decade Only homes built in this decade, given by its first year
+     * @return The groups, 400 if a parameter is invalid, or 503 with Retry-After while the snapshot is first loaded
+     */
+    @GetMapping(path = RESTNouns.HOME + RESTNouns.GROUPS)
+    public ResponseEntity<ValueGroups> getHomeGroups(
+            @RequestParam(name = "by") String by,
+            @RequestParam(name = "location", required = false) Home.Location location,
+            @RequestParam(name = "heatingType", required = false) Home.HeatingType heatingType,
+            @RequestParam(name = "decade", required = false) Integer decade) {
+        return answer(() -> valueSnapshot.groups(ValueSnapshot.Table.HOMES,
+                new ValueSnapshot.Filter(location, heatingType, decade), by));
+    }
+
+    /**
+     * Retrieves percentiles of the values of the matching autos.
+     *
+     * @param percentiles The percentiles, each from 0 to 100
+     * @param decade Only autos built in this decade, given by its first year
+     * @return The percentiles, 400 if a parameter is invalid, or 503 with Retry-After while the snapshot is first loaded
+     */
+    @GetMapping(path = RESTNouns.AUTO + RESTNouns.PERCENTILES)
+    public ResponseEntity<ValuePercentiles> getAutoPercentiles(
+            @RequestParam(name = "p", defaultValue = DEFAULT_PERCENTILES) double[] percentiles,
+            @RequestParam(name = "decade", required = false) Integer decade) {
+        return answer(() -> valueSnapshot.percentiles(ValueSnapshot.Table.AUTOS,
+                new ValueSnapshot.Filter(null, null, decade), percentiles));
+    }
+
+    /**
+     * Retrieves a histogram of the values of the matching autos.
+     *
+     * @param width The width of each bucket
+     * @param decade Only autos built in this decade, given by its first year
+     * @return The histogram, 400 if a parameter is invalid or the values span too many buckets,
+     * or 503 with Retry-After while the snapshot is first loaded
+     */
+    @GetMapping(path = RESTNouns.AUTO + RESTNouns.HISTOGRAM)
+    public ResponseEntity<ValueHistogram> getAutoHistogram(
+            @RequestParam(name = "width") int width,
+            @RequestParam(name = "decade", required = false) Integer decade) {
+        return answer(() -> valueSnapshot.histogram(ValueSnapshot.Table.AUTOS,
+                new ValueSnapshot.Filter(null, null, decade), width));
+    }
+
+    /**
+     * Retrieves count, total and range of the values of the matching autos, grouped by build decade.
+     *
+     * @param by The dimension, only decade
+     * @param decade Only autos built in this decade, given by its first year
+     * @return The groups, 400 if a parameter is invalid, or 503 with Retry-After while the snapshot is first loaded
+     */
+    @GetMapping(path = RESTNouns.AUTO + RESTNouns.GROUPS)
+    public ResponseEntity<ValueGroups> getAutoGroups(
+            @RequestParam(name = "by", defaultValue = "decade") String by,
+            @RequestParam(name = "decade", required = false) Integer decade) {
+        return answer(() -> valueSnapshot.groups(ValueSnapshot.Table.AUTOS,
+                new ValueSnapshot.Filter(null, null, decade), by));
+    }
+
+    private static <T> ResponseEntity<T> answer(Supplier<Optional<T>> query) {
+        try {
+            return query.get()
+                    .map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                            .header(HttpHeaders.RETRY_AFTER, "1").build());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
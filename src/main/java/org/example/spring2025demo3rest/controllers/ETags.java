@@ -0,0 +1,97 @@
+package org.example.spring2025demo3rest.controllers;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Strong ETags derived from entity versions, for conditional GETs and If-Match checks.
+ */
+final class ETags {
+
+    private ETags() {
+    }
+
+    /**
+     * ETag of a single entity.
+     * @param version the entity's version
+     * @return the quoted ETag
+     */
+    static String of(Long version) {
+        return "\"" + (version == null ? 0 : version) + "\"";
+    }
+
+    /**
+     * ETag of a list of rows owned by one user: a SHA-256 hash of every (id, version) pair, in id order.
+     * Counts, maximum ids and version sums can all come out the same after a delete and an insert, since
+     * pooled and write-behind ids do not arrive in order, so the tag covers every row.
+     * @param rows the rows
+     * @param id the id of a row
+     * @param version the version of a row
+     * @param <T> the row type
+     * @return the quoted ETag
+     */
+    static <T> String ofList(List<T> rows, ToIntFunction<T> id, ToLongFunction<T> version) {
+        long[][] pairs = new long[rows.size()][];
+        for (int i = 0; i < pairs.length; i++) {
+            T row = rows.get(i);
+            pairs[i] = new long[]{id.applyAsInt(row), version.applyAsLong(row)};
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        ByteBuffer buffer = ByteBuffer.allocate(pairs.length * 2 * Long.BYTES);
+        for (long[] pair : pairs) {
+            buffer.putLong(pair[0]).putLong(pair[1]);
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(buffer.array());
+            //128 bits are plenty to tell two versions of one owner's list apart
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required of every JVM", e);
+        }
+    }
+
+    /**
+     * Checks an If-Match header against the current version of an entity.
+     * @param ifMatch the header value, a comma separated list of ETags or *
+     * @param version the entity's current version
+     * @return true if the header names the current version
+     */
+    static boolean matches(String ifMatch, Long version) {
+        String current = of(version);
+        for (String tag : ifMatch.split(",")) {
+            tag = tag.trim();
+            //Weak tags never match for If-Match
+            if (tag.equals("*") || tag.equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the version an If-Match header asks for, so it can be checked inside an UPDATE statement.
+     * @param ifMatch the header value, or null
+     * @return null if any version is acceptable (no header, or *), the version named by a single strong ETag,
+     *         or -1, which matches no version, for anything else
+     */
+    static Long versionOf(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            try {
+                return Long.valueOf(tag.substring(1, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+}
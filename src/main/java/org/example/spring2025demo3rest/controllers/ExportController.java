@@ -0,0 +1,53 @@
+package org.example.spring2025demo3rest.controllers;
+
+import org.example.spring2025demo3rest.services.ExportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Controller for the full export of users with their homes and autos, used by the nightly warehouse dump.
+ */
+@Controller
+@RequestMapping(path = RESTNouns.VERSION_1 + RESTNouns.EXPORT)
+public class ExportController {
+
+    @Autowired private ExportService exportService;
+
+    /**
+     * Streams every user with their homes and autos while they are read from the database.
+     * The output is gzip compressed when the client sends Accept-Encoding: gzip.
+     *
+     * @param format ndjson for one nested object per user, or csv for one line per home and auto
+     * @param acceptEncoding The Accept-Encoding request header, if any
+     * @return The streaming response body
+     */
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        switch (format) {
+            case "ndjson":
+                return response.contentType(MediaType.APPLICATION_NDJSON)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.ndjson\"")
+                        .body(exportService.ndjson(gzip));
+            case "csv":
+                return response.contentType(MediaType.parseMediaType(ImportController.TEXT_CSV + ";charset=UTF-8"))
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.csv\"")
+                        .body(exportService.csv(gzip));
+            default:
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "format must be ndjson or csv");
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.spring2025demo3rest.controllers;
+
+import org.example.spring2025demo3rest.pojos.ImportJobStatus;
+import org.example.spring2025demo3rest.services.ImportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Controller for bulk imports of homes and autos from CSV or NDJSON uploads.
+ * The upload is received, then imported in the background while its job is polled; see {@link ImportService}
+ * for the row format.
+ */
+@Controller
+@RequestMapping(path = RESTNouns.VERSION_1 + RESTNouns.IMPORT)
+public class ImportController {
+
+    public static final String TEXT_CSV = "text/csv";
+
+    @Autowired private ImportService importService;
+
+    /**
+     * Starts importing a CSV upload, one home or auto per line after the header.
+     *
+     * @param body The request body, UTF-8
+     * @return 202 with the new job, whose progress and per-row error report can be polled
+     * @throws IOException if the upload is cut off
+     */
+    @PostMapping(consumes = TEXT_CSV)
+    public ResponseEntity<ImportJobStatus> importCsv(InputStream body) throws IOException {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importService.importCsv(body));
+    }
+
+    /**
+     * Starts importing an NDJSON upload, one home or auto object per line.
+     *
+     * @param body The request body, UTF-8
+     * @return 202 with the new job, whose progress and per-row error report can be polled
+     * @throws IOException if the upload is cut off
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<ImportJobStatus> importNdjson(InputStream body) throws IOException {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(importService.importNdjson(body));
+    }
+
+    /**
+     * Retrieves the running imports and the most recent finished ones, to find the id of an upload in progress.
+     *
+     * @return The job statuses, oldest first
+     */
+    @GetMapping
+    public @ResponseBody List<ImportJobStatus> getJobs() {
+        return importService.recent();
+    }
+
+    /**
+     * Retrieves the progress and error report of an import.
+     *
+     * @param jobId The id of the import
+     * @return The job status, or 404 if there is no such job
+     */
+    @GetMapping(path = RESTNouns.JOB_ID)
+    public ResponseEntity<ImportJobStatus> getJob(@PathVariable("job_id") String jobId) {
+        return ResponseEntity.of(importService.status(jobId));
+    }
+}
@@ -4,15 +4,53 @@ import org.example.spring2025demo3rest.dataaccess.HomeRepository;
 import org.example.spring2025demo3rest.dataaccess.UserRepository;
 import org.example.spring2025demo3rest.dataaccess.AutoRepository;
 import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.AutoMatch;
+import org.example.spring2025demo3rest.pojos.AutoSearch;
+import org.example.spring2025demo3rest.pojos.AutoView;
+import org.example.spring2025demo3rest.pojos.CursorPage;
 import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.HomeMatch;
+import org.example.spring2025demo3rest.pojos.HomeSearch;
+import org.example.spring2025demo3rest.pojos.HomeView;
+import org.example.spring2025demo3rest.pojos.MultiGet;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.NewUser;
+import org.example.spring2025demo3rest.pojos.PortfolioSummary;
 import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.pojos.UserDeletionStatus;
+import org.example.spring2025demo3rest.pojos.UserProfile;
+import org.example.spring2025demo3rest.pojos.WriteBehindFailure;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.example.spring2025demo3rest.services.BookStats;
+import org.example.spring2025demo3rest.services.EmailIndex;
+import org.example.spring2025demo3rest.services.EntityCache;
+import org.example.spring2025demo3rest.services.MultiGetService;
+import org.example.spring2025demo3rest.services.NdjsonStreamer;
+import org.example.spring2025demo3rest.services.PortfolioSummaryService;
+import org.example.spring2025demo3rest.services.UserDeletionService;
+import org.example.spring2025demo3rest.services.UserProfileService;
+import org.example.spring2025demo3rest.services.WriteBehindService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cglib.core.Local;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * The main controller for this application, handling RESTful endpoints
@@ -27,6 +65,21 @@ public class MainController {
     @Autowired private UserRepository userRepository;
     @Autowired private HomeRepository homeRepository;
     @Autowired private AutoRepository autoRepository;
+    @Autowired private NdjsonStreamer ndjsonStreamer;
+    @Autowired private BatchInsertService batchInsertService;
+    @Autowired private EntityCache entityCache;
+    @Autowired private PortfolioSummaryService portfolioSummaryService;
+    @Autowired private UserDeletionService userDeletionService;
+    @Autowired private UserProfileService userProfileService;
+    @Autowired private MultiGetService multiGetService;
+    @Autowired private WriteBehindService writeBehindService;
+    @Autowired private EmailIndex emailIndex;
+    @Autowired private BookStats bookStats;
+
+    /**
+     * Largest page size accepted by the cursor paginated list endpoints.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
 
     /* *
      *  USER METHODS
@@ -42,92 +95,294 @@ public class MainController {
         return userRepository.findAll();
     }
 
+    /**
+     * Retrieves one page of users, ordered by id, using keyset pagination.
+     *
+     * @param limit The maximum number of users to return, capped at {@link #MAX_PAGE_SIZE}
+     * @param cursor The nextCursor of the previous page, or absent for the first page
+     * @return A page of User entities and the cursor for the next page
+     */
+    @GetMapping(path = RESTNouns.USER, params = "limit")
+    public @ResponseBody CursorPage<User> getUsersPage(
+            @RequestParam int limit, @RequestParam(required = false) String cursor) {
+        int size = pageSize(limit);
+        return CursorPage.of(userRepository.findByIdGreaterThanOrderByIdAsc(afterId(cursor), Limit.of(size + 1)),
+                size, User::getId);
+    }
+
+    /**
+     * Streams all users as newline delimited JSON, one user per line, as they are read.
+     *
+     * @return The streaming response body
+     */
+    @GetMapping(path = RESTNouns.USER, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjsonStreamer.stream(userRepository::streamAll));
+    }
+
     /**
      * Retrieves a specific user by their unique identifier.
      *
+     * Answers 304 when If-None-Match holds the ETag of the user's current version.
+     *
      * @param userId The unique identifier of the user to retrieve
+     * @param request The current request, for the conditional GET
      * @return An Optional containing the User if found, or an empty Optional
      */
     @GetMapping(path = RESTNouns.USER + RESTNouns.ID)
-    public @ResponseBody Optional<User> getUser(@PathVariable("id") Long userId) {
-        return userRepository.findById(userId);
+    public @ResponseBody Optional<User> getUser(@PathVariable("id") Long userId, WebRequest request) {
+        Optional<User> user = entityCache.findUser(userId);
+        if (user.isPresent() && request.checkNotModified(ETags.of(user.get().getVersion()))) {
+            return null;
+        }
+        return user;
+    }
+
+    /**
+     * Retrieves a user together with their homes and/or autos in one request.
+     *
+     * @param userId The unique identifier of the user to retrieve
+     * @param expand The associations to include: homes, autos or both, comma separated
+     * @return The user with the requested associations, or 404 if not found; 400 on an unknown association
+     */
+    @GetMapping(path = RESTNouns.USER + RESTNouns.ID, params = "expand")
+    public ResponseEntity<UserProfile> getUserProfile(
+            @PathVariable("id") Long userId, @RequestParam("expand") List<String> expand) {
+        return ResponseEntity.of(userProfileService.profile(userId, expansions(expand)));
+    }
+
+    /**
+     * Retrieves many users by id, optionally together with their homes and/or autos.
+     * Costs one query per IN list of ids for the users, and one more per expanded association.
+     *
+     * @param userIds The unique identifiers of the users, at most {@link #MAX_PAGE_SIZE}
+     * @param expand The associations to include: homes, autos or both, comma separated; optional
+     * @return One entry per existing user in request order, and the ids that matched no user
+     */
+    @GetMapping(path = RESTNouns.USER, params = "ids")
+    public @ResponseBody MultiGet<UserProfile> getUserProfiles(
+            @RequestParam("ids") List<Long> userIds, @RequestParam(name = "expand", required = false) List<String> expand) {
+        return userProfileService.profiles(checkIds(userIds), expansions(expand));
+    }
+
+    /**
+     * Retrieves a user by email address, through the unique index on email.
+     *
+     * @param email The email address of the user
+     * @return The user, or 404 if no user has this email
+     */
+    @GetMapping(path = RESTNouns.USER + RESTNouns.BY_EMAIL)
+    public ResponseEntity<User> getUserByEmail(@RequestParam String email) {
+        return ResponseEntity.of(userRepository.findByEmail(email));
     }
 
     /**
      * Creates a new user in the database.
      *
      * @param name The name of the user to create
-     * @param email The email address of the user to create
-     * @return The newly created User entity
+     * @param email The email address of the user to create, which no other user may have
+     * @return The newly created User entity, or 409 if the email is taken
      */
     @PostMapping(path = RESTNouns.USER)
     public @ResponseBody User createUser(
             @RequestParam String name, @RequestParam String email) {
+        checkEmailFree(email, null);
         User user = new User();
         user.setName(name);
         user.setEmail(email);
-        return userRepository.save(user);
+        try {
+            user = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            //Another request claimed the email between the check and the insert
+            throw emailTaken(email);
+        }
+        entityCache.evictUser(user.getId().longValue());
+        return user;
+    }
+
+    /**
+     * Creates many users in one request using JDBC batching.
+     *
+     * @param users The users to create
+     * @return The generated ids, in request order, or 409 if an email is taken or given twice
+     */
+    @PostMapping(path = RESTNouns.USER + RESTNouns.BATCH)
+    public @ResponseBody List<Integer> createUsers(@RequestBody List<NewUser> users) {
+        Set<String> emails = new HashSet<>();
+        for (NewUser user : users) {
+            if (user.email() != null && !emails.add(user.email())) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Email " + user.email() + " is given twice");
+            }
+        }
+        Set<String> taken = emailIndex.taken(emails);
+        if (!taken.isEmpty()) {
+            throw emailTaken(taken.iterator().next());
+        }
+        List<Integer> ids;
+        try {
+            ids = batchInsertService.insertUsers(users);
+        } catch (DataIntegrityViolationException | ConstraintViolationException e) {
+            //Another request claimed one of the emails between the check and the insert
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "An email is already used by another user", e);
+        }
+        ids.forEach(id -> entityCache.evictUser(id.longValue()));
+        return ids;
     }
 
     /**
-     * Deletes a user from the database by their unique identifier.
+     * Deletes a user from the database by their unique identifier, together with their homes and autos.
+     * Everything goes in one transaction: two locking reads of what the book statistics lose, then three
+     * set-based DELETE statements. No entity is loaded.
      *
      * @param userId The unique identifier of the user to delete
      * @return A string message indicating the result of the deletion operation
      */
     @DeleteMapping(path = RESTNouns.USER + RESTNouns.ID)
     public @ResponseBody String deleteUser(@PathVariable("id") Long userId) {
-        if (userRepository.existsById(userId)) {
-            userRepository.deleteById(userId);
+        if (userDeletionService.delete(List.of(userId)).usersDeleted() > 0) {
             return "User with ID " + userId + " deleted successfully.";
         } else {
             return "User with ID " + userId + " not found.";
         }
     }
 
+    /**
+     * Deletes many users, together with their homes and autos.
+     * By default everything is deleted in one transaction before responding. With async=true the
+     * delete runs in the background, one transaction per chunk of users, and its progress can be polled.
+     *
+     * @param userIds The ids of the users to delete; unknown ids are ignored
+     * @param async Whether to delete in the background
+     * @return The counts of deleted rows, or 202 with the new job when async
+     */
+    @DeleteMapping(path = RESTNouns.USER + RESTNouns.BATCH)
+    public ResponseEntity<UserDeletionStatus> deleteUsers(
+            @RequestBody List<Long> userIds,
+            @RequestParam(name = "async", defaultValue = "false") boolean async) {
+        if (async) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(userDeletionService.deleteAsync(userIds));
+        }
+        return ResponseEntity.ok(userDeletionService.delete(userIds));
+    }
+
+    /**
+     * Retrieves the progress of an asynchronous bulk user delete.
+     *
+     * @param jobId The id returned when the delete was started
+     * @return The job status, or 404 if there is no such job
+     */
+    @GetMapping(path = RESTNouns.USER + RESTNouns.BATCH + RESTNouns.JOB + RESTNouns.JOB_ID)
+    public ResponseEntity<UserDeletionStatus> getDeleteJob(@PathVariable("job_id") String jobId) {
+        return ResponseEntity.of(userDeletionService.status(jobId));
+    }
+
     /**
      * Updates an existing user's information.
      *
      * @param userId The unique identifier of the user to update
      * @param name The new name for the user
-     * @param email The new email address for the user
-     * @return A string message indicating the result of the update operation
+     * @param email The new email address for the user, which no other user may have
+     * @return A string message indicating the result of the update operation, or 409 if the email is taken
      */
     @PutMapping(path = RESTNouns.USER + RESTNouns.ID)
     public @ResponseBody String updateUser(
             @PathVariable("id") Long userId, @RequestParam String name, @RequestParam String email){
-        if (userRepository.existsById(userId)) {
-            Optional<User> user = userRepository.findById(userId);
-            if(user.isPresent()){
-                user.get().setName(name);
-                user.get().setEmail(email);
+        Optional<User> user = userRepository.findById(userId);
+        if (user.isPresent()) {
+            if (!email.equals(user.get().getEmail())) {
+                checkEmailFree(email, userId);
+            }
+            user.get().setName(name);
+            user.get().setEmail(email);
+            try {
                 userRepository.save(user.get());
+            } catch (DataIntegrityViolationException e) {
+                throw emailTaken(email);
             }
+            entityCache.evictUser(userId);
             return "User with ID " + userId + " updated successfully.";
         } else {
             return "User with ID " + userId + " not found.";
         }
     }
 
+    /**
+     * Changes only the given fields of a user, in a single UPDATE without reading the user first.
+     *
+     * @param userId The unique identifier of the user to update
+     * @param name The new name, or absent to keep it
+     * @param email The new email address, or absent to keep it
+     * @param ifMatch The ETag of the version the client last saw, optional
+     * @return A string message indicating the result of the update operation;
+     *         400 if no field is given, 404 if there is no such user, 409 if another user has the email,
+     *         412 if If-Match does not name the current version
+     */
+    @PatchMapping(path = RESTNouns.USER + RESTNouns.ID)
+    public ResponseEntity<String> patchUser(
+            @PathVariable("id") Long userId,
+            @RequestParam(required = false) String name, @RequestParam(required = false) String email,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (name == null && email == null) {
+            return ResponseEntity.badRequest().body("Nothing to update.");
+        }
+        if (email != null) {
+            checkEmailFree(email, userId);
+            //A bulk UPDATE bypasses the entity listener that keeps the email filter in step
+            emailIndex.add(email);
+        }
+        int updated;
+        try {
+            updated = userRepository.patchById(userId, ETags.versionOf(ifMatch), name, email);
+        } catch (DataIntegrityViolationException e) {
+            throw emailTaken(email);
+        }
+        if (updated > 0) {
+            entityCache.evictUser(userId);
+            return ResponseEntity.ok("User with ID " + userId + " updated successfully.");
+        }
+        //Only a failed update pays for the second query that tells the two cases apart
+        if (ifMatch != null && userRepository.existsById(userId)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body("User with ID " + userId + " was changed by another request.");
+        }
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with ID " + userId + " not found.");
+    }
+
     /* *
      *  HOME METHODS
      *
      * */
 
+    /**
+     * Retrieves many homes by id, with their owner ids, in one query per IN list of ids.
+     *
+     * @param homeIds The unique identifiers of the homes, at most {@link #MAX_PAGE_SIZE}
+     * @return The homes found in request order, and the ids that matched no home
+     */
+    @GetMapping(path = RESTNouns.HOME, params = "ids")
+    public @ResponseBody MultiGet<HomeMatch> getHomes(@RequestParam("ids") List<Long> homeIds) {
+        return multiGetService.byIds(checkIds(homeIds), homeRepository::findMatchesByIds, HomeMatch::id);
+    }
+
     /**
      * Retrieves all homes associated with a specific user.
      *
+     * Answers 304 when If-None-Match holds the ETag of the current list.
+     *
      * @param userId The unique identifier of the user whose homes are to be retrieved
-     * @return An iterable collection of Home entities belonging to the specified user
+     * @param request The current request, for the conditional GET
+     * @return The homes belonging to the specified user, without the repeated owner
      */
     @GetMapping(path = RESTNouns.USER +  RESTNouns.ID + RESTNouns.HOME)
-    public @ResponseBody Iterable<Home> getAllHomesByUser(@PathVariable("id") Long userId) {
-        Iterable<Home> homes = null;
-        if (userRepository.existsById(userId)) {
-            Optional<User> user = userRepository.findById(userId);
-            if(user.isPresent()){
-                homes = homeRepository.getAllByUserId(userId);
-            }
+    public @ResponseBody Iterable<HomeView> getAllHomesByUser(@PathVariable("id") Long userId, WebRequest request) {
+        //An owner with at least one home exists, so only an empty result needs the existence check
+        List<HomeView> homes = entityCache.homesOf(userId);
+        if (homes.isEmpty() && entityCache.findUser(userId).isEmpty()) {
+            homes = null;
+        } else if (request.checkNotModified(ETags.ofList(homes, HomeView::id, HomeView::version))) {
+            return null;
         }
 
         //TODO handle errors
@@ -135,6 +390,41 @@ public class MainController {
         return homes;
     }
 
+    /**
+     * Retrieves one page of homes for a specific user, ordered by id, using keyset pagination.
+     *
+     * @param userId The unique identifier of the user whose homes are to be retrieved
+     * @param limit The maximum number of homes to return, capped at {@link #MAX_PAGE_SIZE}
+     * @param cursor The nextCursor of the previous page, or absent for the first page
+     * @return A page of homes, or null if the user does not exist
+     */
+    @GetMapping(path = RESTNouns.USER +  RESTNouns.ID + RESTNouns.HOME, params = "limit")
+    public @ResponseBody CursorPage<HomeView> getHomesPageByUser(
+            @PathVariable("id") Long userId, @RequestParam int limit, @RequestParam(required = false) String cursor) {
+        int size = pageSize(limit);
+        List<HomeView> rows = homeRepository.findViewsByUserIdAfter(userId, afterId(cursor), Limit.of(size + 1));
+        if (rows.isEmpty() && entityCache.findUser(userId).isEmpty()) {
+            return null;
+        }
+        return CursorPage.of(rows, size, HomeView::id);
+    }
+
+    /**
+     * Streams all homes of a specific user as newline delimited JSON.
+     *
+     * @param userId The unique identifier of the user whose homes are to be streamed
+     * @return The streaming response body, or 404 if the user does not exist
+     */
+    @GetMapping(path = RESTNouns.USER +  RESTNouns.ID + RESTNouns.HOME, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllHomesByUser(@PathVariable("id") Long userId) {
+        if (entityCache.findUser(userId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjsonStreamer.stream(() -> homeRepository.streamViewsByUserId(userId)));
+    }
+
     /**
      * Creates a new home for a specific user.
      *
@@ -147,23 +437,68 @@ public class MainController {
     public @ResponseBody Home createHomeByUser(
             @PathVariable("id") Long userId,
             @RequestParam LocalDate dateBuilt, @RequestParam int value, @RequestParam Home.HeatingType heatingType, @RequestParam Home.Location location) {
+        //The owner is part of the response, so it is loaded once rather than checked and then loaded
         Home home = null;
-        if (userRepository.existsById(userId)) {
-            Optional<User> user = userRepository.findById(userId);
-            if (user.isPresent()) {
-                home = new Home();
-                home.setValue(value);
-                home.setDateBuilt(dateBuilt);
-                home.setUser(user.get());
-                home.setHeatingType(heatingType);
-                home.setLocation(location);
-                homeRepository.save(home);
-            }
+        Optional<User> user = entityCache.findUser(userId);
+        if (user.isPresent()) {
+            home = new Home();
+            home.setValue(value);
+            home.setDateBuilt(dateBuilt);
+            home.setUser(user.get());
+            home.setHeatingType(heatingType);
+            home.setLocation(location);
+            homeRepository.save(home);
+            entityCache.evictHomes(userId);
+            bookStats.homeAdded(heatingType, location, value);
         }
 
         return home;
     }
 
+    /**
+     * Accepts a new home for a specific user and writes it later, batched with other queued creates.
+     *
+     * @param userId The unique identifier of the user for whom the home is being created
+     * @param dateBuilt The date when the home was built
+     * @param value The monetary value of the home
+     * @param heatingType The heating type of the home
+     * @param location The location type of the home
+     * @return 202 with the id the home will have, 404 if the user does not exist,
+     *         or 503 with Retry-After if the write queue is full
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    @PostMapping(path = RESTNouns.USER + RESTNouns.ID + RESTNouns.HOME, params = "async=true")
+    public ResponseEntity<Integer> createHomeByUserAsync(
+            @PathVariable("id") Long userId,
+            @RequestParam LocalDate dateBuilt, @RequestParam int value, @RequestParam Home.HeatingType heatingType, @RequestParam Home.Location location)
+            throws InterruptedException {
+        if (entityCache.findUser(userId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return accepted(writeBehindService.enqueueHome(userId.intValue(), new NewHome(dateBuilt, value, heatingType, location)));
+    }
+
+    /**
+     * Creates many homes for a specific user in one request using JDBC batching.
+     *
+     * @param userId The unique identifier of the user for whom the homes are being created
+     * @param homes The homes to create
+     * @return The generated ids in request order, or 404 if the user does not exist
+     */
+    @PostMapping(path = RESTNouns.USER + RESTNouns.ID + RESTNouns.HOME + RESTNouns.BATCH)
+    public ResponseEntity<List<Integer>> createHomesByUser(
+            @PathVariable("id") Long userId, @RequestBody List<NewHome> homes) {
+        if (entityCache.findUser(userId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Integer> ids = batchInsertService.insertHomes(userId.intValue(), homes);
+        entityCache.evictHomes(userId);
+        BookStats.Counts changes = bookStats.changes();
+        homes.forEach(home -> changes.addHome(home.heatingType(), home.location(), home.value()));
+        bookStats.apply(changes);
+        return ResponseEntity.ok(ids);
+    }
+
     /**
      * Updates an existing home associated with a specific user.
      *
@@ -171,32 +506,99 @@ public class MainController {
      * @param homeId The unique identifier of the home to be updated
      * @param dateBuilt The new date when the home was built
      * @param value The new monetary value of the home
-     * @return A string message indicating the result of the update operation
+     * @param ifMatch The ETag of the version the client last saw, optional
+     * @return A string message indicating the result of the update operation, with the ETag of the new version;
+     *         412 if If-Match does not name the current version, 409 if another update got in first
      */
     @PutMapping(path = RESTNouns.USER + RESTNouns.USER_ID + RESTNouns.HOME + RESTNouns.HOME_ID)
-    public @ResponseBody String updateHomeByUser(
+    public ResponseEntity<String> updateHomeByUser(
             @PathVariable("user_id") Long userId, @PathVariable("home_id") Long homeId,
-            @RequestParam LocalDate dateBuilt, @RequestParam int value, @RequestParam Home.HeatingType heatingType, @RequestParam Home.Location location){
-        if (userRepository.existsById(userId) && homeRepository.existsById(homeId)) {
-            Optional<User> user = userRepository.findById(userId);
-            Optional<Home> home = homeRepository.findById(homeId);
-            if(user.isPresent() && home.isPresent()){
-                home.get().setDateBuilt(dateBuilt);
-                home.get().setValue(value);
-                home.get().setHeatingType(heatingType);
-                home.get().setLocation(location);
-
-                homeRepository.save(home.get());
-                userRepository.save(user.get());
-            }
-            return "Home with ID " + homeId + " updated successfully.";
+            @RequestParam LocalDate dateBuilt, @RequestParam int value, @RequestParam Home.HeatingType heatingType, @RequestParam Home.Location location,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Optional<Home> home = homeRepository.findByIdAndUserId(homeId, userId);
+        if (home.isEmpty()) {
+            return ResponseEntity.ok("Home with ID " + homeId + " not found.");
+        }
+        if (ifMatch != null && !ETags.matches(ifMatch, home.get().getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(ETags.of(home.get().getVersion()))
+                    .body("Home with ID " + homeId + " was changed by another request.");
+        }
+        BookStats.Counts changes = bookStats.changes();
+        changes.removeHome(home.get().getHeatingType(), home.get().getLocation(), home.get().getValue());
+        changes.addHome(heatingType, location, value);
+        home.get().setDateBuilt(dateBuilt);
+        home.get().setValue(value);
+        home.get().setHeatingType(heatingType);
+        home.get().setLocation(location);
+        Home saved;
+        try {
+            //The update is guarded by the version read above
+            saved = homeRepository.save(home.get());
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Home with ID " + homeId + " was changed by another request.");
+        } finally {
+            entityCache.evictHomes(userId);
+        }
+        bookStats.apply(changes);
+        return ResponseEntity.ok().eTag(ETags.of(saved.getVersion()))
+                .body("Home with ID " + homeId + " updated successfully.");
+    }
+
+    /**
+     * Changes only the given fields of a home in a single UPDATE. A change of value, heating type or location
+     * first locks the row and reads those columns in the same transaction, for the book statistics.
+     *
+     * @param userId The unique identifier of the user who owns the home
+     * @param homeId The unique identifier of the home to be updated
+     * @param dateBuilt The new date when the home was built, or absent to keep it
+     * @param value The new monetary value of the home, or absent to keep it
+     * @param heatingType The new heating type, or absent to keep it
+     * @param location The new location type, or absent to keep it
+     * @param ifMatch The ETag of the version the client last saw, optional
+     * @return A string message indicating the result of the update operation;
+     *         400 if no field is given, 404 if the user has no such home, 412 if If-Match does not name the current version
+     */
+    @PatchMapping(path = RESTNouns.USER + RESTNouns.USER_ID + RESTNouns.HOME + RESTNouns.HOME_ID)
+    public ResponseEntity<String> patchHomeByUser(
+            @PathVariable("user_id") Long userId, @PathVariable("home_id") Long homeId,
+            @RequestParam(required = false) LocalDate dateBuilt, @RequestParam(required = false) Integer value,
+            @RequestParam(required = false) Home.HeatingType heatingType, @RequestParam(required = false) Home.Location location,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (dateBuilt == null && value == null && heatingType == null && location == null) {
+            return ResponseEntity.badRequest().body("Nothing to update.");
+        }
+        boolean patched;
+        if (value == null && heatingType == null && location == null) {
+            //The build date is not counted, so there is nothing to read first
+            patched = homeRepository.patchByIdAndUserId(homeId, userId, ETags.versionOf(ifMatch),
+                    dateBuilt, null, null, null) > 0;
         } else {
-            return "Home with ID " + homeId + " not found.";
+            Optional<HomeMatch> before = homeRepository.findAndPatchByIdAndUserId(homeId, userId, ETags.versionOf(ifMatch),
+                    dateBuilt, value, heatingType, location);
+            patched = before.isPresent();
+            before.ifPresent(old -> {
+                BookStats.Counts changes = bookStats.changes();
+                changes.removeHome(old.heatingType(), old.location(), old.value());
+                changes.addHome(heatingType != null ? heatingType : old.heatingType(),
+                        location != null ? location : old.location(), value != null ? value : old.value());
+                bookStats.apply(changes);
+            });
         }
+        if (patched) {
+            entityCache.evictHomes(userId);
+            return ResponseEntity.ok("Home with ID " + homeId + " updated successfully.");
+        }
+        if (ifMatch != null && homeRepository.existsByIdAndUserId(homeId, userId)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body("Home with ID " + homeId + " was changed by another request.");
+        }
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Home with ID " + homeId + " not found.");
     }
 
     /**
-     * Deletes a specific home associated with a user.
+     * Deletes a specific home associated with a user, in one transaction with a locking read of what is
+     * deleted, for the book statistics.
      *
      * @param userId The unique identifier of the user who owns the home
      * @param homeId The unique identifier of the home to be deleted
@@ -205,8 +607,12 @@ public class MainController {
     @DeleteMapping(path = RESTNouns.USER + RESTNouns.USER_ID + RESTNouns.HOME + RESTNouns.HOME_ID)
     public @ResponseBody String deleteHomeByUser(
             @PathVariable("user_id") Long userId, @PathVariable("home_id") Long homeId) {
-        if (userRepository.existsById(userId) && homeRepository.existsById(homeId)) {
-            homeRepository.deleteById(homeId);
+        Optional<HomeMatch> home = homeRepository.findAndDeleteByIdAndUserId(homeId, userId);
+        if (home.isPresent()) {
+            entityCache.evictHomes(userId);
+            BookStats.Counts changes = bookStats.changes();
+            changes.removeHome(home.get().heatingType(), home.get().location(), home.get().value());
+            bookStats.apply(changes);
             return "Home with ID " + homeId + " deleted successfully.";
         } else {
             return "Home with ID " + homeId + " not found.";
@@ -217,25 +623,74 @@ public class MainController {
      *  AUTO METHODS
      * */
 
+    /**
+     * Retrieves many autos by id, with their owner ids, in one query per IN list of ids.
+     *
+     * @param autoIds The unique identifiers of the autos, at most {@link #MAX_PAGE_SIZE}
+     * @return The autos found in request order, and the ids that matched no auto
+     */
+    @GetMapping(path = RESTNouns.AUTO, params = "ids")
+    public @ResponseBody MultiGet<AutoMatch> getAutos(@RequestParam("ids") List<Long> autoIds) {
+        return multiGetService.byIds(checkIds(autoIds), autoRepository::findMatchesByIds, AutoMatch::id);
+    }
+
     /**
      * Retrieves all auto objects associated with a specific user.
      *
+     * Answers 304 when If-None-Match holds the ETag of the current list.
+     *
      * @param userId The unique identifier of the user whose auto objects are to be retrieved
-     * @return An iterable collection of Auto entities belonging to the specified user,
+     * @param request The current request, for the conditional GET
+     * @return The autos belonging to the specified user, without the repeated owner,
      *         or null if the user does not exist
      */
     @GetMapping(path = RESTNouns.USER +  RESTNouns.ID + RESTNouns.AUTO)
-    public @ResponseBody Iterable<Auto> getAllAutosByUser(@PathVariable("id") Long userId) {
-        Iterable<Auto> autos = null;
-        if (userRepository.existsById(userId)) {
-            Optional<User> user = userRepository.findById(userId);
-            if(user.isPresent()){
-                autos = autoRepository.getAllByUserId(userId);
-            }
+    public @ResponseBody Iterable<AutoView> getAllAutosByUser(@PathVariable("id") Long userId, WebRequest request) {
+        //An owner with at least one auto exists, so only an empty result needs the existence check
+        List<AutoView> autos = entityCache.autosOf(userId);
+        if (autos.isEmpty() && entityCache.findUser(userId).isEmpty()) {
+            autos = null;
+        } else if (request.checkNotModified(ETags.ofList(autos, AutoView::id, AutoView::version))) {
+            return null;
         }
         return autos;
     }
 
+    /**
+     * Retrieves one page of autos for a specific user, ordered by id, using keyset pagination.
+     *
+     * @param userId The unique identifier of the user whose autos are to be retrieved
+     * @param limit The maximum number of autos to return, capped at {@link #MAX_PAGE_SIZE}
+     * @param cursor The nextCursor of the previous page, or absent for the first page
+     * @return A page of autos, or null if the user does not exist
+     */
+    @GetMapping(path = RESTNouns.USER +  RESTNouns.ID + RESTNouns.AUTO, params = "limit")
+    public @ResponseBody CursorPage<AutoView> getAutosPageByUser(
+            @PathVariable("id") Long userId, @RequestParam int limit, @RequestParam(required = false) String cursor) {
+        int size = pageSize(limit);
+        List<AutoView> rows = autoRepository.findViewsByUserIdAfter(userId, afterId(cursor), Limit.of(size + 1));
+        if (rows.isEmpty() && entityCache.findUser(userId).isEmpty()) {
+            return null;
+        }
+        return CursorPage.of(rows, size, AutoView::id);
+    }
+
+    /**
+     * Streams all autos of a specific user as newline delimited JSON.
+     *
+     * @param userId The unique identifier of the user whose autos are to be streamed
+     * @return The streaming response body, or 404 if the user does not exist
+     */
+    @GetMapping(path = RESTNouns.USER +  RESTNouns.ID + RESTNouns.AUTO, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAutosByUser(@PathVariable("id") Long userId) {
+        if (entityCache.findUser(userId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(ndjsonStreamer.stream(() -> autoRepository.streamViewsByUserId(userId)));
+    }
+
     /**
      * Creates a new auto object for a specific user.
      *
@@ -248,21 +703,75 @@ public class MainController {
     public @ResponseBody Auto createAutoByUser(
             @PathVariable("id") Long userId,
             @RequestParam LocalDate dateBuilt, @RequestParam int value) {
+        //The owner is part of the response, so it is loaded once rather than checked and then loaded
         Auto auto = null;
-        if (userRepository.existsById(userId)) {
-            Optional<User> user = userRepository.findById(userId);
-            if (user.isPresent()) {
-                auto = new Auto();
-                auto.setValue(value);
-                auto.setDateBuilt(dateBuilt);
-                auto.setUser(user.get());
-                autoRepository.save(auto);
-            }
+        Optional<User> user = entityCache.findUser(userId);
+        if (user.isPresent()) {
+            auto = new Auto();
+            auto.setValue(value);
+            auto.setDateBuilt(dateBuilt);
+            auto.setUser(user.get());
+            autoRepository.save(auto);
+            entityCache.evictAutos(userId);
+            bookStats.autoAdded(value);
         }
 
         return auto;
     }
 
+    /**
+     * Accepts a new auto for a specific user and writes it later, batched with other queued creates.
+     *
+     * @param userId The unique identifier of the user for whom the auto is being created
+     * @param dateBuilt The date when the auto was built
+     * @param value The monetary value of the auto
+     * @return 202 with the id the auto will have, 404 if the user does not exist,
+     *         or 503 with Retry-After if the write queue is full
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    @PostMapping(path = RESTNouns.USER + RESTNouns.ID + RESTNouns.AUTO, params = "async=true")
+    public ResponseEntity<Integer> createAutoByUserAsync(
+            @PathVariable("id") Long userId,
+            @RequestParam LocalDate dateBuilt, @RequestParam int value) throws InterruptedException {
+        if (entityCache.findUser(userId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return accepted(writeBehindService.enqueueAuto(userId.intValue(), new NewAuto(dateBuilt, value)));
+    }
+
+    /**
+     * Lists the recent asynchronous creates for a user that were accepted but could not be written.
+     * The user need not exist any more, as a deleted owner is the usual reason for a failure.
+     *
+     * @param userId The unique identifier of the owner the creates were accepted for
+     * @return The failures, oldest first
+     */
+    @GetMapping(path = RESTNouns.USER + RESTNouns.ID + RESTNouns.WRITE_BEHIND + RESTNouns.FAILURES)
+    public @ResponseBody List<WriteBehindFailure> getWriteBehindFailures(@PathVariable("id") Long userId) {
+        return writeBehindService.failures(userId.intValue());
+    }
+
+    /**
+     * Creates many auto objects for a specific user in one request using JDBC batching.
+     *
+     * @param userId The unique identifier of the user for whom the autos are being created
+     * @param autos The autos to create
+     * @return The generated ids in request order, or 404 if the user does not exist
+     */
+    @PostMapping(path = RESTNouns.USER + RESTNouns.ID + RESTNouns.AUTO + RESTNouns.BATCH)
+    public ResponseEntity<List<Integer>> createAutosByUser(
+            @PathVariable("id") Long userId, @RequestBody List<NewAuto> autos) {
+        if (entityCache.findUser(userId).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        List<Integer> ids = batchInsertService.insertAutos(userId.intValue(), autos);
+        entityCache.evictAutos(userId);
+        BookStats.Counts changes = bookStats.changes();
+        autos.forEach(auto -> changes.addAuto(auto.value()));
+        bookStats.apply(changes);
+        return ResponseEntity.ok(ids);
+    }
+
     /**
      * Updates an existing auto object associated with a specific user.
      *
@@ -270,29 +779,92 @@ public class MainController {
      * @param autoId The unique identifier of the auto to be updated
      * @param dateBuilt The new date when the auto was built
      * @param value The new monetary value of the auto
-     * @return A string message indicating the result of the update operation
+     * @param ifMatch The ETag of the version the client last saw, optional
+     * @return A string message indicating the result of the update operation, with the ETag of the new version;
+     *         412 if If-Match does not name the current version, 409 if another update got in first
      */
     @PutMapping(path = RESTNouns.USER + RESTNouns.USER_ID + RESTNouns.AUTO + RESTNouns.AUTO_ID)
-    public @ResponseBody String updateAutoByUser(
-            @PathVariable("user_id") Long userId, @PathVariable("auto_id") Long autoId, @RequestParam LocalDate dateBuilt, @RequestParam int value){
-        if (userRepository.existsById(userId) && autoRepository.existsById(autoId)) {
-            Optional<User> user = userRepository.findById(userId);
-            Optional<Auto> auto = autoRepository.findById(autoId);
-            if(user.isPresent() && auto.isPresent()){
-                auto.get().setDateBuilt(dateBuilt);
-                auto.get().setValue(value);
-
-                autoRepository.save(auto.get());
-                userRepository.save(user.get());
-            }
-            return "Auto with ID " + autoId + " updated successfully.";
+    public ResponseEntity<String> updateAutoByUser(
+            @PathVariable("user_id") Long userId, @PathVariable("auto_id") Long autoId, @RequestParam LocalDate dateBuilt, @RequestParam int value,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch){
+        Optional<Auto> auto = autoRepository.findByIdAndUserId(autoId, userId);
+        if (auto.isEmpty()) {
+            return ResponseEntity.ok("Auto with ID " + autoId + " not found.");
+        }
+        if (ifMatch != null && !ETags.matches(ifMatch, auto.get().getVersion())) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).eTag(ETags.of(auto.get().getVersion()))
+                    .body("Auto with ID " + autoId + " was changed by another request.");
+        }
+        int oldValue = auto.get().getValue();
+        auto.get().setDateBuilt(dateBuilt);
+        auto.get().setValue(value);
+        Auto saved;
+        try {
+            //The update is guarded by the version read above
+            saved = autoRepository.save(auto.get());
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("Auto with ID " + autoId + " was changed by another request.");
+        } finally {
+            entityCache.evictAutos(userId);
+        }
+        BookStats.Counts changes = bookStats.changes();
+        changes.removeAuto(oldValue);
+        changes.addAuto(value);
+        bookStats.apply(changes);
+        return ResponseEntity.ok().eTag(ETags.of(saved.getVersion()))
+                .body("Auto with ID " + autoId + " updated successfully.");
+    }
+
+    /**
+     * Changes only the given fields of an auto in a single UPDATE. A change of value first locks the row and
+     * reads the old value in the same transaction, for the book statistics.
+     *
+     * @param userId The unique identifier of the user who owns the auto
+     * @param autoId The unique identifier of the auto to be updated
+     * @param dateBuilt The new date when the auto was built, or absent to keep it
+     * @param value The new monetary value of the auto, or absent to keep it
+     * @param ifMatch The ETag of the version the client last saw, optional
+     * @return A string message indicating the result of the update operation;
+     *         400 if no field is given, 404 if the user has no such auto, 412 if If-Match does not name the current version
+     */
+    @PatchMapping(path = RESTNouns.USER + RESTNouns.USER_ID + RESTNouns.AUTO + RESTNouns.AUTO_ID)
+    public ResponseEntity<String> patchAutoByUser(
+            @PathVariable("user_id") Long userId, @PathVariable("auto_id") Long autoId,
+            @RequestParam(required = false) LocalDate dateBuilt, @RequestParam(required = false) Integer value,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (dateBuilt == null && value == null) {
+            return ResponseEntity.badRequest().body("Nothing to update.");
+        }
+        boolean patched;
+        if (value == null) {
+            //The build date is not counted, so there is nothing to read first
+            patched = autoRepository.patchByIdAndUserId(autoId, userId, ETags.versionOf(ifMatch), dateBuilt, null) > 0;
         } else {
-            return "Auto with ID " + autoId + " not found.";
+            Optional<AutoMatch> before = autoRepository.findAndPatchByIdAndUserId(autoId, userId, ETags.versionOf(ifMatch),
+                    dateBuilt, value);
+            patched = before.isPresent();
+            before.ifPresent(old -> {
+                BookStats.Counts changes = bookStats.changes();
+                changes.removeAuto(old.value());
+                changes.addAuto(value);
+                bookStats.apply(changes);
+            });
+        }
+        if (patched) {
+            entityCache.evictAutos(userId);
+            return ResponseEntity.ok("Auto with ID " + autoId + " updated successfully.");
         }
+        if (ifMatch != null && autoRepository.existsByIdAndUserId(autoId, userId)) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .body("Auto with ID " + autoId + " was changed by another request.");
+        }
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Auto with ID " + autoId + " not found.");
     }
 
     /**
-     * Deletes a specific auto object associated with a user.
+     * Deletes a specific auto object associated with a user, in one transaction with a locking read of what
+     * is deleted, for the book statistics.
      *
      * @param userId The unique identifier of the user who owns the auto
      * @param autoId The unique identifier of the auto to be deleted
@@ -301,11 +873,181 @@ public class MainController {
     @DeleteMapping(path = RESTNouns.USER + RESTNouns.USER_ID + RESTNouns.AUTO + RESTNouns.AUTO_ID)
     public @ResponseBody String deleteAutoByUser(
             @PathVariable("user_id") Long userId, @PathVariable("auto_id") Long autoId) {
-        if (userRepository.existsById(userId) && autoRepository.existsById(autoId)) {
-            autoRepository.deleteById(autoId);
+        Optional<AutoMatch> auto = autoRepository.findAndDeleteByIdAndUserId(autoId, userId);
+        if (auto.isPresent()) {
+            entityCache.evictAutos(userId);
+            BookStats.Counts changes = bookStats.changes();
+            changes.removeAuto(auto.get().value());
+            bookStats.apply(changes);
             return "Auto with ID " + autoId + " deleted successfully.";
         } else {
             return "Auto with ID " + autoId + " not found.";
         }
     }
-}
\ No newline at end of file
+
+    /* *
+     *  SUMMARY METHODS
+     * */
+
+    /**
+     * Retrieves counts and value statistics of a user's homes and autos, computed in the database.
+     *
+     * @param userId The unique identifier of the user to summarize
+     * @return The portfolio summary, or 404 if the user does not exist
+     */
+    @GetMapping(path = RESTNouns.USER + RESTNouns.ID + RESTNouns.SUMMARY)
+    public ResponseEntity<PortfolioSummary> getSummary(@PathVariable("id") Long userId) {
+        List<PortfolioSummary> summaries = portfolioSummaryService.summarize(List.of(userId));
+        if (summaries.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(summaries.get(0));
+    }
+
+    /**
+     * Retrieves portfolio summaries for many users in one request.
+     *
+     * @param userIds The unique identifiers of the users to summarize, at most {@link #MAX_PAGE_SIZE}
+     * @return One summary per existing user, in request order
+     */
+    @GetMapping(path = RESTNouns.USER + RESTNouns.SUMMARY)
+    public @ResponseBody List<PortfolioSummary> getSummaries(@RequestParam("ids") List<Long> userIds) {
+        if (userIds.size() > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_PAGE_SIZE + " ids per request");
+        }
+        return portfolioSummaryService.summarize(userIds);
+    }
+
+    /* *
+     *  SEARCH METHODS
+     * */
+
+    /**
+     * Searches homes of all users by heating type, location, value range and build date range.
+     * Only the supplied filters are applied; results are keyset paginated by id.
+     *
+     * @param filter The search filters, bound from request parameters
+     * @param limit The maximum number of homes to return, capped at {@link #MAX_PAGE_SIZE}
+     * @param cursor The nextCursor of the previous page, or absent for the first page
+     * @return A page of matching homes with their owner ids
+     */
+    @GetMapping(path = RESTNouns.HOME + RESTNouns.SEARCH)
+    public @ResponseBody CursorPage<HomeMatch> searchHomes(
+            @ModelAttribute HomeSearch filter,
+            @RequestParam(defaultValue = "100") int limit, @RequestParam(required = false) String cursor) {
+        int size = pageSize(limit);
+        return CursorPage.of(homeRepository.search(filter, afterId(cursor), size + 1), size, HomeMatch::id);
+    }
+
+    /**
+     * Searches autos of all users by value range and build date range.
+     * Only the supplied filters are applied; results are keyset paginated by id.
+     *
+     * @param filter The search filters, bound from request parameters
+     * @param limit The maximum number of autos to return, capped at {@link #MAX_PAGE_SIZE}
+     * @param cursor The nextCursor of the previous page, or absent for the first page
+     * @return A page of matching autos with their owner ids
+     */
+    @GetMapping(path = RESTNouns.AUTO + RESTNouns.SEARCH)
+    public @ResponseBody CursorPage<AutoMatch> searchAutos(
+            @ModelAttribute AutoSearch filter,
+            @RequestParam(defaultValue = "100") int limit, @RequestParam(required = false) String cursor) {
+        int size = pageSize(limit);
+        return CursorPage.of(autoRepository.search(filter, afterId(cursor), size + 1), size, AutoMatch::id);
+    }
+
+    /* *
+     *  PAGINATION HELPERS
+     * */
+
+    /**
+     * Validates a requested page size.
+     *
+     * @param limit The requested page size
+     * @return The page size, capped at {@link #MAX_PAGE_SIZE}
+     */
+    private static int pageSize(int limit) {
+        if (limit < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be at least 1");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+
+    /**
+     * Decodes a cursor token from a request.
+     *
+     * @param cursor The cursor token, or null for the first page
+     * @return The id to continue after
+     */
+    private static Integer afterId(String cursor) {
+        try {
+            return CursorPage.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    /**
+     * Validates an expand parameter.
+     *
+     * @param expand The requested associations, or null
+     * @return The associations to load
+     */
+    private static Set<String> expansions(List<String> expand) {
+        try {
+            return UserProfileService.expansions(expand);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Validates the id list of a multi-get.
+     *
+     * @param ids The requested ids
+     * @return The same ids
+     */
+    private static List<Long> checkIds(List<Long> ids) {
+        if (ids.size() > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "At most " + MAX_PAGE_SIZE + " ids per request");
+        }
+        return ids;
+    }
+
+    /**
+     * Answers a queued create.
+     *
+     * @param id The id the row will have, or null if the queue refused it
+     * @return 202 with the id, or 503 with Retry-After
+     */
+    private static ResponseEntity<Integer> accepted(Integer id) {
+        if (id == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(id);
+    }
+
+    /**
+     * Rejects an email that belongs to a user other than the one being written.
+     * Emails the email filter has never seen are accepted without a query.
+     *
+     * @param email The email about to be written
+     * @param userId The user it is written for, or null for a new user
+     */
+    private void checkEmailFree(String email, Long userId) {
+        Optional<Integer> owner = emailIndex.ownerOf(email);
+        if (owner.isPresent() && (userId == null || owner.get().longValue() != userId)) {
+            throw emailTaken(email);
+        }
+    }
+
+    /**
+     * Builds the 409 answer for an email that another user has.
+     *
+     * @param email The email
+     * @return The exception to throw
+     */
+    private static ResponseStatusException emailTaken(String email) {
+        return new ResponseStatusException(HttpStatus.CONFLICT, "Email " + email + " is already used by another user");
+    }
+}
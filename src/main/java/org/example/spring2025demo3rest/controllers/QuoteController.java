@@ -0,0 +1,70 @@
+package org.example.spring2025demo3rest.controllers;
+
+import org.example.spring2025demo3rest.pojos.QuoteJobStatus;
+import org.example.spring2025demo3rest.pojos.RateSpec;
+import org.example.spring2025demo3rest.services.RequoteService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Controller for the rating engine: the rate tables and the batch re-quote jobs that apply them
+ * to every Home and Auto.
+ */
+@Controller
+@RequestMapping(path = RESTNouns.VERSION_1 + RESTNouns.QUOTE)
+public class QuoteController {
+
+    @Autowired private RequoteService requoteService;
+
+    /**
+     * Retrieves the rates new re-quote jobs will use.
+     *
+     * @return The current rate spec
+     */
+    @GetMapping(path = RESTNouns.RATES)
+    public @ResponseBody RateSpec getRates() {
+        return requoteService.rates().spec();
+    }
+
+    /**
+     * Replaces the rates. Takes effect for the next re-quote job.
+     *
+     * @param spec The new rates
+     * @return The rate spec now in effect
+     */
+    @PutMapping(path = RESTNouns.RATES)
+    public @ResponseBody RateSpec updateRates(@RequestBody RateSpec spec) {
+        try {
+            return requoteService.updateRates(spec).spec();
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * Starts re-pricing every home and auto in the background.
+     *
+     * @return 202 with the new job, or 409 if a job is already running
+     */
+    @PostMapping(path = RESTNouns.JOB)
+    public ResponseEntity<QuoteJobStatus> startJob() {
+        return requoteService.start()
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.CONFLICT).build());
+    }
+
+    /**
+     * Retrieves the progress and throughput of a re-quote job.
+     *
+     * @param jobId The id returned when the job was started
+     * @return The job status, or 404 if there is no such job
+     */
+    @GetMapping(path = RESTNouns.JOB + RESTNouns.JOB_ID)
+    public ResponseEntity<QuoteJobStatus> getJob(@PathVariable("job_id") String jobId) {
+        return ResponseEntity.of(requoteService.status(jobId));
+    }
+}
@@ -9,8 +9,25 @@ public class RESTNouns {
     public static final String USER = "/users";
     public static final String HOME = "/homes";
     public static final String AUTO = "/autos";
+    public static final String BATCH = "/batch";
+    public static final String SUMMARY = "/summary";
+    public static final String SEARCH = "/search";
+    public static final String QUOTE = "/quotes";
+    public static final String RATES = "/rates";
+    public static final String JOB = "/jobs";
+    public static final String IMPORT = "/imports";
+    public static final String EXPORT = "/export";
+    public static final String BY_EMAIL = "/by-email";
+    public static final String STATS = "/stats";
+    public static final String ANALYTICS = "/analytics";
+    public static final String PERCENTILES = "/percentiles";
+    public static final String HISTOGRAM = "/histogram";
+    public static final String GROUPS = "/groups";
+    public static final String WRITE_BEHIND = "/write-behind";
+    public static final String FAILURES = "/failures";
     public static final String ID = "/{id}";
     public static final String HOME_ID = "/{home_id}";
     public static final String USER_ID = "/{user_id}";
     public static final String AUTO_ID = "/{auto_id}";
+    public static final String JOB_ID = "/{job_id}";
 }
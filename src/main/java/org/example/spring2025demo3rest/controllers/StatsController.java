@@ -0,0 +1,34 @@
+package org.example.spring2025demo3rest.controllers;
+
+import org.example.spring2025demo3rest.pojos.BookStatistics;
+import org.example.spring2025demo3rest.services.BookStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Controller for the statistics of the whole book, used by the management dashboards.
+ */
+@Controller
+@RequestMapping(path = RESTNouns.VERSION_1 + RESTNouns.STATS)
+public class StatsController {
+
+    @Autowired private BookStats bookStats;
+
+    /**
+     * Retrieves counts and total insured value of all homes, by heating type and location, and of all autos,
+     * by value bucket. Served from memory, so the cost does not depend on the size of the book.
+     *
+     * @return The statistics, or 503 with Retry-After while they are first loaded
+     */
+    @GetMapping
+    public ResponseEntity<BookStatistics> getStats() {
+        return bookStats.snapshot()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1").build());
+    }
+}
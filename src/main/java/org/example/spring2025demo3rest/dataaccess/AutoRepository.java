@@ -1,17 +1,221 @@
 package org.example.spring2025demo3rest.dataaccess;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.AutoGroupStats;
+import org.example.spring2025demo3rest.pojos.AutoMatch;
+import org.example.spring2025demo3rest.pojos.AutoView;
+import org.example.spring2025demo3rest.pojos.Owned;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Auto Repository interface that will be used by String to create a bean that handles all the CRUD operations
+ * Query methods run in read-only transactions, which may be served by a replica; writes declare their own
  */
-public interface AutoRepository extends CrudRepository<Auto, Long> {
+@Transactional(readOnly = true)
+public interface AutoRepository extends CrudRepository<Auto, Long>, AutoSearchRepository {
+
+    /**
+     * Get all autos for a user, with their owner
+     * @param userId the owner
+     * @return the autos
+     */
+    @EntityGraph(attributePaths = "user")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Auto> getAllByUserId(Long userId);
+
+    /**
+     * Get one auto only if it belongs to the given user, in a single query
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @return the auto, or empty if it does not exist or belongs to someone else
+     */
+    Optional<Auto> findByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Delete one auto only if it belongs to the given user, without loading it
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @return the number of rows deleted, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Auto a where a.id = :id and a.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Get one auto as a projection only if it belongs to the given user, locking its row until the
+     * surrounding transaction ends, so what is read is what a following write in that transaction changes
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @return the auto, or empty if it does not exist or belongs to someone else
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoMatch(a.id, a.user.id, a.dateBuilt, a.value) from Auto a where a.id = :id and a.user.id = :userId")
+    Optional<AutoMatch> lockMatchByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Delete one auto only if it belongs to the given user, in one transaction with a locking read of the row
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @return the auto as it was when deleted, or empty if nothing was deleted
+     */
+    @Transactional
+    default Optional<AutoMatch> findAndDeleteByIdAndUserId(Long id, Long userId) {
+        Optional<AutoMatch> auto = lockMatchByIdAndUserId(id, userId);
+        auto.ifPresent(locked -> deleteByIdAndUserId(id, userId));
+        return auto;
+    }
+
+    /**
+     * Check whether an auto exists and belongs to the given user, without loading it
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @return true if it does
+     */
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Delete all autos of the given users in one statement, without loading them
+     * @param userIds the owners
+     * @return the number of rows deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Auto a where a.user.id in :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Change the given fields of one auto in a single UPDATE, only if it belongs to the given user.
+     * Null arguments leave their column as it is. The version is incremented.
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @param version the expected current version, or null to update whatever the version
+     * @param dateBuilt the new build date, or null
+     * @param value the new value, or null
+     * @return the number of rows updated, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query("update Auto a set a.dateBuilt = coalesce(:dateBuilt, a.dateBuilt), a.value = coalesce(:value, a.value), "
+            + "a.version = a.version + 1 "
+            + "where a.id = :id and a.user.id = :userId and (:version is null or a.version = :version)")
+    int patchByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId, @Param("version") Long version,
+                           @Param("dateBuilt") LocalDate dateBuilt, @Param("value") Integer value);
+
+    /**
+     * Change the given fields of one auto like {@link #patchByIdAndUserId}, in one transaction with a
+     * locking read of the row before the UPDATE
+     * @param id the id of the auto
+     * @param userId the owner of the auto
+     * @param version the expected current version, or null to update whatever the version
+     * @param dateBuilt the new build date, or null
+     * @param value the new value, or null
+     * @return the auto as it was before the update, or empty if nothing was updated
+     */
+    @Transactional
+    default Optional<AutoMatch> findAndPatchByIdAndUserId(Long id, Long userId, Long version,
+                                                          LocalDate dateBuilt, Integer value) {
+        Optional<AutoMatch> auto = lockMatchByIdAndUserId(id, userId);
+        if (auto.isEmpty() || patchByIdAndUserId(id, userId, version, dateBuilt, value) == 0) {
+            return Optional.empty();
+        }
+        return auto;
+    }
+
+    /**
+     * Get all autos for a user as projections, in a single query that never touches the user table
+     * @param userId the owner of the autos
+     * @return the autos, ordered by id
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoView(a.id, a.dateBuilt, a.value, a.version) from Auto a where a.user.id = :userId order by a.id")
+    List<AutoView> findViewsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Get all autos of many users as projections tagged with their owner, in a single query
+     * @param userIds the owners of the autos
+     * @return the autos, ordered by owner then id
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.Owned(a.user.id, new org.example.spring2025demo3rest.pojos.AutoView(a.id, a.dateBuilt, a.value, a.version)) "
+            + "from Auto a where a.user.id in :userIds order by a.user.id, a.id")
+    List<Owned<AutoView>> findViewsByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Get the autos with the given ids as projections with their owner id, without loading them
+     * @param ids the ids of the autos
+     * @return the autos that exist, in no particular order
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoMatch(a.id, a.user.id, a.dateBuilt, a.value) from Auto a where a.id in :ids")
+    List<AutoMatch> findMatchesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Get the values of the autos of many users, without loading them, locking their rows until the
+     * surrounding transaction ends
+     * @param userIds the owners
+     * @return one value per auto, in no particular order
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select a.value from Auto a where a.user.id in :userIds")
+    List<Integer> lockValuesByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Get the next page of autos for a user after a cursor, ordered by id
+     * @param userId the owner of the autos
+     * @param id the last id of the previous page, 0 for the first page
+     * @param limit the maximum number of autos to return
+     * @return autos with an id greater than the cursor
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoView(a.id, a.dateBuilt, a.value, a.version) from Auto a where a.user.id = :userId and a.id > :id order by a.id")
+    List<AutoView> findViewsByUserIdAfter(@Param("userId") Long userId, @Param("id") Integer id, Limit limit);
+
+    /**
+     * Get the next chunk of autos of all users after an id, as projections, for batch jobs
+     * @param id the last id of the previous chunk, 0 for the first chunk
+     * @param limit the maximum number of autos to return
+     * @return autos with an id greater than the given one, ordered by id
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoView(a.id, a.dateBuilt, a.value, a.version) from Auto a "
+            + "where a.id > :id order by a.id")
+    List<AutoView> findViewsAfter(@Param("id") Integer id, Limit limit);
+
+    /**
+     * Stream all autos for a user through a forward-only cursor.
+     * Must be called inside a transaction and the stream must be closed.
+     * @param userId the owner of the autos
+     * @return a lazily fetched stream of autos, ordered by id
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoView(a.id, a.dateBuilt, a.value, a.version) from Auto a where a.user.id = :userId order by a.id")
+    Stream<AutoView> streamViewsByUserId(@Param("userId") Long userId);
 
     /**
-     * Get all auto for a user
-     * @param userId
-     * @return
+     * Aggregate the autos of many users in the database, grouped by owner
+     * @param userIds the owners to summarize
+     * @return one row per non-empty group
      */
-    Iterable<Auto> getAllByUserId(Long userId);
+    @Query("select new org.example.spring2025demo3rest.pojos.AutoGroupStats(a.user.id, count(a), sum(a.value), min(a.value), max(a.value)) "
+            + "from Auto a where a.user.id in :userIds group by a.user.id")
+    List<AutoGroupStats> summarizeByUserIds(@Param("userIds") Collection<Long> userIds);
 }
@@ -0,0 +1,21 @@
+package org.example.spring2025demo3rest.dataaccess;
+
+import org.example.spring2025demo3rest.pojos.AutoMatch;
+import org.example.spring2025demo3rest.pojos.AutoSearch;
+
+import java.util.List;
+
+/**
+ * Custom fragment of AutoRepository for dynamic auto searches
+ */
+public interface AutoSearchRepository {
+
+    /**
+     * Find autos matching the supplied filters, ordered by id
+     * @param filter the filters, only non-null fields are applied
+     * @param afterId the last id of the previous page, 0 for the first page
+     * @param limit the maximum number of autos to return
+     * @return the matching autos with an id greater than afterId
+     */
+    List<AutoMatch> search(AutoSearch filter, Integer afterId, int limit);
+}
@@ -0,0 +1,62 @@
+package org.example.spring2025demo3rest.dataaccess;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.AutoMatch;
+import org.example.spring2025demo3rest.pojos.AutoSearch;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds auto searches with the Criteria API, emitting a predicate only for each filter that was supplied
+ * so the database can pick the matching index from Auto's table definition.
+ */
+public class AutoSearchRepositoryImpl implements AutoSearchRepository {
+
+    @PersistenceContext private EntityManager entityManager;
+
+    @Override
+    public List<AutoMatch> search(AutoSearch filter, Integer afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AutoMatch> query = cb.createQuery(AutoMatch.class);
+        Root<Auto> auto = query.from(Auto.class);
+        query.select(cb.construct(AutoMatch.class, auto.get("id"), auto.get("user").get("id"),
+                        auto.get("dateBuilt"), auto.get("value")))
+                .where(matching(filter).and(idAfter(afterId)).toPredicate(auto, query, cb))
+                .orderBy(cb.asc(auto.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Combine the supplied filters into one specification.
+     * @param filter the filters, only non-null fields are applied
+     * @return the specification
+     */
+    public static Specification<Auto> matching(AutoSearch filter) {
+        List<Specification<Auto>> specs = new ArrayList<>();
+        if (filter.minValue() != null) {
+            specs.add((auto, query, cb) -> cb.greaterThanOrEqualTo(auto.get("value"), filter.minValue()));
+        }
+        if (filter.maxValue() != null) {
+            specs.add((auto, query, cb) -> cb.lessThanOrEqualTo(auto.get("value"), filter.maxValue()));
+        }
+        if (filter.builtFrom() != null) {
+            specs.add((auto, query, cb) -> cb.greaterThanOrEqualTo(auto.<LocalDate>get("dateBuilt"), filter.builtFrom()));
+        }
+        if (filter.builtBefore() != null) {
+            specs.add((auto, query, cb) -> cb.lessThan(auto.<LocalDate>get("dateBuilt"), filter.builtBefore()));
+        }
+        return Specification.allOf(specs);
+    }
+
+    private static Specification<Auto> idAfter(Integer afterId) {
+        return (auto, query, cb) -> cb.greaterThan(auto.get("id"), afterId);
+    }
+}
@@ -1,17 +1,227 @@
 package org.example.spring2025demo3rest.dataaccess;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.HomeGroupStats;
+import org.example.spring2025demo3rest.pojos.HomeMatch;
+import org.example.spring2025demo3rest.pojos.HomeView;
+import org.example.spring2025demo3rest.pojos.Owned;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Auto Repository interface that will be used by String to create a bean that handles all the CRUD operations
+ * Query methods run in read-only transactions, which may be served by a replica; writes declare their own
  */
-public interface HomeRepository extends CrudRepository<Home, Long> {
+@Transactional(readOnly = true)
+public interface HomeRepository extends CrudRepository<Home, Long>, HomeSearchRepository {
+
+    /**
+     * Get all homes for a user, with their owner
+     * @param userId the owner
+     * @return the homes
+     */
+    @EntityGraph(attributePaths = "user")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Home> getAllByUserId(Long userId);
+
+    /**
+     * Get one home only if it belongs to the given user, in a single query
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @return the home, or empty if it does not exist or belongs to someone else
+     */
+    Optional<Home> findByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Delete one home only if it belongs to the given user, without loading it
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @return the number of rows deleted, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Home h where h.id = :id and h.user.id = :userId")
+    int deleteByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Get one home as a projection only if it belongs to the given user, locking its row until the
+     * surrounding transaction ends, so what is read is what a following write in that transaction changes
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @return the home, or empty if it does not exist or belongs to someone else
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeMatch(h.id, h.user.id, h.dateBuilt, h.value, h.heatingType, h.location) from Home h where h.id = :id and h.user.id = :userId")
+    Optional<HomeMatch> lockMatchByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId);
+
+    /**
+     * Delete one home only if it belongs to the given user, in one transaction with a locking read of the row
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @return the home as it was when deleted, or empty if nothing was deleted
+     */
+    @Transactional
+    default Optional<HomeMatch> findAndDeleteByIdAndUserId(Long id, Long userId) {
+        Optional<HomeMatch> home = lockMatchByIdAndUserId(id, userId);
+        home.ifPresent(locked -> deleteByIdAndUserId(id, userId));
+        return home;
+    }
+
+    /**
+     * Check whether a home exists and belongs to the given user, without loading it
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @return true if it does
+     */
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    /**
+     * Delete all homes of the given users in one statement, without loading them
+     * @param userIds the owners
+     * @return the number of rows deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from Home h where h.user.id in :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Change the given fields of one home in a single UPDATE, only if it belongs to the given user.
+     * Null arguments leave their column as it is. The version is incremented.
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @param version the expected current version, or null to update whatever the version
+     * @param dateBuilt the new build date, or null
+     * @param value the new value, or null
+     * @param heatingType the new heating type, or null
+     * @param location the new location, or null
+     * @return the number of rows updated, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query("update Home h set h.dateBuilt = coalesce(:dateBuilt, h.dateBuilt), h.value = coalesce(:value, h.value), "
+            + "h.heatingType = coalesce(:heatingType, h.heatingType), h.location = coalesce(:location, h.location), "
+            + "h.version = h.version + 1 "
+            + "where h.id = :id and h.user.id = :userId and (:version is null or h.version = :version)")
+    int patchByIdAndUserId(@Param("id") Long id, @Param("userId") Long userId, @Param("version") Long version,
+                           @Param("dateBuilt") LocalDate dateBuilt, @Param("value") Integer value,
+                           @Param("heatingType") Home.HeatingType heatingType, @Param("location") Home.Location location);
+
+    /**
+     * Change the given fields of one home like {@link #patchByIdAndUserId}, in one transaction with a
+     * locking read of the row before the UPDATE
+     * @param id the id of the home
+     * @param userId the owner of the home
+     * @param version the expected current version, or null to update whatever the version
+     * @param dateBuilt the new build date, or null
+     * @param value the new value, or null
+     * @param heatingType the new heating type, or null
+     * @param location the new location, or null
+     * @return the home as it was before the update, or empty if nothing was updated
+     */
+    @Transactional
+    default Optional<HomeMatch> findAndPatchByIdAndUserId(Long id, Long userId, Long version,
+                                                          LocalDate dateBuilt, Integer value,
+                                                    Home.HeatingType heatingType, Home.Location location) {
+        Optional<HomeMatch> home = lockMatchByIdAndUserId(id, userId);
+        if (home.isEmpty() || patchByIdAndUserId(id, userId, version, dateBuilt, value, heatingType, location) == 0) {
+            return Optional.empty();
+        }
+        return home;
+    }
+
+    /**
+     * Get all homes for a user as projections, in a single query that never touches the user table
+     * @param userId the owner of the homes
+     * @return the homes, ordered by id
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeView(h.id, h.dateBuilt, h.value, h.heatingType, h.location, h.version) from Home h where h.user.id = :userId order by h.id")
+    List<HomeView> findViewsByUserId(@Param("userId") Long userId);
+
+    /**
+     * Get all homes of many users as projections tagged with their owner, in a single query
+     * @param userIds the owners of the homes
+     * @return the homes, ordered by owner then id
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.Owned(h.user.id, new org.example.spring2025demo3rest.pojos.HomeView(h.id, h.dateBuilt, h.value, h.heatingType, h.location, h.version)) "
+            + "from Home h where h.user.id in :userIds order by h.user.id, h.id")
+    List<Owned<HomeView>> findViewsByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Get the homes with the given ids as projections with their owner id, without loading them
+     * @param ids the ids of the homes
+     * @return the homes that exist, in no particular order
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeMatch(h.id, h.user.id, h.dateBuilt, h.value, h.heatingType, h.location) from Home h where h.id in :ids")
+    List<HomeMatch> findMatchesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Get the homes of many users as projections, locking their rows until the surrounding transaction ends
+     * @param userIds the owners
+     * @return the homes, in no particular order
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeMatch(h.id, h.user.id, h.dateBuilt, h.value, h.heatingType, h.location) from Home h where h.user.id in :userIds")
+    List<HomeMatch> lockMatchesByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * Get the next page of homes for a user after a cursor, ordered by id
+     * @param userId the owner of the homes
+     * @param id the last id of the previous page, 0 for the first page
+     * @param limit the maximum number of homes to return
+     * @return homes with an id greater than the cursor
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeView(h.id, h.dateBuilt, h.value, h.heatingType, h.location, h.version) from Home h where h.user.id = :userId and h.id > :id order by h.id")
+    List<HomeView> findViewsByUserIdAfter(@Param("userId") Long userId, @Param("id") Integer id, Limit limit);
+
+    /**
+     * Get the next chunk of homes of all users after an id, as projections, for batch jobs
+     * @param id the last id of the previous chunk, 0 for the first chunk
+     * @param limit the maximum number of homes to return
+     * @return homes with an id greater than the given one, ordered by id
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeView(h.id, h.dateBuilt, h.value, h.heatingType, h.location, h.version) from Home h "
+            + "where h.id > :id order by h.id")
+    List<HomeView> findViewsAfter(@Param("id") Integer id, Limit limit);
+
+    /**
+     * Stream all homes for a user through a forward-only cursor.
+     * Must be called inside a transaction and the stream must be closed.
+     * @param userId the owner of the homes
+     * @return a lazily fetched stream of homes, ordered by id
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeView(h.id, h.dateBuilt, h.value, h.heatingType, h.location, h.version) from Home h where h.user.id = :userId order by h.id")
+    Stream<HomeView> streamViewsByUserId(@Param("userId") Long userId);
 
     /**
-     * Get all autos for a user
-     * @param userId
-     * @return
+     * Aggregate the homes of many users in the database, grouped by owner, heating type and location
+     * @param userIds the owners to summarize
+     * @return one row per non-empty group
      */
-    Iterable<Home> getAllByUserId(Long userId);
+    @Query("select new org.example.spring2025demo3rest.pojos.HomeGroupStats(h.user.id, h.heatingType, h.location, count(h), sum(h.value), min(h.value), max(h.value)) "
+            + "from Home h where h.user.id in :userIds group by h.user.id, h.heatingType, h.location")
+    List<HomeGroupStats> summarizeByUserIds(@Param("userIds") Collection<Long> userIds);
 }
@@ -0,0 +1,21 @@
+package org.example.spring2025demo3rest.dataaccess;
+
+import org.example.spring2025demo3rest.pojos.HomeMatch;
+import org.example.spring2025demo3rest.pojos.HomeSearch;
+
+import java.util.List;
+
+/**
+ * Custom fragment of HomeRepository for dynamic home searches
+ */
+public interface HomeSearchRepository {
+
+    /**
+     * Find homes matching the supplied filters, ordered by id
+     * @param filter the filters, only non-null fields are applied
+     * @param afterId the last id of the previous page, 0 for the first page
+     * @param limit the maximum number of homes to return
+     * @return the matching homes with an id greater than afterId
+     */
+    List<HomeMatch> search(HomeSearch filter, Integer afterId, int limit);
+}
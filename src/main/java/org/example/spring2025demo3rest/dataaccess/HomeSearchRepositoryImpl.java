@@ -0,0 +1,68 @@
+package org.example.spring2025demo3rest.dataaccess;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Root;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.HomeMatch;
+import org.example.spring2025demo3rest.pojos.HomeSearch;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds home searches with the Criteria API, emitting a predicate only for each filter that was supplied
+ * so the database can pick the matching index from Home's table definition.
+ */
+public class HomeSearchRepositoryImpl implements HomeSearchRepository {
+
+    @PersistenceContext private EntityManager entityManager;
+
+    @Override
+    public List<HomeMatch> search(HomeSearch filter, Integer afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<HomeMatch> query = cb.createQuery(HomeMatch.class);
+        Root<Home> home = query.from(Home.class);
+        query.select(cb.construct(HomeMatch.class, home.get("id"), home.get("user").get("id"),
+                        home.get("dateBuilt"), home.get("value"), home.get("heatingType"), home.get("location")))
+                .where(matching(filter).and(idAfter(afterId)).toPredicate(home, query, cb))
+                .orderBy(cb.asc(home.get("id")));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Combine the supplied filters into one specification.
+     * @param filter the filters, only non-null fields are applied
+     * @return the specification
+     */
+    public static Specification<Home> matching(HomeSearch filter) {
+        List<Specification<Home>> specs = new ArrayList<>();
+        if (filter.heatingType() != null) {
+            specs.add((home, query, cb) -> cb.equal(home.get("heatingType"), filter.heatingType()));
+        }
+        if (filter.location() != null) {
+            specs.add((home, query, cb) -> cb.equal(home.get("location"), filter.location()));
+        }
+        if (filter.minValue() != null) {
+            specs.add((home, query, cb) -> cb.greaterThanOrEqualTo(home.get("value"), filter.minValue()));
+        }
+        if (filter.maxValue() != null) {
+            specs.add((home, query, cb) -> cb.lessThanOrEqualTo(home.get("value"), filter.maxValue()));
+        }
+        if (filter.builtFrom() != null) {
+            specs.add((home, query, cb) -> cb.greaterThanOrEqualTo(home.<LocalDate>get("dateBuilt"), filter.builtFrom()));
+        }
+        if (filter.builtBefore() != null) {
+            specs.add((home, query, cb) -> cb.lessThan(home.<LocalDate>get("dateBuilt"), filter.builtBefore()));
+        }
+        return Specification.allOf(specs);
+    }
+
+    private static Specification<Home> idAfter(Integer afterId) {
+        return (home, query, cb) -> cb.greaterThan(home.get("id"), afterId);
+    }
+}
@@ -1,14 +1,115 @@
 package org.example.spring2025demo3rest.dataaccess;
 
+import jakarta.persistence.QueryHint;
 import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.pojos.UserEmail;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * User Repository interface that will be used by String to create a bean that handles all the CRUD operations
+ * Query methods run in read-only transactions, which may be served by a replica; writes declare their own
  */
+@Transactional(readOnly = true)
 public interface UserRepository extends CrudRepository<User, Long> {
     User getUserById(Integer id);
 
     //This is where you write code needed beyond the basics
 
+    /**
+     * Get the next page of users after a cursor, ordered by id
+     * @param id the last id of the previous page, 0 for the first page
+     * @param limit the maximum number of users to return
+     * @return users with an id greater than the cursor
+     */
+    List<User> findByIdGreaterThanOrderByIdAsc(Integer id, Limit limit);
+
+    /**
+     * Stream every user through a forward-only cursor.
+     * Must be called inside a transaction and the stream must be closed.
+     * @return a lazily fetched stream of all users, ordered by id
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("select u from User u order by u.id")
+    Stream<User> streamAll();
+
+    /**
+     * Stream the email of every user through a forward-only cursor, without loading users.
+     * Must be called inside a transaction and the stream must be closed.
+     * @return a lazily fetched stream of all emails
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select u.email from User u where u.email is not null")
+    Stream<String> streamEmails();
+
+    /**
+     * Find a user by email, through the unique index on email
+     * @param email the email
+     * @return the user, or empty if no user has this email
+     */
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Find the id of the user with an email, without loading the user
+     * @param email the email
+     * @return the id, or empty if no user has this email
+     */
+    @Query("select u.id from User u where u.email = :email")
+    Optional<Integer> findIdByEmail(@Param("email") String email);
+
+    /**
+     * Find which of the given ids belong to existing users, without loading them
+     * @param ids the ids to check
+     * @return the ids that exist
+     */
+    @Query("select u.id from User u where u.id in :ids")
+    List<Integer> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Find the ids of the users with the given emails, without loading them
+     * @param emails the emails to look up
+     * @return the id and email of each matching user
+     */
+    @Query("select new org.example.spring2025demo3rest.pojos.UserEmail(u.id, u.email) from User u where u.email in :emails")
+    List<UserEmail> findIdsByEmails(@Param("emails") Collection<String> emails);
+
+    /**
+     * Change the given fields of one user in a single UPDATE. Null arguments leave their column as it is.
+     * The version is incremented.
+     * @param id the id of the user
+     * @param version the expected current version, or null to update whatever the version
+     * @param name the new name, or null
+     * @param email the new email, or null
+     * @return the number of rows updated, 0 or 1
+     */
+    @Transactional
+    @Modifying
+    @Query("update User u set u.name = coalesce(:name, u.name), u.email = coalesce(:email, u.email), "
+            + "u.version = u.version + 1 where u.id = :id and (:version is null or u.version = :version)")
+    int patchById(@Param("id") Long id, @Param("version") Long version,
+                  @Param("name") String name, @Param("email") String email);
+
+    /**
+     * Delete the given users in one statement, without loading them.
+     * Their homes and autos must be deleted first.
+     * @param ids the ids of the users
+     * @return the number of rows deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from User u where u.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
 }
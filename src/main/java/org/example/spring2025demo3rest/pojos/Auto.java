@@ -1,7 +1,11 @@
 package org.example.spring2025demo3rest.pojos;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 
@@ -10,13 +14,22 @@ import java.time.LocalDate;
  * This entity demonstrates relationships in ORM and date fields.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_auto_user", columnList = "user_id, id"),
+        @Index(name = "idx_auto_built", columnList = "date_built"),
+        @Index(name = "idx_auto_value", columnList = "value"),
+        @Index(name = "idx_auto_id_version", columnList = "id, version")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Auto {
 
     /**
      * Unique identifier for the Auto entity.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "auto_seq")
+    @SequenceGenerator(name = "auto_seq", sequenceName = "auto_seq", allocationSize = 50)
     private Integer id;
 
     /**
@@ -30,10 +43,25 @@ public class Auto {
      */
     private int value;
 
+    /**
+     * Incremented on every update, used for optimistic locking and ETags.
+     * Rows that predate the column start at 0.
+     */
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * The yearly premium from the last re-quote run, or null if the auto has not been quoted yet.
+     */
+    private Integer premium;
+
     /**
      * The user associated with this auto. A user can own multiple autos.
+     * Loaded lazily, so reading an auto does not also read its owner.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -77,6 +105,30 @@ public class Auto {
         this.value = value;
     }
 
+    /**
+     * Gets the version of the auto, which changes on every update.
+     * @return the version, or null if the auto has not been saved yet.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the premium of the auto.
+     * @return the premium, or null if not quoted yet.
+     */
+    public Integer getPremium() {
+        return premium;
+    }
+
+    /**
+     * Sets the premium of the auto.
+     * @param premium the premium to set.
+     */
+    public void setPremium(Integer premium) {
+        this.premium = premium;
+    }
+
     /**
      * Gets the user associated with this auto.
      * @return the user who owns the auto.
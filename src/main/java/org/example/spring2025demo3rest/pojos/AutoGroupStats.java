@@ -0,0 +1,21 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * One row of the autos GROUP BY owner aggregate query.
+ *
+ * @param userId the owner of the autos
+ * @param count the number of autos
+ * @param total the sum of their values
+ * @param min the lowest value
+ * @param max the highest value
+ */
+public record AutoGroupStats(Integer userId, Long count, Long total, Integer min, Integer max) {
+
+    /**
+     * Gets the statistics of this group.
+     * @return the value summary
+     */
+    public ValueSummary summary() {
+        return new ValueSummary(count, total, min, max);
+    }
+}
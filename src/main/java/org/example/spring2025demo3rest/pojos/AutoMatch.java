@@ -0,0 +1,17 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * One result of an auto search: the auto's columns and the id of its owner.
+ *
+ * @param id the id of the auto
+ * @param userId the id of the user who owns the auto
+ * @param dateBuilt the date when the auto was built
+ * @param value the estimated value of the auto
+ */
+public record AutoMatch(Integer id, Integer userId, @JsonFormat(pattern = "yyyy-MM-dd") LocalDate dateBuilt,
+                        int value) {
+}
@@ -0,0 +1,15 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.LocalDate;
+
+/**
+ * Filters for the auto search endpoint. Every field is optional and only the
+ * supplied ones become predicates.
+ *
+ * @param minValue only autos valued at least this much
+ * @param maxValue only autos valued at most this much
+ * @param builtFrom only autos built on or after this date
+ * @param builtBefore only autos built before this date
+ */
+public record AutoSearch(Integer minValue, Integer maxValue, LocalDate builtFrom, LocalDate builtBefore) {
+}
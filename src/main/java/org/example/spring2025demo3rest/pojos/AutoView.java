@@ -0,0 +1,19 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only projection of an Auto for the list endpoints.
+ * Holds only the auto's own columns, so lists neither load nor repeat the owning User.
+ *
+ * @param id the id of the auto
+ * @param dateBuilt the date when the auto was built
+ * @param value the estimated value of the auto
+ * @param version the version of the auto, for the list ETag only
+ */
+public record AutoView(Integer id, @JsonFormat(pattern = "yyyy-MM-dd") LocalDate dateBuilt, int value,
+                       @JsonIgnore long version) {
+}
@@ -0,0 +1,48 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Counts and total insured value of every home and auto in the book.
+ *
+ * @param homes all homes
+ * @param autos all autos
+ * @param homesByHeatingTypeAndLocation one cell per heating type and location, in declaration order
+ * @param autosByValue one bucket per range of auto values, lowest first
+ * @param reconciledAt when the figures were last checked against the database
+ */
+public record BookStatistics(Totals homes, Totals autos, List<HomeCell> homesByHeatingTypeAndLocation,
+                             List<AutoBucket> autosByValue, Instant reconciledAt) {
+
+    /**
+     * A count of rows and the sum of their values.
+     *
+     * @param count the number of rows
+     * @param totalValue the sum of their values
+     */
+    public record Totals(long count, long totalValue) {
+    }
+
+    /**
+     * The homes with one heating type and location. Null stands for homes without one.
+     *
+     * @param heatingType the heating type
+     * @param location the location
+     * @param count the number of homes
+     * @param totalValue the sum of their values
+     */
+    public record HomeCell(Home.HeatingType heatingType, Home.Location location, long count, long totalValue) {
+    }
+
+    /**
+     * The autos whose value is in [minValue, maxValue).
+     *
+     * @param minValue the lowest value in the bucket, null for the first bucket
+     * @param maxValue the value where the next bucket starts, null for the last bucket
+     * @param count the number of autos
+     * @param totalValue the sum of their values
+     */
+    public record AutoBucket(Integer minValue, Integer maxValue, long count, long totalValue) {
+    }
+}
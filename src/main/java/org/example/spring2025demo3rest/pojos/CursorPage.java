@@ -0,0 +1,59 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated list.
+ * The cursor is an opaque token wrapping the last id of the page, so the next
+ * page is fetched with "id &gt; cursor" instead of an OFFSET scan.
+ *
+ * @param items the entities on this page, ordered by id
+ * @param nextCursor the token for the next page, or null if this is the last page
+ * @param <T> the entity type
+ */
+public record CursorPage<T>(List<T> items, String nextCursor) {
+
+    /**
+     * Encodes an id as an opaque cursor token.
+     * @param id the last id of a page
+     * @return the cursor token
+     */
+    public static String encode(Integer id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(id.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Decodes a cursor token back into the id it wraps.
+     * @param cursor the cursor token, may be null for the first page
+     * @return the id to continue after, or 0 for the first page
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static Integer decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        String id = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+        return Integer.valueOf(id);
+    }
+
+    /**
+     * Builds a page from a result that was fetched with one extra row,
+     * which is only used to tell whether another page follows.
+     * @param rows up to limit + 1 rows ordered by id
+     * @param limit the requested page size
+     * @param idOf function returning the id of a row
+     * @param <T> the entity type
+     * @return the page
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Integer> idOf) {
+        if (rows.size() <= limit) {
+            return new CursorPage<>(rows, null);
+        }
+        List<T> items = rows.subList(0, limit);
+        return new CursorPage<>(items, encode(idOf.apply(items.get(limit - 1))));
+    }
+}
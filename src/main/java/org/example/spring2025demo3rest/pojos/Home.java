@@ -1,7 +1,11 @@
 package org.example.spring2025demo3rest.pojos;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 
@@ -10,13 +14,23 @@ import java.time.LocalDate;
  * This entity demonstrates relationships in ORM, enum fields, and date fields.
  */
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_home_user", columnList = "user_id, id"),
+        @Index(name = "idx_home_heating_location_built", columnList = "heating_type, location, date_built"),
+        @Index(name = "idx_home_location_value", columnList = "location, value"),
+        @Index(name = "idx_home_value", columnList = "value"),
+        @Index(name = "idx_home_id_version", columnList = "id, version")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Home {
 
     /**
      * Unique identifier for the Home entity.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "home_seq")
+    @SequenceGenerator(name = "home_seq", sequenceName = "home_seq", allocationSize = 50)
     private Integer id;
 
     /**
@@ -41,10 +55,25 @@ public class Home {
      */
     private Location location;
 
+    /**
+     * Incremented on every update, used for optimistic locking and ETags.
+     * Rows that predate the column start at 0.
+     */
+    @Version
+    @ColumnDefault("0")
+    @JsonIgnore
+    private Long version;
+
+    /**
+     * The yearly premium from the last re-quote run, or null if the home has not been quoted yet.
+     */
+    private Integer premium;
+
     /**
      * The user associated with this home. A user can own multiple homes.
+     * Loaded lazily, so reading a home does not also read its owner.
      */
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
@@ -120,6 +149,30 @@ public class Home {
         this.location = location;
     }
 
+    /**
+     * Gets the version of the home, which changes on every update.
+     * @return the version, or null if the home has not been saved yet.
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the premium of the home.
+     * @return the premium, or null if not quoted yet.
+     */
+    public Integer getPremium() {
+        return premium;
+    }
+
+    /**
+     * Sets the premium of the home.
+     * @param premium the premium to set.
+     */
+    public void setPremium(Integer premium) {
+        this.premium = premium;
+    }
+
     /**
      * Gets the user associated with this home.
      * @return the user who owns the home.
@@ -0,0 +1,24 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * One row of the homes GROUP BY owner, heating type and location aggregate query.
+ *
+ * @param userId the owner of the homes
+ * @param heatingType the heating type of the group
+ * @param location the location of the group
+ * @param count the number of homes in the group
+ * @param total the sum of their values
+ * @param min the lowest value in the group
+ * @param max the highest value in the group
+ */
+public record HomeGroupStats(Integer userId, Home.HeatingType heatingType, Home.Location location,
+                             Long count, Long total, Integer min, Integer max) {
+
+    /**
+     * Gets the statistics of this group.
+     * @return the value summary
+     */
+    public ValueSummary summary() {
+        return new ValueSummary(count, total, min, max);
+    }
+}
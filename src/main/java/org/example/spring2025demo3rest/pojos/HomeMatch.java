@@ -0,0 +1,19 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * One result of a home search: the home's columns and the id of its owner.
+ *
+ * @param id the id of the home
+ * @param userId the id of the user who owns the home
+ * @param dateBuilt the date when the home was built
+ * @param value the estimated value of the home
+ * @param heatingType the type of heating system used in the home
+ * @param location the location type of the home
+ */
+public record HomeMatch(Integer id, Integer userId, @JsonFormat(pattern = "yyyy-MM-dd") LocalDate dateBuilt,
+                        int value, Home.HeatingType heatingType, Home.Location location) {
+}
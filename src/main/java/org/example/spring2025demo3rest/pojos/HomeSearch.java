@@ -0,0 +1,19 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.LocalDate;
+
+/**
+ * Filters for the home search endpoint. Every field is optional and only the
+ * supplied ones become predicates.
+ *
+ * @param heatingType only homes with this heating type
+ * @param location only homes in this location
+ * @param minValue only homes valued at least this much
+ * @param maxValue only homes valued at most this much
+ * @param builtFrom only homes built on or after this date
+ * @param builtBefore only homes built before this date
+ */
+public record HomeSearch(Home.HeatingType heatingType, Home.Location location,
+                         Integer minValue, Integer maxValue,
+                         LocalDate builtFrom, LocalDate builtBefore) {
+}
@@ -0,0 +1,21 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDate;
+
+/**
+ * Read-only projection of a Home for the list endpoints.
+ * Holds only the home's own columns, so lists neither load nor repeat the owning User.
+ *
+ * @param id the id of the home
+ * @param dateBuilt the date when the home was built
+ * @param value the estimated value of the home
+ * @param heatingType the type of heating system used in the home
+ * @param location the location type of the home
+ * @param version the version of the home, for the list ETag only
+ */
+public record HomeView(Integer id, @JsonFormat(pattern = "yyyy-MM-dd") LocalDate dateBuilt, int value,
+                       Home.HeatingType heatingType, Home.Location location, @JsonIgnore long version) {
+}
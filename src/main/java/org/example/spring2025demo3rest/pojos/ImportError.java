@@ -0,0 +1,10 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * A row that was rejected by an import.
+ *
+ * @param line the 1-based line number in the upload, counting the CSV header
+ * @param message why the row was rejected
+ */
+public record ImportError(long line, String message) {
+}
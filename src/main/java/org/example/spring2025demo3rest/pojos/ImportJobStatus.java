@@ -0,0 +1,23 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Progress and outcome of a home/auto import.
+ *
+ * @param id the job id
+ * @param state RUNNING, COMPLETED or FAILED
+ * @param rowsRead the number of data rows parsed so far
+ * @param homesCreated the number of homes committed so far
+ * @param autosCreated the number of autos committed so far
+ * @param rowsRejected the number of rows rejected so far
+ * @param errors the first rejected rows, up to app.import.max-errors
+ * @param startedAt when the upload started
+ * @param finishedAt when the upload finished, or null while running
+ * @param error the failure message if the import stopped early, or null
+ */
+public record ImportJobStatus(String id, String state, long rowsRead, long homesCreated, long autosCreated,
+                              long rowsRejected, List<ImportError> errors,
+                              Instant startedAt, Instant finishedAt, String error) {
+}
@@ -0,0 +1,17 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * One row of a home/auto import, as read from a CSV line or an NDJSON object, before validation.
+ * Fields are kept as text so a bad value is reported against its row instead of failing the upload.
+ *
+ * @param type "home" or "auto"
+ * @param userId the id of the owner, takes precedence over email
+ * @param email the email of the owner, used when userId is blank
+ * @param dateBuilt the build date, yyyy-MM-dd
+ * @param value the monetary value
+ * @param heatingType a Home.HeatingType name, homes only
+ * @param location a Home.Location name, homes only
+ */
+public record ImportRow(String type, String userId, String email, String dateBuilt, String value,
+                        String heatingType, String location) {
+}
@@ -0,0 +1,13 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.util.List;
+
+/**
+ * Result of looking up many rows by id in one request.
+ *
+ * @param items the rows found, in the order their ids were requested, without duplicates
+ * @param missing the requested ids that matched no row, in request order
+ * @param <T> the row type
+ */
+public record MultiGet<T>(List<T> items, List<Long> missing) {
+}
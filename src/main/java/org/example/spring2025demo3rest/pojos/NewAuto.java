@@ -0,0 +1,27 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * The fields a client supplies to create an Auto, used by the bulk create endpoint.
+ *
+ * @param dateBuilt the date when the auto was built
+ * @param value the monetary value of the auto
+ */
+public record NewAuto(@JsonFormat(pattern = "yyyy-MM-dd") LocalDate dateBuilt, int value) {
+
+    /**
+     * Creates a new, not yet persisted Auto from these fields.
+     * @param owner the user who owns the auto
+     * @return the auto
+     */
+    public Auto toAuto(User owner) {
+        Auto auto = new Auto();
+        auto.setDateBuilt(dateBuilt);
+        auto.setValue(value);
+        auto.setUser(owner);
+        return auto;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * The fields a client supplies to create a Home, used by the bulk create endpoint.
+ *
+ * @param dateBuilt the date when the home was built
+ * @param value the monetary value of the home
+ * @param heatingType the type of heating system used in the home
+ * @param location the location type of the home
+ */
+public record NewHome(@JsonFormat(pattern = "yyyy-MM-dd") LocalDate dateBuilt, int value,
+                      Home.HeatingType heatingType, Home.Location location) {
+
+    /**
+     * Creates a new, not yet persisted Home from these fields.
+     * @param owner the user who owns the home
+     * @return the home
+     */
+    public Home toHome(User owner) {
+        Home home = new Home();
+        home.setDateBuilt(dateBuilt);
+        home.setValue(value);
+        home.setHeatingType(heatingType);
+        home.setLocation(location);
+        home.setUser(owner);
+        return home;
+    }
+}
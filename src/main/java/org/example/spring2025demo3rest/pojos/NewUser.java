@@ -0,0 +1,21 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * The fields a client supplies to create a User, used by the bulk create endpoint.
+ *
+ * @param name the name of the user
+ * @param email the email address of the user
+ */
+public record NewUser(String name, String email) {
+
+    /**
+     * Creates a new, not yet persisted User from these fields.
+     * @return the user
+     */
+    public User toUser() {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(email);
+        return user;
+    }
+}
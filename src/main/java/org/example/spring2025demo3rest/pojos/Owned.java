@@ -0,0 +1,11 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * A projection tagged with the id of the user who owns it, for queries that read the items of many users at once.
+ *
+ * @param userId the id of the owner
+ * @param view the projection of the owned item
+ * @param <T> the projection type
+ */
+public record Owned<T>(Integer userId, T view) {
+}
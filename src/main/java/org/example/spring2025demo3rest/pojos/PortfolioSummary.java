@@ -0,0 +1,18 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.util.Map;
+
+/**
+ * Aggregate view of everything one user insures, computed in SQL.
+ *
+ * @param userId the owner
+ * @param homes statistics over all of the user's homes
+ * @param homesByHeatingType home statistics per heating type
+ * @param homesByLocation home statistics per location
+ * @param autos statistics over all of the user's autos
+ */
+public record PortfolioSummary(Integer userId, ValueSummary homes,
+                               Map<Home.HeatingType, ValueSummary> homesByHeatingType,
+                               Map<Home.Location, ValueSummary> homesByLocation,
+                               ValueSummary autos) {
+}
@@ -0,0 +1,19 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+
+/**
+ * Progress of a batch re-quote job.
+ *
+ * @param id the job id
+ * @param state RUNNING, COMPLETED or FAILED
+ * @param total the number of homes and autos when the job started
+ * @param processed the number of homes and autos priced and written so far
+ * @param rowsPerSecond the throughput so far
+ * @param startedAt when the job started
+ * @param finishedAt when the job finished, or null while running
+ * @param error the failure message, or null
+ */
+public record QuoteJobStatus(String id, String state, long total, long processed, double rowsPerSecond,
+                             Instant startedAt, Instant finishedAt, String error) {
+}
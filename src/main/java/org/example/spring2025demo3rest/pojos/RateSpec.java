@@ -0,0 +1,33 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.util.Map;
+
+/**
+ * The parameters of the rating engine, as set by underwriting.
+ * Premiums are value * ratePerMille / 1000, loaded by age and, for homes, by heating type and location.
+ *
+ * @param homeRatePerMille base yearly rate per 1000 of home value
+ * @param homeAgeFreeYears number of years before a home's age starts to load the premium
+ * @param homeAgeLoadingPerYear extra fraction of premium per year of age past the free years
+ * @param heatingFactors premium multiplier per heating type, 1.0 when absent
+ * @param locationFactors premium multiplier per location, 1.0 when absent
+ * @param autoRatePerMille base yearly rate per 1000 of auto value
+ * @param autoAgeFreeYears number of years before an auto's age starts to load the premium
+ * @param autoAgeLoadingPerYear extra fraction of premium per year of age past the free years
+ */
+public record RateSpec(double homeRatePerMille, int homeAgeFreeYears, double homeAgeLoadingPerYear,
+                       Map<Home.HeatingType, Double> heatingFactors, Map<Home.Location, Double> locationFactors,
+                       double autoRatePerMille, int autoAgeFreeYears, double autoAgeLoadingPerYear) {
+
+    /**
+     * The rates used until underwriting sets new ones.
+     * @return the default rate spec
+     */
+    public static RateSpec defaults() {
+        return new RateSpec(3.5, 25, 0.01,
+                Map.of(Home.HeatingType.OIL_HEATING, 1.15, Home.HeatingType.WOOD_HEATING, 1.35,
+                        Home.HeatingType.OTHER_HEATING, 1.0),
+                Map.of(Home.Location.URBAN, 1.0, Home.Location.RURAL, 1.2),
+                45.0, 10, 0.02);
+    }
+}
@@ -1,22 +1,45 @@
 package org.example.spring2025demo3rest.pojos;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import jakarta.persistence.Version;
+import org.example.spring2025demo3rest.services.EmailIndex;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 /**
  * User Class with annotations for Hibernate ORM
  */
 @Entity // This tells Hibernate to make a table out of this class
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_user_email", columnNames = "email")) // Also the index for lookups by email
+@EntityListeners(EmailIndex.Listener.class) // Keeps the email filter in step with every insert and update
+@Cacheable // Only used when the Hibernate second-level cache is switched on
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"}) // Homes and autos reference their owner lazily
 public class User {
 
     @Id
-    @GeneratedValue(strategy= GenerationType.AUTO)
+    @GeneratedValue(strategy= GenerationType.SEQUENCE, generator = "user_seq")
+    @SequenceGenerator(name = "user_seq", sequenceName = "user_seq", allocationSize = 50)
     private Integer id;
     private String name;
     private String email;
 
+    // Incremented on every update; rows that predate the column start at 0
+    @Version
+    @ColumnDefault("0")
+    private Long version;
+
     /**
      * Get the Id
      * @return id
@@ -34,6 +57,15 @@ public class User {
         this.id = id;
     }
 
+    /**
+     * Get the version, which changes on every update. Exposed through the ETag header, not the body.
+     * @return version, or null if the user has not been saved yet
+     */
+    @JsonIgnore
+    public Long getVersion() {
+        return version;
+    }
+
     /**
      * Get the name
      * @return name
@@ -0,0 +1,20 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+
+/**
+ * Outcome, or progress for an asynchronous run, of a cascading user delete.
+ *
+ * @param id the job id, or null for a synchronous delete
+ * @param state RUNNING, COMPLETED or FAILED
+ * @param requested the number of distinct user ids requested
+ * @param usersDeleted the number of users deleted so far; ids that did not exist are not counted
+ * @param homesDeleted the number of their homes deleted so far
+ * @param autosDeleted the number of their autos deleted so far
+ * @param startedAt when the delete started
+ * @param finishedAt when the delete finished, or null while running
+ * @param error the failure message, or null
+ */
+public record UserDeletionStatus(String id, String state, long requested, long usersDeleted, long homesDeleted,
+                                 long autosDeleted, Instant startedAt, Instant finishedAt, String error) {
+}
@@ -0,0 +1,10 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * The id and email of a user, used to resolve owners by email without loading users.
+ *
+ * @param id the id of the user
+ * @param email the email of the user
+ */
+public record UserEmail(Integer id, String email) {
+}
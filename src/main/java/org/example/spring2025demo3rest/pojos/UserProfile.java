@@ -0,0 +1,19 @@
+package org.example.spring2025demo3rest.pojos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A user together with the associations asked for through the expand parameter.
+ * Associations that were not asked for are left out of the JSON rather than sent empty.
+ *
+ * @param id the id of the user
+ * @param name the name of the user
+ * @param email the email of the user
+ * @param homes the user's homes ordered by id, or null if not expanded
+ * @param autos the user's autos ordered by id, or null if not expanded
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserProfile(Integer id, String name, String email, List<HomeView> homes, List<AutoView> autos) {
+}
@@ -0,0 +1,23 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Value statistics of the homes or autos matching an analytics query, grouped by one dimension.
+ *
+ * @param by the dimension: location, heatingType or decade
+ * @param groups one entry per group with at least one row, in declaration or chronological order
+ * @param refreshedAt when the snapshot the figures come from was last refreshed
+ */
+public record ValueGroups(String by, List<Group> groups, Instant refreshedAt) {
+
+    /**
+     * The rows of one group. A null key stands for rows without a location, heating type or build date.
+     *
+     * @param key the enum constant name, or the first year of the decade
+     * @param summary count, total, lowest and highest value of the rows
+     */
+    public record Group(String key, ValueSummary summary) {
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Histogram of the values of the homes or autos matching an analytics query.
+ *
+ * @param bucketWidth the width of every bucket
+ * @param summary count, total, lowest and highest value of the matching rows
+ * @param buckets the buckets from the one holding the lowest value to the one holding the highest, lowest first
+ * @param refreshedAt when the snapshot the figures come from was last refreshed
+ */
+public record ValueHistogram(int bucketWidth, ValueSummary summary, List<Bucket> buckets, Instant refreshedAt) {
+
+    /**
+     * The rows whose value is in [minValue, minValue + bucketWidth).
+     *
+     * @param minValue the lowest value in the bucket, a multiple of the bucket width
+     * @param count the number of rows
+     */
+    public record Bucket(long minValue, long count) {
+    }
+}
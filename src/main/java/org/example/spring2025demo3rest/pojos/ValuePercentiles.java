@@ -0,0 +1,23 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Percentiles of the values of the homes or autos matching an analytics query.
+ *
+ * @param summary count, total, lowest and highest value of the matching rows
+ * @param percentiles one entry per requested percentile, in the order requested
+ * @param refreshedAt when the snapshot the figures come from was last refreshed
+ */
+public record ValuePercentiles(ValueSummary summary, List<Percentile> percentiles, Instant refreshedAt) {
+
+    /**
+     * The nearest-rank percentile: the lowest value at or above which lie p percent of the rows.
+     *
+     * @param p the percentile, from 0 to 100
+     * @param value the value, or null if no rows matched
+     */
+    public record Percentile(double p, Integer value) {
+    }
+}
@@ -0,0 +1,41 @@
+package org.example.spring2025demo3rest.pojos;
+
+/**
+ * Count and value statistics over a group of homes or autos.
+ *
+ * @param count the number of items
+ * @param total the sum of their values
+ * @param min the lowest value, or null if there are no items
+ * @param max the highest value, or null if there are no items
+ */
+public record ValueSummary(long count, long total, Integer min, Integer max) {
+
+    /**
+     * A summary of no items.
+     */
+    public static final ValueSummary EMPTY = new ValueSummary(0, 0, null, null);
+
+    /**
+     * Gets the average value.
+     * @return the mean value, or null if there are no items
+     */
+    public Double getAverage() {
+        return count == 0 ? null : (double) total / count;
+    }
+
+    /**
+     * Combines this summary with another one.
+     * @param other the summary to add
+     * @return the summary of both groups together
+     */
+    public ValueSummary plus(ValueSummary other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        return new ValueSummary(count + other.count, total + other.total,
+                Math.min(min, other.min), Math.max(max, other.max));
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.spring2025demo3rest.pojos;
+
+import java.time.Instant;
+
+/**
+ * A create that was accepted by the write-behind queue but could not be written.
+ *
+ * @param id the id the create was answered with
+ * @param userId the owner
+ * @param type home or auto
+ * @param error why the insert failed
+ * @param failedAt when the insert failed
+ */
+public record WriteBehindFailure(Integer id, Integer userId, String type, String error, Instant failedAt) {
+}
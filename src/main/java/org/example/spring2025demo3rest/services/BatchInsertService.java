@@ -0,0 +1,99 @@
+package org.example.spring2025demo3rest.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.NewUser;
+import org.example.spring2025demo3rest.pojos.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Inserts many rows in one transaction, flushing every chunk so Hibernate sends
+ * the inserts as JDBC batches, and clearing the persistence context so memory
+ * does not grow with the size of the request.
+ */
+@Service
+public class BatchInsertService {
+
+    @PersistenceContext private EntityManager entityManager;
+
+    /**
+     * Number of rows persisted between flushes. Best kept a multiple of hibernate.jdbc.batch_size.
+     */
+    @Value("${app.batch.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Inserts users.
+     * @param users the users to create
+     * @return the generated ids, in request order
+     */
+    @Transactional
+    public List<Integer> insertUsers(List<NewUser> users) {
+        return insert(users, row -> {
+            User user = row.toUser();
+            entityManager.persist(user);
+            return user.getId();
+        });
+    }
+
+    /**
+     * Inserts homes for one user. The owner is referenced by id and never loaded.
+     * @param userId the owner of the homes, which must exist
+     * @param homes the homes to create
+     * @return the generated ids, in request order
+     */
+    @Transactional
+    public List<Integer> insertHomes(Integer userId, List<NewHome> homes) {
+        return insert(homes, row -> {
+            Home home = row.toHome(entityManager.getReference(User.class, userId));
+            entityManager.persist(home);
+            return home.getId();
+        });
+    }
+
+    /**
+     * Inserts autos for one user. The owner is referenced by id and never loaded.
+     * @param userId the owner of the autos, which must exist
+     * @param autos the autos to create
+     * @return the generated ids, in request order
+     */
+    @Transactional
+    public List<Integer> insertAutos(Integer userId, List<NewAuto> autos) {
+        return insert(autos, row -> {
+            Auto auto = row.toAuto(entityManager.getReference(User.class, userId));
+            entityManager.persist(auto);
+            return auto.getId();
+        });
+    }
+
+    /**
+     * Persists each row, flushing and clearing the persistence context after every chunk.
+     * @param rows the rows to insert
+     * @param persist persists one row and returns its generated id
+     * @param <T> the request row type
+     * @return the generated ids, in request order
+     */
+    private <T> List<Integer> insert(List<T> rows, Function<T, Integer> persist) {
+        List<Integer> ids = new ArrayList<>(rows.size());
+        for (T row : rows) {
+            ids.add(persist.apply(row));
+            if (ids.size() % chunkSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return ids;
+    }
+}
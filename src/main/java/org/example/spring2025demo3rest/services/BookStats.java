@@ -0,0 +1,393 @@
+package org.example.spring2025demo3rest.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.spring2025demo3rest.pojos.BookStatistics;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Counts and total value of the whole book, kept in memory so dashboards never scan the tables.
+ * <p>
+ * Homes are counted per heating type and location, in arrays indexed by the enum ordinals (the same
+ * numbers the columns hold), with one extra slot each for homes that have none. Autos are counted per
+ * value bucket, bounded by app.stats.auto-value-buckets. The arrays are filled by one streaming scan
+ * at startup and then moved by every write path as soon as its transaction has committed.
+ * <p>
+ * Writes made by other instances, or by hand, make the figures drift, so the scan is repeated every
+ * app.stats.reconcile-interval and its result replaces the counters. Changes applied after the scan's
+ * snapshot was taken are journaled and replayed over its result. The journal knows when a change was
+ * applied, not when it committed, so a write racing the snapshot can be off until the next scan: one
+ * that committed before the snapshot but is applied after it is counted twice, one that committed after
+ * it but was applied before the journal opened is missed. How far the counters had drifted is published
+ * as book.stats.drift.
+ */
+@Service
+public class BookStats implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(BookStats.class);
+
+    private static final Home.HeatingType[] HEATING_TYPES = Home.HeatingType.values();
+    private static final Home.Location[] LOCATIONS = Home.Location.values();
+
+    /**
+     * Index of the slot for homes without a heating type or location.
+     */
+    private static final int NO_HEATING_TYPE = HEATING_TYPES.length;
+    private static final int NO_LOCATION = LOCATIONS.length;
+    private static final int HOME_CELLS = (HEATING_TYPES.length + 1) * (LOCATIONS.length + 1);
+
+    /**
+     * A first read that fixes the snapshot both scans see, before the journal is opened.
+     */
+    private static final String PIN_SNAPSHOT = "select count(*) from home where id = 0";
+    private static final String HOME_SCAN = "select heating_type, location, value from home";
+    private static final String AUTO_SCAN = "select value from auto";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate scanTx;
+    private final int[] autoBucketBounds;
+    private final Object lock = new Object();
+    private final ScheduledExecutorService reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "book-stats-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Duration reconcileInterval;
+    private final Timer reconcileTimer;
+    private final AtomicLong drift = new AtomicLong();
+
+    /**
+     * The counters served, guarded by lock.
+     */
+    private Counts live;
+
+    /**
+     * The changes applied since the running scan started, or null when no scan runs. Guarded by lock.
+     */
+    private Counts journal;
+
+    private volatile Instant reconciledAt;
+
+    /**
+     * Creates the statistics, empty until the startup scan has run.
+     * @param dataSource the database to scan, in a JDBC transaction of its own per scan
+     * @param autoBucketBounds the ascending values where each auto bucket after the first starts
+     * @param fetchSize rows fetched per round trip while scanning
+     * @param reconcileInterval how often the counters are rebuilt from the database, 0 to never
+     * @param registry the meter registry, for book.stats.reconcile and book.stats.drift
+     */
+    public BookStats(DataSource dataSource,
+                     @Value("${app.stats.auto-value-buckets:5000,10000,20000,50000}") int[] autoBucketBounds,
+                     @Value("${app.stats.fetch-size:1000}") int fetchSize,
+                     @Value("${app.stats.reconcile-interval:15m}") Duration reconcileInterval,
+                     MeterRegistry registry) {
+        //A dedicated template so the fetch size only applies to the scans
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        //Not read-only, so the scan is routed to the primary: a lagging replica would undo recent writes.
+        //Repeatable read, so both scans see the snapshot taken by their first statement; a plain JDBC
+        //transaction, as JPA cannot set the isolation once connections are released per transaction
+        this.scanTx = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.scanTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.autoBucketBounds = autoBucketBounds.clone();
+        Arrays.sort(this.autoBucketBounds);
+        this.reconcileInterval = reconcileInterval;
+        this.live = new Counts();
+        this.reconcileTimer = Timer.builder("book.stats.reconcile")
+                .description("Time to rebuild the book statistics from the database").register(registry);
+        registry.gauge("book.stats.drift", drift);
+    }
+
+    /**
+     * Runs the first scan and schedules the periodic ones.
+     * @param args the application arguments, unused
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        reconcile();
+        if (!reconcileInterval.isZero()) {
+            long period = reconcileInterval.toMillis();
+            reconciler.scheduleWithFixedDelay(() -> {
+                try {
+                    reconcile();
+                } catch (RuntimeException e) {
+                    log.warn("Book statistics reconciliation failed: {}", e.getMessage());
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Rebuilds the counters from the database. Changes applied after the scan's snapshot are kept.
+     */
+    public void reconcile() {
+        long start = System.nanoTime();
+        Counts scanned = new Counts();
+        try {
+            scanTx.executeWithoutResult(status -> {
+                //Journaling from before the snapshot would count the writes committed in between twice
+                jdbcTemplate.queryForObject(PIN_SNAPSHOT, Long.class);
+                synchronized (lock) {
+                    journal = new Counts();
+                }
+                jdbcTemplate.query(HOME_SCAN, rs -> {
+                    scanned.home(slot(rs, 1, NO_HEATING_TYPE), slot(rs, 2, NO_LOCATION), rs.getLong(3), 1);
+                });
+                jdbcTemplate.query(AUTO_SCAN, rs -> {
+                    scanned.auto(rs.getLong(1), 1);
+                });
+            });
+        } catch (RuntimeException e) {
+            synchronized (lock) {
+                journal = null;
+            }
+            throw e;
+        }
+        long drifted;
+        synchronized (lock) {
+            scanned.add(journal, 1);
+            drifted = live.distance(scanned);
+            live = scanned;
+            journal = null;
+        }
+        long nanos = System.nanoTime() - start;
+        reconcileTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (reconciledAt == null) {
+            log.info("Loaded book statistics in {} ms", nanos / 1_000_000);
+        } else {
+            drift.set(drifted);
+            log.info("Reconciled book statistics in {} ms, {} rows had drifted", nanos / 1_000_000, drifted);
+        }
+        reconciledAt = Instant.now();
+    }
+
+    /**
+     * Gets the current figures. Takes the same time whatever the size of the book.
+     * @return the statistics, or empty until the startup scan has finished
+     */
+    public Optional<BookStatistics> snapshot() {
+        Counts copy;
+        Instant asOf = reconciledAt;
+        if (asOf == null) {
+            return Optional.empty();
+        }
+        synchronized (lock) {
+            copy = live.copy();
+        }
+        return Optional.of(copy.toStatistics(asOf));
+    }
+
+    /**
+     * Starts an empty set of changes, to be filled by a write path and applied once it has committed.
+     * @return the empty changes
+     */
+    public Counts changes() {
+        return new Counts();
+    }
+
+    /**
+     * Applies the changes of a committed write.
+     * @param changes the changes
+     */
+    public void apply(Counts changes) {
+        update(counts -> counts.add(changes, 1));
+    }
+
+    /**
+     * Counts a committed new home.
+     * @param heatingType its heating type, may be null
+     * @param location its location, may be null
+     * @param value its value
+     */
+    public void homeAdded(Home.HeatingType heatingType, Home.Location location, long value) {
+        update(counts -> counts.addHome(heatingType, location, value));
+    }
+
+    /**
+     * Counts a committed new auto.
+     * @param value its value
+     */
+    public void autoAdded(long value) {
+        update(counts -> counts.addAuto(value));
+    }
+
+    private void update(Consumer<Counts> change) {
+        synchronized (lock) {
+            change.accept(live);
+            if (journal != null) {
+                change.accept(journal);
+            }
+        }
+    }
+
+    private static int slot(ResultSet rs, int column, int none) throws SQLException {
+        int ordinal = rs.getInt(column);
+        return rs.wasNull() ? none : ordinal;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        reconciler.shutdownNow();
+    }
+
+    /**
+     * Counters, or changes to counters: number of rows and sum of values per home cell and per auto bucket.
+     * Not thread safe; the live counters are only touched under the lock of their {@link BookStats}.
+     */
+    public final class Counts {
+        private final long[] homeCount = new long[HOME_CELLS];
+        private final long[] homeValue = new long[HOME_CELLS];
+        private final long[] autoCount = new long[autoBucketBounds.length + 1];
+        private final long[] autoValue = new long[autoBucketBounds.length + 1];
+
+        private Counts() {
+        }
+
+        /**
+         * Adds a home.
+         * @param heatingType its heating type, may be null
+         * @param location its location, may be null
+         * @param value its value
+         */
+        public void addHome(Home.HeatingType heatingType, Home.Location location, long value) {
+            home(heatingType == null ? NO_HEATING_TYPE : heatingType.ordinal(),
+                    location == null ? NO_LOCATION : location.ordinal(), value, 1);
+        }
+
+        /**
+         * Removes a home.
+         * @param heatingType its heating type, may be null
+         * @param location its location, may be null
+         * @param value its value
+         */
+        public void removeHome(Home.HeatingType heatingType, Home.Location location, long value) {
+            home(heatingType == null ? NO_HEATING_TYPE : heatingType.ordinal(),
+                    location == null ? NO_LOCATION : location.ordinal(), -value, -1);
+        }
+
+        /**
+         * Adds an auto.
+         * @param value its value
+         */
+        public void addAuto(long value) {
+            auto(value, 1);
+        }
+
+        /**
+         * Removes an auto.
+         * @param value its value
+         */
+        public void removeAuto(long value) {
+            auto(value, -1);
+        }
+
+        private void home(int heatingType, int location, long value, long count) {
+            int cell = heatingType * (LOCATIONS.length + 1) + location;
+            homeCount[cell] += count;
+            homeValue[cell] += value;
+        }
+
+        private void auto(long value, int sign) {
+            int bucket = bucketOf(value);
+            autoCount[bucket] += sign;
+            autoValue[bucket] += sign * value;
+        }
+
+        /**
+         * Finds the bucket of a value: the number of bounds at or below it.
+         */
+        private int bucketOf(long value) {
+            int bucket = 0;
+            while (bucket < autoBucketBounds.length && value >= autoBucketBounds[bucket]) {
+                bucket++;
+            }
+            return bucket;
+        }
+
+        private void add(Counts other, int sign) {
+            for (int i = 0; i < HOME_CELLS; i++) {
+                homeCount[i] += sign * other.homeCount[i];
+                homeValue[i] += sign * other.homeValue[i];
+            }
+            for (int i = 0; i < autoCount.length; i++) {
+                autoCount[i] += sign * other.autoCount[i];
+                autoValue[i] += sign * other.autoValue[i];
+            }
+        }
+
+        /**
+         * Sums, over every cell and bucket, how many rows one set of counters is off from the other.
+         */
+        private long distance(Counts other) {
+            long distance = 0;
+            for (int i = 0; i < HOME_CELLS; i++) {
+                distance += Math.abs(homeCount[i] - other.homeCount[i]);
+            }
+            for (int i = 0; i < autoCount.length; i++) {
+                distance += Math.abs(autoCount[i] - other.autoCount[i]);
+            }
+            return distance;
+        }
+
+        private Counts copy() {
+            Counts copy = new Counts();
+            copy.add(this, 1);
+            return copy;
+        }
+
+        private BookStatistics toStatistics(Instant asOf) {
+            List<BookStatistics.HomeCell> cells = new ArrayList<>(HOME_CELLS);
+            long homes = 0;
+            long homesValue = 0;
+            for (int h = 0; h <= HEATING_TYPES.length; h++) {
+                for (int l = 0; l <= LOCATIONS.length; l++) {
+                    int cell = h * (LOCATIONS.length + 1) + l;
+                    //Homes without a heating type or location are listed only when there are some
+                    if (h < HEATING_TYPES.length && l < LOCATIONS.length || homeCount[cell] != 0) {
+                        cells.add(new BookStatistics.HomeCell(h < HEATING_TYPES.length ? HEATING_TYPES[h] : null,
+                                l < LOCATIONS.length ? LOCATIONS[l] : null, homeCount[cell], homeValue[cell]));
+                    }
+                    homes += homeCount[cell];
+                    homesValue += homeValue[cell];
+                }
+            }
+            List<BookStatistics.AutoBucket> buckets = new ArrayList<>(autoCount.length);
+            long autos = 0;
+            long autosValue = 0;
+            for (int b = 0; b < autoCount.length; b++) {
+                buckets.add(new BookStatistics.AutoBucket(b == 0 ? null : autoBucketBounds[b - 1],
+                        b < autoBucketBounds.length ? autoBucketBounds[b] : null, autoCount[b], autoValue[b]));
+                autos += autoCount[b];
+                autosValue += autoValue[b];
+            }
+            return new BookStatistics(new BookStatistics.Totals(homes, homesValue),
+                    new BookStatistics.Totals(autos, autosValue), cells, buckets, asOf);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package org.example.spring2025demo3rest.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.pojos.UserEmail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+
+/**
+ * Checks whether an email is taken without a query for most new emails.
+ * <p>
+ * An in-memory Bloom filter holds every email in the user table. An email the filter has never seen
+ * is not in the table as far as this instance knows, so the check stops there; only emails the filter
+ * might contain go to the unique index on user.email. The filter is filled from a streaming scan of
+ * the table at startup and, as the JPA entity {@link Listener} of {@link User}, sees every user this instance
+ * persists or updates afterwards. Until the scan finishes every email counts as a possible match.
+ * <p>
+ * Deleted or changed emails stay in the filter and only cost a query, as do false positives, whose
+ * rate is sized by app.email-filter.expected-emails and app.email-filter.false-positive-rate.
+ * The unique index stays the authority: emails written by another instance, or by two requests
+ * racing to claim one new email, pass here and are rejected by the index on insert.
+ */
+@Service
+public class EmailIndex implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailIndex.class);
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate readOnlyTx;
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong insertions = new AtomicLong();
+    private final Counter skipped;
+    private final Counter queried;
+    private final Counter falsePositives;
+    private volatile boolean ready;
+
+    /**
+     * Creates an empty filter sized for the expected number of emails.
+     * @param userRepository used for the startup scan and for emails the filter might contain
+     * @param transactionManager used for the read-only transaction of the startup scan
+     * @param expectedEmails the number of emails the filter is sized for
+     * @param falsePositiveRate the share of new emails that still need a query once the filter holds expectedEmails
+     * @param registry the meter registry
+     */
+    public EmailIndex(UserRepository userRepository, PlatformTransactionManager transactionManager,
+                      @Value("${app.email-filter.expected-emails:1000000}") long expectedEmails,
+                      @Value("${app.email-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                      MeterRegistry registry) {
+        this.userRepository = userRepository;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        //Optimal sizing: m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+        long n = Math.max(1, expectedEmails);
+        long words = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)) / Long.SIZE);
+        this.bits = new AtomicLongArray(Math.toIntExact(Math.max(1, words)));
+        this.bitCount = (long) bits.length() * Long.SIZE;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / n * Math.log(2)));
+        this.skipped = Counter.builder("email.filter.lookups").tag("result", "skipped")
+                .description("Email lookups answered by the Bloom filter alone").register(registry);
+        this.queried = Counter.builder("email.filter.lookups").tag("result", "queried")
+                .description("Email lookups that went to the unique index").register(registry);
+        this.falsePositives = Counter.builder("email.filter.false.positives")
+                .description("Queried emails that were not in the table").register(registry);
+        registry.gauge("email.filter.insertions", insertions);
+    }
+
+    /**
+     * Fills the filter with every email in the user table, reading them through a forward-only cursor.
+     * Emails added while the scan runs go into the same filter, so none are missed.
+     * @param args the application arguments, unused
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.nanoTime();
+        readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<String> all = userRepository.streamEmails()) {
+                all.forEach(this::add);
+            }
+        });
+        ready = true;
+        log.info("Loaded {} emails into the email filter ({} bits, {} hashes) in {} ms",
+                insertions.get(), bitCount, hashCount, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Records that a user has, or is about to have, this email. Call before writing it
+     * outside of JPA entity writes, such as a bulk UPDATE.
+     * @param email the email, ignored if null
+     */
+    public void add(String email) {
+        if (email == null) {
+            return;
+        }
+        long h1 = hash(email);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = bits.get(word);
+            while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                current = bits.get(word);
+            }
+        }
+        insertions.incrementAndGet();
+    }
+
+    /**
+     * Tells whether some user might have this email.
+     * @param email the email
+     * @return false only if no user has it
+     */
+    public boolean mightExist(String email) {
+        if (!ready) {
+            return true;
+        }
+        long h1 = hash(email);
+        long h2 = mix(h1) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the id of the user with this email.
+     * @param email the email
+     * @return the id, or empty if no user has it
+     */
+    public Optional<Integer> ownerOf(String email) {
+        if (!mightExist(email)) {
+            skipped.increment();
+            return Optional.empty();
+        }
+        queried.increment();
+        Optional<Integer> owner = userRepository.findIdByEmail(email);
+        if (owner.isEmpty()) {
+            falsePositives.increment();
+        }
+        return owner;
+    }
+
+    /**
+     * Finds which of the given emails some user already has, in one query for all that the filter might contain.
+     * @param emails the emails to check
+     * @return the emails that are taken
+     */
+    public Set<String> taken(Collection<String> emails) {
+        List<String> candidates = new ArrayList<>();
+        for (String email : emails) {
+            if (email != null && mightExist(email)) {
+                candidates.add(email);
+            }
+        }
+        skipped.increment(emails.size() - candidates.size());
+        if (candidates.isEmpty()) {
+            return Set.of();
+        }
+        queried.increment(candidates.size());
+        Set<String> taken = new HashSet<>();
+        for (UserEmail user : userRepository.findIdsByEmails(candidates)) {
+            taken.add(user.email());
+        }
+        falsePositives.increment(candidates.size() - taken.size());
+        return taken;
+    }
+
+    /**
+     * 64-bit FNV-1a over the lower-cased email. Lower-casing keeps the filter a superset of what a
+     * case-insensitive collation such as MariaDB's default treats as equal.
+     */
+    private static long hash(String email) {
+        String key = email.toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The SplitMix64 finalizer, deriving a second independent hash from the first.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The JPA entity listener of {@link User}, adding the email of every user about to be inserted or updated.
+     * Hibernate creates it through Spring while the persistence unit starts, before the index itself can exist,
+     * so the index is looked up on first use.
+     */
+    public static class Listener {
+
+        private final ObjectProvider<EmailIndex> emailIndex;
+
+        /**
+         * Creates the listener.
+         * @param emailIndex the index to add emails to
+         */
+        public Listener(ObjectProvider<EmailIndex> emailIndex) {
+            this.emailIndex = emailIndex;
+        }
+
+        /**
+         * Adds the email of a user about to be written.
+         * @param user the user being inserted or updated
+         */
+        @PrePersist
+        @PreUpdate
+        public void onWrite(User user) {
+            emailIndex.getObject().add(user.getEmail());
+        }
+    }
+}
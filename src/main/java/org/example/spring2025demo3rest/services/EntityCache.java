@@ -0,0 +1,113 @@
+package org.example.spring2025demo3rest.services;
+
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.AutoView;
+import org.example.spring2025demo3rest.pojos.HomeView;
+import org.example.spring2025demo3rest.pojos.User;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of the repositories for the hot read paths.
+ * Size and TTL bounds come from spring.cache.caffeine.spec in application.properties.
+ * <p>
+ * Loads are atomic per key (sync = true), so an eviction issued after a write has
+ * committed waits for any in-flight load of the same key and cannot be overtaken by
+ * a stale value. Entities returned from here are shared between requests and must
+ * never be modified; write paths load through the repositories and then evict.
+ * <p>
+ * Loads go through the read-only repository methods, so with read/write routing they read a
+ * replica, or the primary once the current request has written (read-your-writes). Every write
+ * path evicts what it changed after its commit, so the next load sees the write, give or take
+ * the replica's lag.
+ */
+@Service
+public class EntityCache {
+
+    public static final String USERS = "users";
+    public static final String HOMES_BY_USER = "homesByUser";
+    public static final String AUTOS_BY_USER = "autosByUser";
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private CacheManager cacheManager;
+
+    /**
+     * Find a user by id. Missing users are cached too, so repeated owner checks stay off the database.
+     * @param userId the id of the user
+     * @return the user, or empty if it does not exist
+     */
+    @Cacheable(cacheNames = USERS, sync = true)
+    public Optional<User> findUser(Long userId) {
+        return userRepository.findById(userId);
+    }
+
+    /**
+     * Get all homes for a user.
+     * @param userId the owner of the homes
+     * @return an unmodifiable list of the user's homes
+     */
+    @Cacheable(cacheNames = HOMES_BY_USER, sync = true)
+    public List<HomeView> homesOf(Long userId) {
+        return List.copyOf(homeRepository.findViewsByUserId(userId));
+    }
+
+    /**
+     * Get all autos for a user.
+     * @param userId the owner of the autos
+     * @return an unmodifiable list of the user's autos
+     */
+    @Cacheable(cacheNames = AUTOS_BY_USER, sync = true)
+    public List<AutoView> autosOf(Long userId) {
+        return List.copyOf(autoRepository.findViewsByUserId(userId));
+    }
+
+    /**
+     * Evict a user after it was created, updated or deleted, together with their home and auto lists.
+     * @param userId the id of the user
+     */
+    public void evictUser(Long userId) {
+        evict(USERS, userId);
+        evict(HOMES_BY_USER, userId);
+        evict(AUTOS_BY_USER, userId);
+    }
+
+    /**
+     * Evict a user's home list after one of their homes was written.
+     * @param userId the owner of the homes
+     */
+    public void evictHomes(Long userId) {
+        evict(HOMES_BY_USER, userId);
+    }
+
+    /**
+     * Evict a user's auto list after one of their autos was written.
+     * @param userId the owner of the autos
+     */
+    public void evictAutos(Long userId) {
+        evict(AUTOS_BY_USER, userId);
+    }
+
+    /**
+     * Drop every entry from every cache.
+     */
+    public void clear() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    private void evict(String cacheName, Long key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package org.example.spring2025demo3rest.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams every user with their homes and autos for the nightly warehouse dump.
+ * <p>
+ * Users, homes and autos are read through one forward-only, read-only JDBC cursor over a
+ * UNION ALL ordered by owner, so each user's rows arrive together and are written as soon as
+ * they are read. Rows are plain column values, never entities, so nothing accumulates in a
+ * persistence context and the heap used is one fetch block plus the output buffer, whatever
+ * the size of the tables.
+ */
+@Service
+public class ExportService {
+
+    /**
+     * One row per user (kind 0), home (kind 1) and auto (kind 2), grouped by owner.
+     * Homes and autos without an owner are left out.
+     */
+    private static final String EXPORT_QUERY = """
+            select id as user_id, 0 as kind, id as item_id, name, email,
+                   cast(null as date) as date_built, cast(null as int) as value,
+                   cast(null as int) as heating_type, cast(null as int) as location, cast(null as int) as premium
+            from user
+            union all
+            select user_id, 1, id, null, null, date_built, value, heating_type, location, premium
+            from home where user_id is not null
+            union all
+            select user_id, 2, id, null, null, date_built, value, null, null, premium
+            from auto where user_id is not null
+            order by user_id, kind, item_id""";
+
+    private static final String CSV_HEADER = "user_id,name,email,type,id,date_built,value,heating_type,location,premium\n";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTx;
+    private final JsonFactory jsonFactory;
+
+    public ExportService(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                         @Value("${app.export.fetch-size:1000}") int fetchSize) {
+        //A dedicated template so the fetch size only applies to the export cursor
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /**
+     * Builds a response body that writes one JSON object per user, with their homes and autos nested.
+     * @param gzip whether to compress the output
+     * @return the streaming response body
+     */
+    public StreamingResponseBody ndjson(boolean gzip) {
+        return out -> export(out, gzip, NdjsonSink::new);
+    }
+
+    /**
+     * Builds a response body that writes one CSV line per home and per auto, with the owner's columns
+     * repeated, and one line with empty item columns for each user who owns neither.
+     * @param gzip whether to compress the output
+     * @return the streaming response body
+     */
+    public StreamingResponseBody csv(boolean gzip) {
+        return out -> export(out, gzip, CsvSink::new);
+    }
+
+    private void export(OutputStream response, boolean gzip, SinkFactory sinks) throws IOException {
+        OutputStream out = gzip
+                ? new GZIPOutputStream(response, BUFFER_SIZE)
+                : new BufferedOutputStream(response, BUFFER_SIZE);
+        Sink sink = sinks.open(out);
+        readOnlyTx.executeWithoutResult(status -> jdbcTemplate.query(EXPORT_QUERY, rs -> {
+            try {
+                sink.row(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
+        sink.close();
+        if (out instanceof GZIPOutputStream compressed) {
+            compressed.finish();
+        }
+        out.flush();
+    }
+
+    /**
+     * Column values of the current row, read once so both formats see the same types.
+     */
+    private record Row(int userId, int kind, int itemId, String name, String email, Date dateBuilt,
+                       Integer value, Integer heatingType, Integer location, Integer premium) {
+
+        static Row of(ResultSet rs) throws SQLException {
+            return new Row(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getString(4), rs.getString(5),
+                    rs.getDate(6), nullableInt(rs, 7), nullableInt(rs, 8), nullableInt(rs, 9), nullableInt(rs, 10));
+        }
+
+        private static Integer nullableInt(ResultSet rs, int column) throws SQLException {
+            int value = rs.getInt(column);
+            return rs.wasNull() ? null : value;
+        }
+
+        String heatingTypeName() {
+            return heatingType == null ? null : Home.HeatingType.values()[heatingType].name();
+        }
+
+        String locationName() {
+            return location == null ? null : Home.Location.values()[location].name();
+        }
+    }
+
+    /**
+     * Writes rows in one output format.
+     */
+    private interface Sink {
+        void row(ResultSet rs) throws IOException, SQLException;
+
+        void close() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface SinkFactory {
+        Sink open(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Nests each user's homes and autos in one JSON object per line, closing it when the next user starts.
+     */
+    private final class NdjsonSink implements Sink {
+        private final JsonGenerator json;
+        private boolean inUser;
+        private int section;
+
+        NdjsonSink(OutputStream out) throws IOException {
+            this.json = jsonFactory.createGenerator(out).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws IOException, SQLException {
+            Row row = Row.of(rs);
+            if (row.kind() == 0) {
+                endUser();
+                json.writeStartObject();
+                json.writeNumberField("id", row.userId());
+                json.writeStringField("name", row.name());
+                json.writeStringField("email", row.email());
+                inUser = true;
+                section = 0;
+                return;
+            }
+            if (!inUser) {
+                return;
+            }
+            while (section < row.kind()) {
+                nextSection();
+            }
+            json.writeStartObject();
+            json.writeNumberField("id", row.itemId());
+            json.writeStringField("dateBuilt", row.dateBuilt() == null ? null : row.dateBuilt().toString());
+            json.writeNumberField("value", row.value());
+            if (row.kind() == 1) {
+                json.writeStringField("heatingType", row.heatingTypeName());
+                json.writeStringField("location", row.locationName());
+            }
+            json.writeFieldName("premium");
+            if (row.premium() == null) {
+                json.writeNull();
+            } else {
+                json.writeNumber(row.premium());
+            }
+            json.writeEndObject();
+        }
+
+        /**
+         * Closes the current homes or autos array and opens the next one.
+         */
+        private void nextSection() throws IOException {
+            if (section > 0) {
+                json.writeEndArray();
+            }
+            section++;
+            json.writeArrayFieldStart(section == 1 ? "homes" : "autos");
+        }
+
+        private void endUser() throws IOException {
+            if (!inUser) {
+                return;
+            }
+            while (section < 2) {
+                nextSection();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeRaw('\n');
+            inUser = false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            endUser();
+            json.close();
+        }
+    }
+
+    /**
+     * Writes one line per home or auto with the owner's columns, or one line for a user with neither.
+     */
+    private static final class CsvSink implements Sink {
+        private final Writer csv;
+        private int userId;
+        private String userColumns;
+        private boolean hasItems = true;
+
+        CsvSink(OutputStream out) throws IOException {
+            this.csv = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            csv.write(CSV_HEADER);
+        }
+
+        @Override
+        public void row(ResultSet rs) throws IOException, SQLException {
+            Row row = Row.of(rs);
+            if (row.kind() == 0) {
+                endUser();
+                userId = row.userId();
+                userColumns = row.userId() + "," + escape(row.name()) + "," + escape(row.email());
+                hasItems = false;
+                return;
+            }
+            if (userColumns == null || row.userId() != userId) {
+                return;
+            }
+            hasItems = true;
+            csv.write(userColumns);
+            csv.write(row.kind() == 1 ? ",home," : ",auto,");
+            csv.write(row.itemId() + "," + text(row.dateBuilt()) + "," + text(row.value()) + ","
+                    + text(row.heatingTypeName()) + "," + text(row.locationName()) + "," + text(row.premium()) + "\n");
+        }
+
+        private void endUser() throws IOException {
+            if (!hasItems) {
+                csv.write(userColumns + ",,,,,,,\n");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            endUser();
+            csv.flush();
+        }
+
+        private static String text(Object value) {
+            return value == null ? "" : value.toString();
+        }
+
+        /**
+         * Quotes a field that contains a separator, quote or line break, doubling inner quotes.
+         */
+        private static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package org.example.spring2025demo3rest.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.ImportError;
+import org.example.spring2025demo3rest.pojos.ImportJobStatus;
+import org.example.spring2025demo3rest.pojos.ImportRow;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.pojos.UserEmail;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Imports homes and autos from a CSV or NDJSON upload.
+ * <p>
+ * The upload is copied to a temporary file as it arrives and imported in the background, so the
+ * request returns the job as soon as the body has been received and its progress can be polled.
+ * The file is read line by line and only one chunk of rows is held in memory. For each chunk the
+ * owners are resolved with one query by id and one by email, invalid rows are set aside in the error
+ * report, and the rest are persisted in one transaction so Hibernate sends them as JDBC batches.
+ * Chunks that were committed stay committed if a later chunk fails.
+ * <p>
+ * CSV uploads start with a header naming the columns: type, userId or email, dateBuilt, value, and
+ * for homes heatingType and location. Fields may be quoted, with "" for a quote inside a quoted field,
+ * but a row may not span lines. NDJSON uploads have one object per line with the same fields.
+ */
+@Service
+public class ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+
+    /**
+     * Number of finished jobs kept for status requests.
+     */
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    @PersistenceContext private EntityManager entityManager;
+
+    private final UserRepository userRepository;
+    private final EntityCache entityCache;
+    private final BookStats bookStats;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor(r -> new Thread(r, "import-job"));
+    private final JobHistory<Job> jobs = new JobHistory<>(MAX_FINISHED_JOBS, job -> job.finishedAt != null);
+
+    public ImportService(UserRepository userRepository, EntityCache entityCache, BookStats bookStats, ObjectMapper objectMapper,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${app.batch.chunk-size:500}") int chunkSize,
+                         @Value("${app.import.max-errors:1000}") int maxErrors) {
+        this.userRepository = userRepository;
+        this.entityCache = entityCache;
+        this.bookStats = bookStats;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Starts importing a CSV upload. Returns once the upload has been received.
+     * @param upload the request body, UTF-8
+     * @return the new job
+     * @throws IOException if the upload cannot be read
+     */
+    public ImportJobStatus importCsv(InputStream upload) throws IOException {
+        return start(upload, new CsvParser());
+    }
+
+    /**
+     * Starts importing an NDJSON upload. Returns once the upload has been received.
+     * @param upload the request body, UTF-8
+     * @return the new job
+     * @throws IOException if the upload cannot be read
+     */
+    public ImportJobStatus importNdjson(InputStream upload) throws IOException {
+        return start(upload, line -> objectMapper.readValue(line, ImportRow.class));
+    }
+
+    /**
+     * Gets the progress of an import, which may still be uploading.
+     * @param jobId the job id
+     * @return the job status, or empty if there is no such job
+     */
+    public Optional<ImportJobStatus> status(String jobId) {
+        return jobs.get(jobId).map(Job::status);
+    }
+
+    /**
+     * Gets the running imports and the most recent finished ones, oldest first.
+     * @return the job statuses
+     */
+    public List<ImportJobStatus> recent() {
+        return jobs.all().stream().map(Job::status).toList();
+    }
+
+    /**
+     * Copies the upload to a temporary file and queues the job that imports it.
+     * The job is listed from the start, so an upload still being received can be found.
+     */
+    private ImportJobStatus start(InputStream upload, LineParser parser) throws IOException {
+        Job job = new Job();
+        jobs.add(job.id, job);
+        Path file = null;
+        try {
+            file = Files.createTempFile("import-", ".upload");
+            Files.copy(upload, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            job.finish(e.getMessage());
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw e;
+        }
+        Path received = file;
+        jobRunner.submit(() -> run(job, received, parser));
+        return job.status();
+    }
+
+    private void run(Job job, Path file, LineParser parser) {
+        List<Pending> chunk = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                ImportRow row;
+                try {
+                    row = parser.parse(line);
+                } catch (JsonProcessingException | IllegalArgumentException e) {
+                    job.rowsRead.incrementAndGet();
+                    job.reject(lineNumber, "Unreadable row: " + e.getMessage());
+                    continue;
+                }
+                if (row == null) {
+                    continue;
+                }
+                job.rowsRead.incrementAndGet();
+                chunk.add(new Pending(lineNumber, row));
+                if (chunk.size() == chunkSize) {
+                    write(job, chunk);
+                    chunk.clear();
+                }
+            }
+            write(job, chunk);
+            job.finish(null);
+        } catch (IOException | RuntimeException e) {
+            log.error("Import job {} failed", job.id, e);
+            job.finish(e.getMessage());
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete upload {} of import job {}", file, job.id, e);
+            }
+        }
+    }
+
+    /**
+     * Validates a chunk, resolves its owners and persists the valid rows in one transaction.
+     */
+    private void write(Job job, List<Pending> chunk) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<Long> ids = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        for (Pending pending : chunk) {
+            ImportRow row = pending.row();
+            if (!isBlank(row.userId())) {
+                try {
+                    ids.add(Long.valueOf(row.userId().trim()));
+                } catch (NumberFormatException ignored) {
+                    //Reported against the row by owner()
+                }
+            } else if (!isBlank(row.email())) {
+                emails.add(row.email().trim());
+            }
+        }
+        Set<Integer> existing = ids.isEmpty() ? Set.of() : new HashSet<>(userRepository.findExistingIds(ids));
+        Map<String, Integer> byEmail = new HashMap<>();
+        if (!emails.isEmpty()) {
+            for (UserEmail user : userRepository.findIdsByEmails(emails)) {
+                byEmail.putIfAbsent(user.email(), user.id());
+            }
+        }
+
+        List<Object> rows = new ArrayList<>(chunk.size());
+        List<Integer> owners = new ArrayList<>(chunk.size());
+        for (Pending pending : chunk) {
+            try {
+                Integer owner = owner(pending.row(), existing, byEmail);
+                rows.add(validate(pending.row()));
+                owners.add(owner);
+            } catch (IllegalArgumentException e) {
+                job.reject(pending.line(), e.getMessage());
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        int[] created = new int[2];
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < rows.size(); i++) {
+                User owner = entityManager.getReference(User.class, owners.get(i));
+                if (rows.get(i) instanceof NewHome home) {
+                    entityManager.persist(home.toHome(owner));
+                    created[0]++;
+                } else {
+                    entityManager.persist(((NewAuto) rows.get(i)).toAuto(owner));
+                    created[1]++;
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+        job.homesCreated.addAndGet(created[0]);
+        job.autosCreated.addAndGet(created[1]);
+        Set<Integer> homeOwners = new HashSet<>();
+        Set<Integer> autoOwners = new HashSet<>();
+        BookStats.Counts changes = bookStats.changes();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i) instanceof NewHome home) {
+                homeOwners.add(owners.get(i));
+                changes.addHome(home.heatingType(), home.location(), home.value());
+            } else {
+                autoOwners.add(owners.get(i));
+                changes.addAuto(((NewAuto) rows.get(i)).value());
+            }
+        }
+        bookStats.apply(changes);
+        homeOwners.forEach(id -> entityCache.evictHomes(id.longValue()));
+        autoOwners.forEach(id -> entityCache.evictAutos(id.longValue()));
+    }
+
+    /**
+     * Resolves the owner of a row.
+     * @return the id of an existing user
+     * @throws IllegalArgumentException if the row names no owner or an unknown one
+     */
+    private static Integer owner(ImportRow row, Set<Integer> existing, Map<String, Integer> byEmail) {
+        if (!isBlank(row.userId())) {
+            int id;
+            try {
+                id = Integer.parseInt(row.userId().trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid userId '" + row.userId() + "'");
+            }
+            if (!existing.contains(id)) {
+                throw new IllegalArgumentException("No user with id " + id);
+            }
+            return id;
+        }
+        if (!isBlank(row.email())) {
+            Integer id = byEmail.get(row.email().trim());
+            if (id == null) {
+                throw new IllegalArgumentException("No user with email " + row.email().trim());
+            }
+            return id;
+        }
+        throw new IllegalArgumentException("Either userId or email is required");
+    }
+
+    /**
+     * Checks the fields of a row.
+     * @return a NewHome or NewAuto
+     * @throws IllegalArgumentException if a field is missing or invalid
+     */
+    private static Object validate(ImportRow row) {
+        if (isBlank(row.dateBuilt())) {
+            throw new IllegalArgumentException("dateBuilt is required");
+        }
+        LocalDate dateBuilt;
+        try {
+            dateBuilt = LocalDate.parse(row.dateBuilt().trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid dateBuilt '" + row.dateBuilt() + "', expected yyyy-MM-dd");
+        }
+        int value;
+        try {
+            value = Integer.parseInt(isBlank(row.value()) ? "" : row.value().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value '" + row.value() + "'");
+        }
+        String type = isBlank(row.type()) ? "" : row.type().trim().toLowerCase();
+        switch (type) {
+            case "home":
+                return new NewHome(dateBuilt, value,
+                        parseEnum(Home.HeatingType.class, "heatingType", row.heatingType()),
+                        parseEnum(Home.Location.class, "location", row.location()));
+            case "auto":
+                return new NewAuto(dateBuilt, value);
+            default:
+                throw new IllegalArgumentException("Invalid type '" + row.type() + "', expected home or auto");
+        }
+    }
+
+    /**
+     * Parses an enum constant by name.
+     * @throws IllegalArgumentException naming the field and the accepted values
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String field, String value) {
+        try {
+            return Enum.valueOf(type, isBlank(value) ? "" : value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid " + field + " '" + value + "', expected one of "
+                    + Arrays.toString(type.getEnumConstants()));
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobRunner.shutdownNow();
+    }
+
+    /**
+     * A parsed row waiting for its chunk to be written.
+     */
+    private record Pending(long line, ImportRow row) {
+    }
+
+    /**
+     * Turns one line of the upload into a row.
+     */
+    @FunctionalInterface
+    private interface LineParser {
+        /**
+         * @param line a non-blank line
+         * @return the row, or null if the line holds no data
+         * @throws JsonProcessingException or IllegalArgumentException if the line is malformed
+         */
+        ImportRow parse(String line) throws JsonProcessingException;
+    }
+
+    /**
+     * Parses CSV lines by the column names of the header line.
+     * Quoted fields may contain commas and doubled quotes, but not line breaks.
+     */
+    private static final class CsvParser implements LineParser {
+        private Map<String, Integer> columns;
+
+        @Override
+        public ImportRow parse(String line) {
+            if (columns == null) {
+                List<String> fields;
+                try {
+                    fields = split(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalStateException("Unreadable CSV header: " + e.getMessage());
+                }
+                columns = new HashMap<>();
+                for (int i = 0; i < fields.size(); i++) {
+                    columns.put(fields.get(i), i);
+                }
+                if (!columns.containsKey("type") || !columns.containsKey("dateBuilt") || !columns.containsKey("value")
+                        || !(columns.containsKey("userId") || columns.containsKey("email"))) {
+                    throw new IllegalStateException(
+                            "CSV header must name type, userId or email, dateBuilt and value: " + line);
+                }
+                return null;
+            }
+            List<String> fields = split(line);
+            return new ImportRow(field(fields, "type"), field(fields, "userId"), field(fields, "email"),
+                    field(fields, "dateBuilt"), field(fields, "value"),
+                    field(fields, "heatingType"), field(fields, "location"));
+        }
+
+        private String field(List<String> fields, String column) {
+            Integer index = columns.get(column);
+            return index == null || index >= fields.size() ? null : fields.get(index);
+        }
+
+        /**
+         * Splits a line into fields. Unquoted fields are trimmed; quoted ones are kept as written.
+         * @throws IllegalArgumentException if a quote is not closed or is followed by more than spaces
+         */
+        private static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            int start = 0;
+            while (true) {
+                int i = skipSpaces(line, start);
+                if (i < line.length() && line.charAt(i) == '"') {
+                    StringBuilder field = new StringBuilder();
+                    int quote = i++;
+                    while (true) {
+                        if (i == line.length()) {
+                            throw new IllegalArgumentException("Unclosed quote at column " + (quote + 1));
+                        }
+                        char c = line.charAt(i++);
+                        if (c != '"') {
+                            field.append(c);
+                        } else if (i < line.length() && line.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    i = skipSpaces(line, i);
+                    if (i < line.length() && line.charAt(i) != ',') {
+                        throw new IllegalArgumentException("Text after the closing quote at column " + (i + 1));
+                    }
+                    fields.add(field.toString());
+                } else {
+                    int comma = line.indexOf(',', i);
+                    i = comma < 0 ? line.length() : comma;
+                    fields.add(line.substring(start, i).trim());
+                }
+                if (i == line.length()) {
+                    return fields;
+                }
+                start = i + 1;
+            }
+        }
+
+        private static int skipSpaces(String line, int from) {
+            while (from < line.length() && line.charAt(from) == ' ') {
+                from++;
+            }
+            return from;
+        }
+    }
+
+    /**
+     * Mutable progress of one import, read by status requests while the upload is being processed.
+     */
+    private final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong homesCreated = new AtomicLong();
+        private final AtomicLong autosCreated = new AtomicLong();
+        private final AtomicLong rowsRejected = new AtomicLong();
+        private final List<ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+        private final Instant startedAt = Instant.now();
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        void reject(long line, String message) {
+            rowsRejected.incrementAndGet();
+            if (errors.size() < maxErrors) {
+                errors.add(new ImportError(line, message));
+            }
+        }
+
+        void finish(String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+        }
+
+        ImportJobStatus status() {
+            String state = finishedAt == null ? "RUNNING" : error == null ? "COMPLETED" : "FAILED";
+            List<ImportError> report;
+            synchronized (errors) {
+                report = List.copyOf(errors);
+            }
+            return new ImportJobStatus(id, state, rowsRead.get(), homesCreated.get(), autosCreated.get(),
+                    rowsRejected.get(), report, startedAt, finishedAt, error);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.spring2025demo3rest.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Background jobs by id, for status requests. Keeps every job that has not finished and the most
+ * recent finished ones: adding a job drops the oldest finished jobs beyond the limit, however long
+ * an older job has been running.
+ * @param <J> the job type
+ */
+final class JobHistory<J> {
+
+    private final int maxFinished;
+    private final Predicate<J> finished;
+    private final Map<String, J> jobs = new LinkedHashMap<>();
+
+    /**
+     * @param maxFinished the number of finished jobs to keep
+     * @param finished tells whether a job has finished
+     */
+    JobHistory(int maxFinished, Predicate<J> finished) {
+        this.maxFinished = maxFinished;
+        this.finished = finished;
+    }
+
+    /**
+     * Adds a job, then drops the oldest finished jobs beyond the limit.
+     * @param id the job id
+     * @param job the job
+     */
+    synchronized void add(String id, J job) {
+        jobs.put(id, job);
+        int excess = (int) jobs.values().stream().filter(finished).count() - maxFinished;
+        for (Iterator<J> it = jobs.values().iterator(); excess > 0 && it.hasNext(); ) {
+            if (finished.test(it.next())) {
+                it.remove();
+                excess--;
+            }
+        }
+    }
+
+    /**
+     * Gets a job.
+     * @param id the job id
+     * @return the job, or empty if there is no such job or it has been dropped
+     */
+    synchronized Optional<J> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Gets every job kept, oldest first.
+     * @return a copy of the jobs
+     */
+    synchronized List<J> all() {
+        return new ArrayList<>(jobs.values());
+    }
+}
@@ -0,0 +1,73 @@
+package org.example.spring2025demo3rest.services;
+
+import org.example.spring2025demo3rest.pojos.MultiGet;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Runs lookups by id list as a few IN queries instead of one query per id.
+ * <p>
+ * Ids are deduplicated and split into IN lists of at most app.query.in-list-size entries,
+ * which keeps every statement under the parameter limits of the database and driver.
+ * N ids therefore cost ceil(N / in-list-size) queries.
+ */
+@Service
+public class MultiGetService {
+
+    private final int inListSize;
+
+    public MultiGetService(@Value("${app.query.in-list-size:1000}") int inListSize) {
+        this.inListSize = inListSize;
+    }
+
+    /**
+     * Run a query once per IN list of ids and concatenate the results.
+     * @param ids the ids to look up, duplicates are dropped
+     * @param query the query for one IN list
+     * @param <T> the row type
+     * @return the rows of every chunk, in chunk order
+     */
+    public <T> List<T> inChunks(Collection<Long> ids, Function<List<Long>, ? extends Iterable<T>> query) {
+        List<Long> distinct = List.copyOf(new LinkedHashSet<>(ids));
+        List<T> rows = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += inListSize) {
+            query.apply(distinct.subList(from, Math.min(distinct.size(), from + inListSize))).forEach(rows::add);
+        }
+        return rows;
+    }
+
+    /**
+     * Look up rows by id, in request order, and report the ids that matched nothing.
+     * @param ids the ids to look up, duplicates are dropped
+     * @param query the query for one IN list
+     * @param idOf function returning the id of a row
+     * @param <T> the row type
+     * @return the rows found and the missing ids
+     */
+    public <T> MultiGet<T> byIds(Collection<Long> ids, Function<List<Long>, ? extends Iterable<T>> query,
+                                 Function<T, Integer> idOf) {
+        Map<Integer, T> found = new HashMap<>();
+        for (T row : inChunks(ids, query)) {
+            found.put(idOf.apply(row), row);
+        }
+        List<T> items = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            T row = found.get(id.intValue());
+            if (row != null) {
+                items.add(row);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new MultiGet<>(items, missing);
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.spring2025demo3rest.services;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes entities to the response as newline delimited JSON while they are read
+ * from the database, so a list endpoint never holds more than one fetch block in memory.
+ */
+@Service
+public class NdjsonStreamer {
+
+    /**
+     * Number of rows written between flushes of the response and clears of the persistence context.
+     */
+    private static final int FLUSH_EVERY = 500;
+
+    @PersistenceContext private EntityManager entityManager;
+    private final ObjectWriter writer;
+    private final TransactionTemplate readOnlyTx;
+
+    @Autowired
+    public NdjsonStreamer(ObjectMapper objectMapper, PlatformTransactionManager transactionManager) {
+        this.writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Builds a response body that opens a read-only transaction, pulls rows from the
+     * supplied stream and writes one JSON document per line.
+     *
+     * @param rows supplier of the repository stream, called inside the transaction
+     * @param <T> the entity type
+     * @return the streaming response body
+     */
+    public <T> StreamingResponseBody stream(Supplier<Stream<T>> rows) {
+        return out -> readOnlyTx.executeWithoutResult(status -> {
+            try (Stream<T> stream = rows.get()) {
+                write(stream.iterator(), new BufferedOutputStream(out));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private <T> void write(Iterator<T> rows, OutputStream out) throws IOException {
+        int count = 0;
+        while (rows.hasNext()) {
+            writer.writeValue(out, rows.next());
+            out.write('\n');
+            if (++count % FLUSH_EVERY == 0) {
+                out.flush();
+                entityManager.clear();
+            }
+        }
+        out.flush();
+    }
+}
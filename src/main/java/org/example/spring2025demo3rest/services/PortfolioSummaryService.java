@@ -0,0 +1,96 @@
+package org.example.spring2025demo3rest.services;
+
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.AutoGroupStats;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.HomeGroupStats;
+import org.example.spring2025demo3rest.pojos.PortfolioSummary;
+import org.example.spring2025demo3rest.pojos.ValueSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds portfolio summaries from GROUP BY aggregate queries.
+ * No Home or Auto entity is loaded; each request reads at most a handful of
+ * grouped rows per user (one per heating type and location pair, plus one for autos).
+ */
+@Service
+public class PortfolioSummaryService {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+
+    /**
+     * Summarize the homes and autos of the given users.
+     * @param userIds the users to summarize
+     * @return one summary per existing user, in request order; unknown ids are left out
+     */
+    @Transactional(readOnly = true)
+    public List<PortfolioSummary> summarize(Collection<Long> userIds) {
+        Set<Long> ids = new LinkedHashSet<>(userIds);
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, List<HomeGroupStats>> homes = new HashMap<>();
+        for (HomeGroupStats row : homeRepository.summarizeByUserIds(ids)) {
+            homes.computeIfAbsent(row.userId(), id -> new ArrayList<>()).add(row);
+        }
+        Map<Integer, ValueSummary> autos = new HashMap<>();
+        for (AutoGroupStats row : autoRepository.summarizeByUserIds(ids)) {
+            autos.put(row.userId(), row.summary());
+        }
+
+        //Only users without any homes or autos need an existence check
+        Set<Integer> existing = new LinkedHashSet<>(homes.keySet());
+        existing.addAll(autos.keySet());
+        List<Long> unseen = ids.stream().filter(id -> !existing.contains(id.intValue())).toList();
+        if (!unseen.isEmpty()) {
+            existing.addAll(userRepository.findExistingIds(unseen));
+        }
+
+        List<PortfolioSummary> summaries = new ArrayList<>(existing.size());
+        for (Long id : ids) {
+            if (existing.contains(id.intValue())) {
+                summaries.add(summary(id.intValue(), homes.getOrDefault(id.intValue(), List.of()),
+                        autos.getOrDefault(id.intValue(), ValueSummary.EMPTY)));
+            }
+        }
+        return summaries;
+    }
+
+    private static PortfolioSummary summary(Integer userId, List<HomeGroupStats> groups, ValueSummary autos) {
+        ValueSummary homes = ValueSummary.EMPTY;
+        Map<Home.HeatingType, ValueSummary> byHeatingType = new EnumMap<>(Home.HeatingType.class);
+        Map<Home.Location, ValueSummary> byLocation = new EnumMap<>(Home.Location.class);
+        for (Home.HeatingType heatingType : Home.HeatingType.values()) {
+            byHeatingType.put(heatingType, ValueSummary.EMPTY);
+        }
+        for (Home.Location location : Home.Location.values()) {
+            byLocation.put(location, ValueSummary.EMPTY);
+        }
+        for (HomeGroupStats group : groups) {
+            ValueSummary stats = group.summary();
+            homes = homes.plus(stats);
+            if (group.heatingType() != null) {
+                byHeatingType.merge(group.heatingType(), stats, ValueSummary::plus);
+            }
+            if (group.location() != null) {
+                byLocation.merge(group.location(), stats, ValueSummary::plus);
+            }
+        }
+        return new PortfolioSummary(userId, homes, byHeatingType, byLocation, autos);
+    }
+}
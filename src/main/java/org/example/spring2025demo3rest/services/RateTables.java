@@ -0,0 +1,112 @@
+package org.example.spring2025demo3rest.services;
+
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.RateSpec;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Immutable lookup tables built once from a RateSpec.
+ * Every factor the pricing loop needs is precomputed into a primitive array indexed by age
+ * or enum ordinal, so pricing a row is a few array reads and multiplications and is safe
+ * to run from any number of threads.
+ */
+public final class RateTables {
+
+    /**
+     * Ages above this share the last age factor.
+     */
+    static final int MAX_AGE = 200;
+
+    private final RateSpec spec;
+    private final double homeRate;
+    private final double autoRate;
+    private final double[] homeAgeFactor = new double[MAX_AGE + 1];
+    private final double[] autoAgeFactor = new double[MAX_AGE + 1];
+    private final double[] heatingFactor = new double[Home.HeatingType.values().length];
+    private final double[] locationFactor = new double[Home.Location.values().length];
+
+    /**
+     * Precomputes the tables.
+     * @param spec the rates to use
+     * @throws IllegalArgumentException if a rate or factor is negative
+     */
+    public RateTables(RateSpec spec) {
+        if (spec.homeRatePerMille() < 0 || spec.autoRatePerMille() < 0
+                || spec.homeAgeLoadingPerYear() < 0 || spec.autoAgeLoadingPerYear() < 0) {
+            throw new IllegalArgumentException("Rates must not be negative");
+        }
+        this.spec = spec;
+        this.homeRate = spec.homeRatePerMille() / 1000;
+        this.autoRate = spec.autoRatePerMille() / 1000;
+        for (int age = 0; age <= MAX_AGE; age++) {
+            homeAgeFactor[age] = 1 + Math.max(0, age - spec.homeAgeFreeYears()) * spec.homeAgeLoadingPerYear();
+            autoAgeFactor[age] = 1 + Math.max(0, age - spec.autoAgeFreeYears()) * spec.autoAgeLoadingPerYear();
+        }
+        for (Home.HeatingType heatingType : Home.HeatingType.values()) {
+            heatingFactor[heatingType.ordinal()] = factor(spec.heatingFactors() == null ? null : spec.heatingFactors().get(heatingType));
+        }
+        for (Home.Location location : Home.Location.values()) {
+            locationFactor[location.ordinal()] = factor(spec.locationFactors() == null ? null : spec.locationFactors().get(location));
+        }
+    }
+
+    /**
+     * Gets the rates these tables were built from.
+     * @return the rate spec
+     */
+    public RateSpec spec() {
+        return spec;
+    }
+
+    /**
+     * Prices a home.
+     * @param value the value of the home
+     * @param dateBuilt the date the home was built, or null if unknown
+     * @param heatingType the heating type, or null if unknown
+     * @param location the location, or null if unknown
+     * @param today the date ages are measured against
+     * @return the yearly premium, rounded to a whole amount
+     */
+    public int homePremium(int value, LocalDate dateBuilt, Home.HeatingType heatingType, Home.Location location,
+                           LocalDate today) {
+        double premium = value * homeRate * homeAgeFactor[age(dateBuilt, today)];
+        if (heatingType != null) {
+            premium *= heatingFactor[heatingType.ordinal()];
+        }
+        if (location != null) {
+            premium *= locationFactor[location.ordinal()];
+        }
+        return (int) Math.round(premium);
+    }
+
+    /**
+     * Prices an auto.
+     * @param value the value of the auto
+     * @param dateBuilt the date the auto was built, or null if unknown
+     * @param today the date ages are measured against
+     * @return the yearly premium, rounded to a whole amount
+     */
+    public int autoPremium(int value, LocalDate dateBuilt, LocalDate today) {
+        return (int) Math.round(value * autoRate * autoAgeFactor[age(dateBuilt, today)]);
+    }
+
+    private static int age(LocalDate dateBuilt, LocalDate today) {
+        if (dateBuilt == null) {
+            return 0;
+        }
+        long years = ChronoUnit.YEARS.between(dateBuilt, today);
+        return (int) Math.max(0, Math.min(MAX_AGE, years));
+    }
+
+    private static double factor(Double factor) {
+        if (factor == null) {
+            return 1.0;
+        }
+        if (factor < 0) {
+            throw new IllegalArgumentException("Factors must not be negative");
+        }
+        return factor;
+    }
+}
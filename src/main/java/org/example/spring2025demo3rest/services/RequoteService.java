@@ -0,0 +1,215 @@
+package org.example.spring2025demo3rest.services;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.AutoView;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.HomeView;
+import org.example.spring2025demo3rest.pojos.QuoteJobStatus;
+import org.example.spring2025demo3rest.pojos.RateSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Re-prices every home and auto with the current rate tables.
+ * <p>
+ * A job walks each table in keyset chunks of projections, prices a chunk in parallel
+ * on a dedicated fork-join pool, and writes the premiums back with one JDBC batch
+ * update per chunk in its own transaction. Only one chunk is held in memory at a
+ * time, so a run over millions of rows needs no more heap than a run over a thousand.
+ */
+@Service
+public class RequoteService {
+
+    private static final Logger log = LoggerFactory.getLogger(RequoteService.class);
+
+    /**
+     * Number of finished jobs kept for status requests.
+     */
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final HomeRepository homeRepository;
+    private final AutoRepository autoRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityCache entityCache;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final int chunkSize;
+    private final ForkJoinPool pricingPool;
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor(r -> new Thread(r, "requote-job"));
+    private final AtomicReference<RateTables> rates = new AtomicReference<>(new RateTables(RateSpec.defaults()));
+    private final AtomicReference<Job> running = new AtomicReference<>();
+    private final JobHistory<Job> jobs = new JobHistory<>(MAX_FINISHED_JOBS, job -> job.finishedAt != null);
+
+    public RequoteService(HomeRepository homeRepository, AutoRepository autoRepository, JdbcTemplate jdbcTemplate,
+                          EntityCache entityCache, PlatformTransactionManager transactionManager,
+                          EntityManagerFactory entityManagerFactory,
+                          @Value("${app.rating.chunk-size:5000}") int chunkSize,
+                          @Value("${app.rating.parallelism:0}") int parallelism) {
+        this.homeRepository = homeRepository;
+        this.autoRepository = autoRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityCache = entityCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.chunkSize = chunkSize;
+        this.pricingPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Gets the rate tables new jobs will use.
+     * @return the current rate tables
+     */
+    public RateTables rates() {
+        return rates.get();
+    }
+
+    /**
+     * Replaces the rate tables. Running jobs keep the tables they started with.
+     * @param spec the new rates
+     * @return the new rate tables
+     * @throws IllegalArgumentException if the rates are invalid
+     */
+    public RateTables updateRates(RateSpec spec) {
+        RateTables tables = new RateTables(spec);
+        rates.set(tables);
+        return tables;
+    }
+
+    /**
+     * Starts a re-quote of every home and auto in the background.
+     * @return the new job, or empty if a job is already running
+     */
+    public Optional<QuoteJobStatus> start() {
+        Job job = new Job(homeRepository.count() + autoRepository.count());
+        if (!running.compareAndSet(null, job)) {
+            return Optional.empty();
+        }
+        jobs.add(job.id, job);
+        jobRunner.submit(() -> run(job, rates.get()));
+        return Optional.of(job.status());
+    }
+
+    /**
+     * Gets the progress of a job.
+     * @param jobId the job id
+     * @return the job status, or empty if there is no such job
+     */
+    public Optional<QuoteJobStatus> status(String jobId) {
+        return jobs.get(jobId).map(Job::status);
+    }
+
+    private void run(Job job, RateTables tables) {
+        LocalDate today = LocalDate.now();
+        try {
+            requote(job, "update home set premium = ?, version = version + 1 where id = ?",
+                    after -> homeRepository.findViewsAfter(after, Limit.of(chunkSize)), HomeView::id,
+                    (List<HomeView> homes) -> i -> tables.homePremium(homes.get(i).value(), homes.get(i).dateBuilt(),
+                            homes.get(i).heatingType(), homes.get(i).location(), today));
+            requote(job, "update auto set premium = ?, version = version + 1 where id = ?",
+                    after -> autoRepository.findViewsAfter(after, Limit.of(chunkSize)), AutoView::id,
+                    (List<AutoView> autos) -> i -> tables.autoPremium(autos.get(i).value(), autos.get(i).dateBuilt(), today));
+            job.finish(null);
+            log.info("Re-quote job {} priced {} rows at {} rows/s", job.id, job.processed.get(),
+                    Math.round(job.status().rowsPerSecond()));
+        } catch (RuntimeException | ExecutionException e) {
+            log.error("Re-quote job {} failed", job.id, e);
+            job.finish(e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.finish("Interrupted");
+        } finally {
+            //The batch updates bypass the entity manager, so cached users, homes and autos still carry the old
+            //premiums and versions, even after a failed run has updated part of the tables. The same goes for
+            //the Hibernate second-level cache when it is switched on
+            entityCache.clear();
+            entityManagerFactory.getCache().evict(Home.class);
+            entityManagerFactory.getCache().evict(Auto.class);
+            running.set(null);
+        }
+    }
+
+    private <T> void requote(Job job, String update, IntFunction<List<T>> nextChunk,
+                             ToIntFunction<T> idOf,
+                             Function<List<T>, IntUnaryOperator> pricer)
+            throws InterruptedException, ExecutionException {
+        int after = 0;
+        List<T> chunk;
+        while (!(chunk = nextChunk.apply(after)).isEmpty()) {
+            int[] premiums = new int[chunk.size()];
+            IntUnaryOperator price = pricer.apply(chunk);
+            pricingPool.submit(() -> IntStream.range(0, premiums.length).parallel()
+                    .forEach(i -> premiums[i] = price.applyAsInt(i))).get();
+
+            List<Object[]> args = new ArrayList<>(chunk.size());
+            for (int i = 0; i < premiums.length; i++) {
+                args.add(new Object[]{premiums[i], idOf.applyAsInt(chunk.get(i))});
+            }
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(update, args));
+            job.processed.addAndGet(chunk.size());
+            after = idOf.applyAsInt(chunk.get(chunk.size() - 1));
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobRunner.shutdownNow();
+        pricingPool.shutdownNow();
+    }
+
+    /**
+     * Mutable progress of one job, read by status requests while the job thread updates it.
+     */
+    private static final class Job {
+        private final String id = UUID.randomUUID().toString();
+        private final long total;
+        private final AtomicLong processed = new AtomicLong();
+        private final Instant startedAt = Instant.now();
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        Job(long total) {
+            this.total = total;
+        }
+
+        void finish(String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+        }
+
+        QuoteJobStatus status() {
+            Instant end = finishedAt == null ? Instant.now() : finishedAt;
+            double seconds = Math.max(1, end.toEpochMilli() - startedAt.toEpochMilli()) / 1000.0;
+            String state = finishedAt == null ? "RUNNING" : error == null ? "COMPLETED" : "FAILED";
+            return new QuoteJobStatus(id, state, total, processed.get(), processed.get() / seconds,
+                    startedAt, finishedAt, error);
+        }
+    }
+}
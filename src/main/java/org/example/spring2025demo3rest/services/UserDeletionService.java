@@ -0,0 +1,184 @@
+package org.example.spring2025demo3rest.services;
+
+import jakarta.annotation.PreDestroy;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.HomeMatch;
+import org.example.spring2025demo3rest.pojos.UserDeletionStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes users together with their homes and autos.
+ * <p>
+ * Each chunk of ids costs three set-based DELETE statements: homes, autos, then the users.
+ * No entity is loaded; two locking reads first take what the chunk removes from the book
+ * statistics, so no concurrent patch can change it between the read and the deletes. A synchronous delete runs every chunk in one transaction, so it either removes
+ * everything or nothing. An asynchronous delete commits chunk by chunk in the background,
+ * so a very large batch never holds its locks for long and its progress can be polled.
+ */
+@Service
+public class UserDeletionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserDeletionService.class);
+
+    /**
+     * Number of finished asynchronous jobs kept for status requests.
+     */
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final UserRepository userRepository;
+    private final HomeRepository homeRepository;
+    private final AutoRepository autoRepository;
+    private final EntityCache entityCache;
+    private final BookStats bookStats;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final ExecutorService jobRunner = Executors.newSingleThreadExecutor(r -> new Thread(r, "user-delete-job"));
+    private final JobHistory<Job> jobs = new JobHistory<>(MAX_FINISHED_JOBS, job -> job.finishedAt != null);
+
+    public UserDeletionService(UserRepository userRepository, HomeRepository homeRepository,
+                               AutoRepository autoRepository, EntityCache entityCache, BookStats bookStats,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${app.batch.chunk-size:500}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.homeRepository = homeRepository;
+        this.autoRepository = autoRepository;
+        this.entityCache = entityCache;
+        this.bookStats = bookStats;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Deletes the given users, their homes and their autos in one transaction.
+     * @param userIds the users to delete; unknown ids are ignored
+     * @return the outcome, with counts of what was deleted
+     */
+    public UserDeletionStatus delete(Collection<Long> userIds) {
+        Job job = new Job(null, userIds);
+        BookStats.Counts changes = bookStats.changes();
+        try {
+            transactionTemplate.executeWithoutResult(status -> chunks(job.userIds).forEach(chunk -> deleteChunk(job, chunk, changes)));
+        } finally {
+            //Evicted whatever the outcome, a rolled back delete only costs a reload
+            job.userIds.forEach(entityCache::evictUser);
+        }
+        bookStats.apply(changes);
+        job.finish(null);
+        return job.status();
+    }
+
+    /**
+     * Starts deleting the given users, their homes and their autos in the background, one transaction per chunk.
+     * @param userIds the users to delete; unknown ids are ignored
+     * @return the new job
+     */
+    public UserDeletionStatus deleteAsync(Collection<Long> userIds) {
+        Job job = new Job(UUID.randomUUID().toString(), userIds);
+        jobs.add(job.id, job);
+        jobRunner.submit(() -> run(job));
+        return job.status();
+    }
+
+    /**
+     * Gets the progress of an asynchronous delete.
+     * @param jobId the job id
+     * @return the job status, or empty if there is no such job
+     */
+    public Optional<UserDeletionStatus> status(String jobId) {
+        return jobs.get(jobId).map(Job::status);
+    }
+
+    private void run(Job job) {
+        try {
+            for (List<Long> chunk : chunks(job.userIds)) {
+                BookStats.Counts changes = bookStats.changes();
+                transactionTemplate.executeWithoutResult(status -> deleteChunk(job, chunk, changes));
+                chunk.forEach(entityCache::evictUser);
+                bookStats.apply(changes);
+            }
+            job.finish(null);
+            log.info("User delete job {} removed {} users, {} homes and {} autos", job.id,
+                    job.users.get(), job.homes.get(), job.autos.get());
+        } catch (RuntimeException e) {
+            log.error("User delete job {} failed", job.id, e);
+            job.finish(e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes one chunk of users, children first so the foreign keys hold at every statement.
+     * What the homes and autos add to the book statistics is collected in changes, to be applied after the commit.
+     */
+    private void deleteChunk(Job job, List<Long> chunk, BookStats.Counts changes) {
+        for (HomeMatch home : homeRepository.lockMatchesByUserIds(chunk)) {
+            changes.removeHome(home.heatingType(), home.location(), home.value());
+        }
+        for (int value : autoRepository.lockValuesByUserIds(chunk)) {
+            changes.removeAuto(value);
+        }
+        job.homes.addAndGet(homeRepository.deleteByUserIds(chunk));
+        job.autos.addAndGet(autoRepository.deleteByUserIds(chunk));
+        job.users.addAndGet(userRepository.deleteByIds(chunk));
+    }
+
+    private List<List<Long>> chunks(List<Long> ids) {
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + chunkSize)));
+        }
+        return chunks;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        jobRunner.shutdownNow();
+    }
+
+    /**
+     * Mutable progress of one delete, read by status requests while the job thread updates it.
+     */
+    private static final class Job {
+        private final String id;
+        private final List<Long> userIds;
+        private final AtomicLong users = new AtomicLong();
+        private final AtomicLong homes = new AtomicLong();
+        private final AtomicLong autos = new AtomicLong();
+        private final Instant startedAt = Instant.now();
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        Job(String id, Collection<Long> userIds) {
+            this.id = id;
+            this.userIds = List.copyOf(new LinkedHashSet<>(userIds));
+        }
+
+        void finish(String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+        }
+
+        UserDeletionStatus status() {
+            String state = finishedAt == null ? "RUNNING" : error == null ? "COMPLETED" : "FAILED";
+            return new UserDeletionStatus(id, state, userIds.size(), users.get(), homes.get(), autos.get(),
+                    startedAt, finishedAt, error);
+        }
+    }
+}
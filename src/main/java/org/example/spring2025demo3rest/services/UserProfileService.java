@@ -0,0 +1,109 @@
+package org.example.spring2025demo3rest.services;
+
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.AutoView;
+import org.example.spring2025demo3rest.pojos.HomeView;
+import org.example.spring2025demo3rest.pojos.MultiGet;
+import org.example.spring2025demo3rest.pojos.Owned;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.pojos.UserProfile;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Composes users with their homes and autos, so a full customer profile is one request.
+ * <p>
+ * One user costs at most three queries, all through the {@link EntityCache}. Many users cost
+ * three queries per IN list of ids (see {@link MultiGetService}): the users, then the homes
+ * and autos of all of them, regrouped by owner in memory.
+ */
+@Service
+public class UserProfileService {
+
+    public static final String HOMES = "homes";
+    public static final String AUTOS = "autos";
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private EntityCache entityCache;
+    @Autowired private MultiGetService multiGetService;
+
+    /**
+     * Check the values of an expand parameter.
+     * @param expand the associations asked for, may be null
+     * @return the associations to load
+     * @throws IllegalArgumentException naming the first unknown association
+     */
+    public static Set<String> expansions(Collection<String> expand) {
+        Set<String> expansions = new LinkedHashSet<>();
+        if (expand == null) {
+            return expansions;
+        }
+        for (String name : expand) {
+            String trimmed = name.trim();
+            if (!trimmed.equals(HOMES) && !trimmed.equals(AUTOS)) {
+                throw new IllegalArgumentException("Unknown expand value " + trimmed + ", expected homes or autos");
+            }
+            expansions.add(trimmed);
+        }
+        return expansions;
+    }
+
+    /**
+     * Compose one user with the given associations.
+     * @param userId the id of the user
+     * @param expand the associations to include, from {@link #expansions(Collection)}
+     * @return the profile, or empty if the user does not exist
+     */
+    public Optional<UserProfile> profile(Long userId, Set<String> expand) {
+        return entityCache.findUser(userId).map(user -> new UserProfile(user.getId(), user.getName(), user.getEmail(),
+                expand.contains(HOMES) ? entityCache.homesOf(userId) : null,
+                expand.contains(AUTOS) ? entityCache.autosOf(userId) : null));
+    }
+
+    /**
+     * Compose many users with the given associations.
+     * @param userIds the ids of the users
+     * @param expand the associations to include, from {@link #expansions(Collection)}
+     * @return one profile per existing user in request order, and the ids that matched no user
+     */
+    @Transactional(readOnly = true)
+    public MultiGet<UserProfile> profiles(Collection<Long> userIds, Set<String> expand) {
+        MultiGet<User> users = multiGetService.byIds(userIds, userRepository::findAllById, User::getId);
+        //Only the owners that exist are worth a join
+        List<Long> existing = users.items().stream().map(user -> user.getId().longValue()).toList();
+        Map<Integer, List<HomeView>> homes = expand.contains(HOMES)
+                ? byOwner(multiGetService.inChunks(existing, homeRepository::findViewsByUserIds)) : null;
+        Map<Integer, List<AutoView>> autos = expand.contains(AUTOS)
+                ? byOwner(multiGetService.inChunks(existing, autoRepository::findViewsByUserIds)) : null;
+
+        List<UserProfile> profiles = new ArrayList<>(existing.size());
+        for (User user : users.items()) {
+            profiles.add(new UserProfile(user.getId(), user.getName(), user.getEmail(),
+                    homes == null ? null : homes.getOrDefault(user.getId(), List.of()),
+                    autos == null ? null : autos.getOrDefault(user.getId(), List.of())));
+        }
+        return new MultiGet<>(profiles, users.missing());
+    }
+
+    private static <T> Map<Integer, List<T>> byOwner(List<Owned<T>> rows) {
+        Map<Integer, List<T>> byOwner = new HashMap<>();
+        for (Owned<T> row : rows) {
+            byOwner.computeIfAbsent(row.userId(), id -> new ArrayList<>()).add(row.view());
+        }
+        return byOwner;
+    }
+}
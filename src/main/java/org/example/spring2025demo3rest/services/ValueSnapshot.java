@@ -0,0 +1,694 @@
+package org.example.spring2025demo3rest.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.ValueGroups;
+import org.example.spring2025demo3rest.pojos.ValueHistogram;
+import org.example.spring2025demo3rest.pojos.ValuePercentiles;
+import org.example.spring2025demo3rest.pojos.ValueSummary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Columnar copy of the value, build date, heating type and location of every home and auto, kept in memory
+ * to answer percentile, histogram and group-by questions without the database or entities.
+ * <p>
+ * Each table is cut into segments of app.analytics.segment-size consecutive ids. A segment holds its rows as
+ * parallel primitive arrays: the value, the build date as an epoch day and the enum ordinals as bytes, ten
+ * bytes per home and eight per auto. Every app.analytics.refresh-interval one aggregate query fetches the row
+ * count, id sum and version sum of each segment, and only the segments whose figures changed are read again.
+ * That query touches every row, but only through the narrow (id, version) index of each table, never the rows.
+ * Every write path bumps the version, so inserts, updates and deletes all show. A refresh builds a new
+ * snapshot that shares the unchanged segments and swaps it in, so queries never wait for one and always see
+ * a consistent copy.
+ * <p>
+ * Queries cut the snapshot into slices of at most app.analytics.slice-size rows and scan them in parallel on
+ * a pool of app.analytics.parallelism threads. Percentiles are exact, found by a radix select over the values
+ * rather than by sorting them.
+ */
+@Service
+public class ValueSnapshot implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ValueSnapshot.class);
+
+    private static final Home.HeatingType[] HEATING_TYPES = Home.HeatingType.values();
+    private static final Home.Location[] LOCATIONS = Home.Location.values();
+
+    /**
+     * The epoch day stored for rows without a build date. Lower than any decade filter.
+     */
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    /**
+     * The ordinal stored for rows without a heating type or location.
+     */
+    private static final byte NONE = -1;
+
+    /**
+     * The radix select reads the values, sign bit flipped so they sort as unsigned, in digits of these sizes,
+     * highest first. Small digits keep the per-thread counters small.
+     */
+    private static final int[] DIGIT_SHIFTS = {21, 10, 0};
+    private static final int[] DIGIT_BITS = {11, 11, 10};
+
+    private static final int MAX_PERCENTILES = 20;
+
+    /**
+     * The tables the snapshot covers.
+     */
+    public enum Table {
+        HOMES("home", true),
+        AUTOS("auto", false);
+
+        private final String tableName;
+        private final boolean hasEnums;
+
+        Table(String tableName, boolean hasEnums) {
+            this.tableName = tableName;
+            this.hasEnums = hasEnums;
+        }
+    }
+
+    /**
+     * Selects the rows a query covers. Null fields do not filter.
+     *
+     * @param location only homes in this location
+     * @param heatingType only homes with this heating type
+     * @param decade only rows built in the ten years starting with this one, a multiple of ten
+     */
+    public record Filter(Home.Location location, Home.HeatingType heatingType, Integer decade) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate scanTx;
+    private final int segmentSize;
+    private final int sliceSize;
+    private final int maxBuckets;
+    private final Duration refreshInterval;
+    private final ForkJoinPool queryPool;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "value-snapshot-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Timer refreshTimer;
+    private final Counter segmentsReloaded;
+
+    /**
+     * The snapshot served, or null until the first refresh has finished.
+     */
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates the snapshot, empty until the startup refresh has run.
+     * @param dataSource the database to read
+     * @param transactionManager used for the transaction of each refresh
+     * @param segmentSize ids per segment, the unit of reloading
+     * @param sliceSize most rows scanned by one task of a query
+     * @param fetchSize rows fetched per round trip while reading a segment
+     * @param refreshInterval how often changed segments are read again, 0 to never
+     * @param parallelism threads scanning for queries, 0 for one per processor
+     * @param maxBuckets most buckets one histogram may have
+     * @param registry the meter registry, for value.snapshot.refresh and value.snapshot.segments.reloaded
+     */
+    public ValueSnapshot(DataSource dataSource, PlatformTransactionManager transactionManager,
+                         @Value("${app.analytics.segment-size:65536}") int segmentSize,
+                         @Value("${app.analytics.slice-size:16384}") int sliceSize,
+                         @Value("${app.analytics.fetch-size:1000}") int fetchSize,
+                         @Value("${app.analytics.refresh-interval:1m}") Duration refreshInterval,
+                         @Value("${app.analytics.parallelism:0}") int parallelism,
+                         @Value("${app.analytics.max-buckets:1000}") int maxBuckets,
+                         MeterRegistry registry) {
+        //A dedicated template so the fetch size only applies to the segment reads
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        //Not read-only, so refreshes are routed to the primary: a lagging replica would hide recent writes
+        this.scanTx = new TransactionTemplate(transactionManager);
+        this.segmentSize = segmentSize;
+        this.sliceSize = sliceSize;
+        this.maxBuckets = maxBuckets;
+        this.refreshInterval = refreshInterval;
+        this.queryPool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.refreshTimer = Timer.builder("value.snapshot.refresh")
+                .description("Time to bring the columnar value snapshot up to date").register(registry);
+        this.segmentsReloaded = Counter.builder("value.snapshot.segments.reloaded")
+                .description("Segments of the value snapshot read again because their rows changed").register(registry);
+    }
+
+    /**
+     * Loads the snapshot and schedules the periodic refreshes.
+     * @param args the application arguments, unused
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        refresh();
+        if (!refreshInterval.isZero()) {
+            long period = refreshInterval.toMillis();
+            refresher.scheduleWithFixedDelay(() -> {
+                try {
+                    refresh();
+                } catch (RuntimeException e) {
+                    log.warn("Value snapshot refresh failed: {}", e.getMessage());
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Reads again the segments that changed since the last refresh, all of them the first time.
+     */
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        Snapshot old = snapshot;
+        int[] reloaded = new int[1];
+        Snapshot next = scanTx.execute(status -> new Snapshot(
+                refresh(Table.HOMES, old == null ? List.of() : old.homes.segments, reloaded),
+                refresh(Table.AUTOS, old == null ? List.of() : old.autos.segments, reloaded),
+                Instant.now()));
+        snapshot = next;
+        long nanos = System.nanoTime() - start;
+        refreshTimer.record(nanos, TimeUnit.NANOSECONDS);
+        segmentsReloaded.increment(reloaded[0]);
+        log.info("{} value snapshot in {} ms, read {} of {} segments, {} homes and {} autos",
+                old == null ? "Loaded" : "Refreshed", nanos / 1_000_000, reloaded[0],
+                next.homes.segments.size() + next.autos.segments.size(), next.homes.rows(), next.autos.rows());
+    }
+
+    private Columns refresh(Table table, List<Segment> current, int[] reloaded) {
+        Map<Long, Segment> byNumber = new HashMap<>();
+        for (Segment segment : current) {
+            byNumber.put(segment.fingerprint.number(), segment);
+        }
+        String segmentOf = "floor(id / " + segmentSize + ")";
+        List<Fingerprint> fingerprints = jdbcTemplate.query("select " + segmentOf + ", count(*), sum(id), "
+                        + "sum(coalesce(version, 0)) from " + table.tableName + " group by " + segmentOf + " order by 1",
+                (rs, rowNum) -> new Fingerprint(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4)));
+        List<Segment> segments = new ArrayList<>(fingerprints.size());
+        for (Fingerprint fingerprint : fingerprints) {
+            Segment segment = byNumber.get(fingerprint.number());
+            if (segment == null || !segment.fingerprint.equals(fingerprint)) {
+                segment = load(table, fingerprint);
+                reloaded[0]++;
+            }
+            segments.add(segment);
+        }
+        return new Columns(segments, slice(segments));
+    }
+
+    private Segment load(Table table, Fingerprint fingerprint) {
+        Segment segment = new Segment(fingerprint, table.hasEnums);
+        long from = fingerprint.number() * segmentSize;
+        if (table.hasEnums) {
+            jdbcTemplate.query("select value, date_built, heating_type, location from home where id >= ? and id < ?",
+                    rs -> {
+                        segment.add(rs.getInt(1), epochDay(rs), ordinal(rs, 3), ordinal(rs, 4));
+                    }, from, from + segmentSize);
+        } else {
+            jdbcTemplate.query("select value, date_built from auto where id >= ? and id < ?",
+                    rs -> {
+                        segment.add(rs.getInt(1), epochDay(rs), NONE, NONE);
+                    }, from, from + segmentSize);
+        }
+        segment.trim();
+        return segment;
+    }
+
+    private List<Slice> slice(List<Segment> segments) {
+        List<Slice> slices = new ArrayList<>();
+        for (Segment segment : segments) {
+            for (int from = 0; from < segment.size; from += sliceSize) {
+                slices.add(new Slice(segment, from, Math.min(segment.size, from + sliceSize)));
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Finds the nearest-rank percentiles of the values of the matching rows.
+     * @param table the table to query
+     * @param filter the rows to cover
+     * @param percentiles the percentiles, each from 0 to 100
+     * @return the percentiles, or empty until the snapshot is first loaded
+     * @throws IllegalArgumentException if the filter or percentiles are invalid
+     */
+    public Optional<ValuePercentiles> percentiles(Table table, Filter filter, double[] percentiles) {
+        if (percentiles.length == 0 || percentiles.length > MAX_PERCENTILES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_PERCENTILES + " percentiles per request");
+        }
+        for (double p : percentiles) {
+            if (!(p >= 0 && p <= 100)) {
+                throw new IllegalArgumentException("Percentiles must be between 0 and 100");
+            }
+        }
+        Matcher matcher = matcher(table, filter);
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        List<Slice> slices = current.of(table).slices;
+        Stats stats = summarize(slices, matcher);
+        List<ValuePercentiles.Percentile> result = new ArrayList<>(percentiles.length);
+        if (stats.count == 0) {
+            for (double p : percentiles) {
+                result.add(new ValuePercentiles.Percentile(p, null));
+            }
+        } else {
+            int[] values = select(slices, matcher, stats.count, percentiles);
+            for (int i = 0; i < percentiles.length; i++) {
+                result.add(new ValuePercentiles.Percentile(percentiles[i], values[i]));
+            }
+        }
+        return Optional.of(new ValuePercentiles(stats.toSummary(), result, current.refreshedAt));
+    }
+
+    /**
+     * Finds the value at each rank, one digit per pass: each pass counts the next digit of the rows whose
+     * higher digits match those found so far, and keeps the digit where the rank falls.
+     */
+    private int[] select(List<Slice> slices, Matcher matcher, long count, double[] percentiles) {
+        long[] ranks = new long[percentiles.length];
+        int[] prefixes = new int[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            ranks[i] = Math.max(1, (long) Math.ceil(percentiles[i] / 100 * count));
+        }
+        for (int pass = 0; pass < DIGIT_SHIFTS.length; pass++) {
+            int shift = DIGIT_SHIFTS[pass];
+            int bits = DIGIT_BITS[pass];
+            int mask = (1 << bits) - 1;
+            int[] distinct = IntStream.of(prefixes).distinct().toArray();
+            boolean first = pass == 0;
+            long[][] counts = scan(slices, matcher, () -> new long[distinct.length][1 << bits], (acc, segment, row) -> {
+                int key = segment.value[row] ^ Integer.MIN_VALUE;
+                int digit = (key >>> shift) & mask;
+                if (first) {
+                    acc[0][digit]++;
+                    return;
+                }
+                int prefix = key >>> (shift + bits);
+                for (int j = 0; j < distinct.length; j++) {
+                    if (distinct[j] == prefix) {
+                        acc[j][digit]++;
+                        return;
+                    }
+                }
+            }, (a, b) -> {
+                for (int j = 0; j < a.length; j++) {
+                    addInto(a[j], b[j]);
+                }
+            });
+            for (int i = 0; i < prefixes.length; i++) {
+                long[] bins = counts[indexOf(distinct, prefixes[i])];
+                int digit = 0;
+                while (ranks[i] > bins[digit]) {
+                    ranks[i] -= bins[digit];
+                    digit++;
+                }
+                prefixes[i] = (prefixes[i] << bits) | digit;
+            }
+        }
+        int[] values = new int[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            values[i] = prefixes[i] ^ Integer.MIN_VALUE;
+        }
+        return values;
+    }
+
+    /**
+     * Counts the values of the matching rows in buckets of one width.
+     * @param table the table to query
+     * @param filter the rows to cover
+     * @param bucketWidth the width of each bucket
+     * @return the histogram, or empty until the snapshot is first loaded
+     * @throws IllegalArgumentException if the filter or width is invalid, or the values span too many buckets
+     */
+    public Optional<ValueHistogram> histogram(Table table, Filter filter, int bucketWidth) {
+        if (bucketWidth < 1) {
+            throw new IllegalArgumentException("Bucket width must be at least 1");
+        }
+        Matcher matcher = matcher(table, filter);
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        List<Slice> slices = current.of(table).slices;
+        Stats stats = summarize(slices, matcher);
+        List<ValueHistogram.Bucket> buckets = new ArrayList<>();
+        if (stats.count > 0) {
+            int first = Math.floorDiv(stats.min, bucketWidth);
+            long span = (long) Math.floorDiv(stats.max, bucketWidth) - first + 1;
+            if (span > maxBuckets) {
+                throw new IllegalArgumentException("The values span " + span + " buckets of width " + bucketWidth
+                        + ", at most " + maxBuckets + " are allowed");
+            }
+            long[] counts = scan(slices, matcher, () -> new long[(int) span], (acc, segment, row) -> {
+                acc[Math.floorDiv(segment.value[row], bucketWidth) - first]++;
+            }, ValueSnapshot::addInto);
+            for (int i = 0; i < counts.length; i++) {
+                buckets.add(new ValueHistogram.Bucket((long) (first + i) * bucketWidth, counts[i]));
+            }
+        }
+        return Optional.of(new ValueHistogram(bucketWidth, stats.toSummary(), buckets, current.refreshedAt));
+    }
+
+    /**
+     * Summarizes the values of the matching rows by location, heating type or build decade.
+     * @param table the table to query
+     * @param filter the rows to cover
+     * @param by location, heatingType or decade; autos only have a decade
+     * @return the groups, or empty until the snapshot is first loaded
+     * @throws IllegalArgumentException if the filter or dimension is invalid
+     */
+    public Optional<ValueGroups> groups(Table table, Filter filter, String by) {
+        if (!"decade".equals(by) && !(table.hasEnums && ("location".equals(by) || "heatingType".equals(by)))) {
+            throw new IllegalArgumentException(table.hasEnums ? "Group by location, heatingType or decade"
+                    : "Autos can only be grouped by decade");
+        }
+        Matcher matcher = matcher(table, filter);
+        Snapshot current = snapshot;
+        if (current == null) {
+            return Optional.empty();
+        }
+        List<Slice> slices = current.of(table).slices;
+        Grouping grouping = switch (by) {
+            case "location" -> new Grouping(LOCATIONS.length,
+                    (segment, row) -> segment.location[row] == NONE ? LOCATIONS.length : segment.location[row],
+                    group -> LOCATIONS[group].name());
+            case "heatingType" -> new Grouping(HEATING_TYPES.length,
+                    (segment, row) -> segment.heatingType[row] == NONE ? HEATING_TYPES.length : segment.heatingType[row],
+                    group -> HEATING_TYPES[group].name());
+            default -> decades(summarize(slices, matcher));
+        };
+        Stats[] stats = scan(slices, matcher, () -> newStats(grouping.groups + 1), (acc, segment, row) -> {
+            acc[grouping.key.of(segment, row)].add(segment.value[row]);
+        }, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i].add(b[i]);
+            }
+        });
+        List<ValueGroups.Group> groups = new ArrayList<>();
+        for (int i = 0; i < stats.length; i++) {
+            if (stats[i].count > 0) {
+                groups.add(new ValueGroups.Group(i < grouping.groups ? grouping.label.of(i) : null, stats[i].toSummary()));
+            }
+        }
+        return Optional.of(new ValueGroups(by, groups, current.refreshedAt));
+    }
+
+    /**
+     * Makes one group per decade from the earliest to the latest build date of the rows.
+     */
+    private static Grouping decades(Stats stats) {
+        if (stats.minDay > stats.maxDay) {
+            return new Grouping(0, (segment, row) -> 0, group -> null);
+        }
+        int firstDecade = Math.floorDiv(LocalDate.ofEpochDay(stats.minDay).getYear(), 10) * 10;
+        int lastDecade = Math.floorDiv(LocalDate.ofEpochDay(stats.maxDay).getYear(), 10) * 10;
+        int groups = (lastDecade - firstDecade) / 10 + 1;
+        int[] starts = new int[groups];
+        for (int i = 0; i < groups; i++) {
+            starts[i] = (int) LocalDate.of(firstDecade + 10 * i, 1, 1).toEpochDay();
+        }
+        return new Grouping(groups, (segment, row) -> {
+            int day = segment.builtDay[row];
+            if (day == NO_DATE) {
+                return groups;
+            }
+            int found = Arrays.binarySearch(starts, day);
+            return found >= 0 ? found : -found - 2;
+        }, group -> String.valueOf(firstDecade + 10 * group));
+    }
+
+    private Matcher matcher(Table table, Filter filter) {
+        if (!table.hasEnums && (filter.location() != null || filter.heatingType() != null)) {
+            throw new IllegalArgumentException("Autos have no location or heating type");
+        }
+        int fromDay = Integer.MIN_VALUE;
+        int toDay = Integer.MAX_VALUE;
+        if (filter.decade() != null) {
+            int decade = filter.decade();
+            if (decade < 0 || decade > 9990 || decade % 10 != 0) {
+                throw new IllegalArgumentException("decade must be the first year of a decade, such as 1990");
+            }
+            fromDay = (int) LocalDate.of(decade, 1, 1).toEpochDay();
+            toDay = (int) LocalDate.of(decade + 10, 1, 1).toEpochDay();
+        }
+        return new Matcher(filter.location() == null ? -1 : filter.location().ordinal(),
+                filter.heatingType() == null ? -1 : filter.heatingType().ordinal(), fromDay, toDay);
+    }
+
+    private Stats summarize(List<Slice> slices, Matcher matcher) {
+        return scan(slices, matcher, Stats::new, (acc, segment, row) -> {
+            acc.add(segment.value[row]);
+            acc.addDay(segment.builtDay[row]);
+        }, Stats::add);
+    }
+
+    /**
+     * Visits every matching row, the slices split across the query pool. Each thread fills containers of its
+     * own, merged at the end.
+     */
+    private <A> A scan(List<Slice> slices, Matcher matcher, Supplier<A> empty, RowVisitor<A> visitor,
+                       BiConsumer<A, A> merge) {
+        try {
+            return queryPool.submit(() -> slices.parallelStream().collect(empty, (acc, slice) -> {
+                Segment segment = slice.segment;
+                for (int row = slice.from; row < slice.to; row++) {
+                    if (matcher.matches(segment, row)) {
+                        visitor.visit(acc, segment, row);
+                    }
+                }
+            }, merge)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while scanning the value snapshot", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static void addInto(long[] target, long[] source) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("No counts for prefix " + value);
+    }
+
+    private static Stats[] newStats(int size) {
+        Stats[] stats = new Stats[size];
+        for (int i = 0; i < size; i++) {
+            stats[i] = new Stats();
+        }
+        return stats;
+    }
+
+    private static int epochDay(ResultSet rs) throws SQLException {
+        LocalDate date = rs.getObject(2, LocalDate.class);
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static byte ordinal(ResultSet rs, int column) throws SQLException {
+        byte ordinal = rs.getByte(column);
+        return rs.wasNull() ? NONE : ordinal;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refresher.shutdownNow();
+        queryPool.shutdownNow();
+    }
+
+    /**
+     * The row count, id sum and version sum of one segment, read by each refresh to spot changed segments.
+     */
+    private record Fingerprint(long number, long rows, long idSum, long versionSum) {
+    }
+
+    /**
+     * The rows of one table whose ids fall in one segment, column by column. Filled once by a refresh, then
+     * only read; the snapshot holding it is published through a volatile field.
+     */
+    private static final class Segment {
+        private final Fingerprint fingerprint;
+        private int size;
+        private int[] value;
+        private int[] builtDay;
+        private byte[] heatingType;
+        private byte[] location;
+
+        private Segment(Fingerprint fingerprint, boolean hasEnums) {
+            this.fingerprint = fingerprint;
+            int capacity = (int) Math.max(1, fingerprint.rows());
+            this.value = new int[capacity];
+            this.builtDay = new int[capacity];
+            if (hasEnums) {
+                this.heatingType = new byte[capacity];
+                this.location = new byte[capacity];
+            }
+        }
+
+        private void add(int value, int builtDay, byte heatingType, byte location) {
+            if (size == this.value.length) {
+                resize(size * 2);
+            }
+            this.value[size] = value;
+            this.builtDay[size] = builtDay;
+            if (this.heatingType != null) {
+                this.heatingType[size] = heatingType;
+                this.location[size] = location;
+            }
+            size++;
+        }
+
+        /**
+         * Drops the spare capacity, left when rows were deleted between the fingerprint and the read.
+         */
+        private void trim() {
+            if (size < value.length) {
+                resize(size);
+            }
+        }
+
+        private void resize(int capacity) {
+            value = Arrays.copyOf(value, capacity);
+            builtDay = Arrays.copyOf(builtDay, capacity);
+            if (heatingType != null) {
+                heatingType = Arrays.copyOf(heatingType, capacity);
+                location = Arrays.copyOf(location, capacity);
+            }
+        }
+    }
+
+    /**
+     * A range of rows of one segment, the unit of work of a parallel scan.
+     */
+    private record Slice(Segment segment, int from, int to) {
+    }
+
+    /**
+     * The segments of one table, in id order, and the slices cut from them.
+     */
+    private record Columns(List<Segment> segments, List<Slice> slices) {
+        private long rows() {
+            return segments.stream().mapToLong(segment -> segment.size).sum();
+        }
+    }
+
+    private record Snapshot(Columns homes, Columns autos, Instant refreshedAt) {
+        private Columns of(Table table) {
+            return table == Table.HOMES ? homes : autos;
+        }
+    }
+
+    /**
+     * A filter in terms of the stored columns: ordinals, -1 for any, and a range of epoch days. Rows without
+     * a build date fall below every range but the one used when no decade is given.
+     */
+    private record Matcher(int location, int heatingType, int fromDay, int toDay) {
+        private boolean matches(Segment segment, int row) {
+            int day = segment.builtDay[row];
+            return day >= fromDay && day < toDay
+                    && (location < 0 || segment.location[row] == location)
+                    && (heatingType < 0 || segment.heatingType[row] == heatingType);
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowVisitor<A> {
+        void visit(A acc, Segment segment, int row);
+    }
+
+    /**
+     * How a group-by splits rows: the groups numbered from 0, plus one more at the end for rows without a
+     * value in the dimension.
+     */
+    private record Grouping(int groups, GroupKey key, GroupLabel label) {
+    }
+
+    @FunctionalInterface
+    private interface GroupKey {
+        int of(Segment segment, int row);
+    }
+
+    @FunctionalInterface
+    private interface GroupLabel {
+        String of(int group);
+    }
+
+    /**
+     * Count, total and range of values, and range of build dates, of some rows.
+     */
+    private static final class Stats {
+        private long count;
+        private long total;
+        private int min = Integer.MAX_VALUE;
+        private int max = Integer.MIN_VALUE;
+        private int minDay = Integer.MAX_VALUE;
+        private int maxDay = Integer.MIN_VALUE;
+
+        private void add(int value) {
+            count++;
+            total += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        private void addDay(int day) {
+            if (day != NO_DATE) {
+                minDay = Math.min(minDay, day);
+                maxDay = Math.max(maxDay, day);
+            }
+        }
+
+        private void add(Stats other) {
+            count += other.count;
+            total += other.total;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            minDay = Math.min(minDay, other.minDay);
+            maxDay = Math.max(maxDay, other.maxDay);
+        }
+
+        private ValueSummary toSummary() {
+            return count == 0 ? ValueSummary.EMPTY : new ValueSummary(count, total, min, max);
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package org.example.spring2025demo3rest.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.SequenceGenerator;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.WriteBehindFailure;
+import org.hibernate.Cache;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind queue for single home and auto creates.
+ * <p>
+ * A create is checked against the cached owner, given an id from a block reserved on the entity's
+ * sequence, queued, and acknowledged before it reaches the database. One writer thread drains the
+ * queue in batches of up to app.write-behind.batch-size rows and writes each batch as JDBC batch
+ * inserts in a single transaction, so a burst of creates costs one commit instead of one per request.
+ * <p>
+ * The queue is bounded: when it stays full for app.write-behind.offer-timeout the create is refused
+ * and the caller answers 503. On shutdown new creates are refused and the writer empties the queue
+ * before the data source closes.
+ * <p>
+ * A row that fails after it was acknowledged, for instance because its owner was deleted in the
+ * meantime, is kept in a list of the last app.write-behind.max-failures failures, which clients
+ * read by owner.
+ */
+@Service
+public class WriteBehindService {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindService.class);
+
+    private static final String INSERT_HOME =
+            "insert into home (id, user_id, date_built, value, heating_type, location, version) values (?, ?, ?, ?, ?, ?, 0)";
+    private static final String INSERT_AUTO =
+            "insert into auto (id, user_id, date_built, value, version) values (?, ?, ?, ?, 0)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityCache entityCache;
+    private final Cache secondLevelCache;
+    private final BookStats bookStats;
+    private final IdBlocks homeIds;
+    private final IdBlocks autoIds;
+    private final BlockingQueue<PendingWrite> queue;
+    private final int batchSize;
+    private final long offerTimeoutNanos;
+    private final Duration shutdownTimeout;
+    private final Thread writer;
+    private final int maxFailures;
+    private final Deque<WriteBehindFailure> failures = new ArrayDeque<>();
+    private volatile boolean accepting = true;
+
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter written;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public WriteBehindService(DataSource dataSource, PlatformTransactionManager transactionManager,
+                              EntityManagerFactory entityManagerFactory, EntityCache entityCache, BookStats bookStats,
+                              MeterRegistry registry,
+                              @Value("${app.write-behind.queue-capacity:10000}") int queueCapacity,
+                              @Value("${app.write-behind.batch-size:500}") int batchSize,
+                              @Value("${app.write-behind.offer-timeout:100ms}") Duration offerTimeout,
+                              @Value("${app.write-behind.shutdown-timeout:30s}") Duration shutdownTimeout,
+                              @Value("${app.write-behind.max-failures:1000}") int maxFailures) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityCache = entityCache;
+        this.secondLevelCache = entityManagerFactory.getCache().unwrap(Cache.class);
+        this.bookStats = bookStats;
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.homeIds = new IdBlocks(jdbcTemplate, dialect, Home.class);
+        this.autoIds = new IdBlocks(jdbcTemplate, dialect, Auto.class);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.shutdownTimeout = shutdownTimeout;
+        this.maxFailures = maxFailures;
+
+        Gauge.builder("write.behind.queued", queue, BlockingQueue::size)
+                .description("Creates accepted but not yet written").register(registry);
+        this.flushTimer = Timer.builder("write.behind.flush")
+                .description("Time to write and commit one batch")
+                .publishPercentiles(0.5, 0.95, 0.99).register(registry);
+        this.batchSizes = DistributionSummary.builder("write.behind.batch.size")
+                .description("Rows written per commit").register(registry);
+        this.written = Counter.builder("write.behind.written").description("Rows written").register(registry);
+        this.failed = Counter.builder("write.behind.failed")
+                .description("Accepted rows that could not be written").register(registry);
+        this.rejected = Counter.builder("write.behind.rejected")
+                .description("Creates refused because the queue was full or shutting down").register(registry);
+
+        //Daemon so a context that is never closed cannot hold the JVM; closing it drains the queue
+        this.writer = new Thread(this::drain, "write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a home for an owner that is known to exist.
+     * @param userId the owner
+     * @param home the home to create
+     * @return the id the home will have, or null if the queue is full or shutting down
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public Integer enqueueHome(Integer userId, NewHome home) throws InterruptedException {
+        return enqueue(new PendingWrite(homeIds.next(), userId, home, null));
+    }
+
+    /**
+     * Queues an auto for an owner that is known to exist.
+     * @param userId the owner
+     * @param auto the auto to create
+     * @return the id the auto will have, or null if the queue is full or shutting down
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     */
+    public Integer enqueueAuto(Integer userId, NewAuto auto) throws InterruptedException {
+        return enqueue(new PendingWrite(autoIds.next(), userId, null, auto));
+    }
+
+    /**
+     * Gets the recent creates for an owner that were accepted but could not be written.
+     * @param userId the owner
+     * @return the failures, oldest first; older ones beyond app.write-behind.max-failures are dropped
+     */
+    public List<WriteBehindFailure> failures(Integer userId) {
+        synchronized (failures) {
+            return failures.stream().filter(failure -> failure.userId().equals(userId)).toList();
+        }
+    }
+
+    private Integer enqueue(PendingWrite write) throws InterruptedException {
+        //An id taken for a refused create is skipped, like a rolled back insert
+        if (!accepting || !queue.offer(write, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+            rejected.increment();
+            return null;
+        }
+        return write.id();
+    }
+
+    /**
+     * Writer loop: waits for a first row, takes whatever else is queued up to the batch size and commits it.
+     * Exits once shutdown has been requested and the queue is empty.
+     */
+    private void drain() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (accepting || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                //Only shutdown interrupts the writer, keep draining until the queue is empty
+                accepting = false;
+            } catch (RuntimeException e) {
+                log.error("Write-behind batch of {} rows failed", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes one batch in a single transaction. If the batch fails, for instance because an owner was
+     * deleted after its create was accepted, each row is retried on its own so one bad row loses only itself.
+     */
+    private void flush(List<PendingWrite> batch) {
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> insert(batch));
+            written.increment(batch.size());
+            count(batch);
+        } catch (RuntimeException e) {
+            log.warn("Write-behind batch of {} rows failed, retrying row by row: {}", batch.size(), e.getMessage());
+            for (PendingWrite write : batch) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(List.of(write)));
+                    written.increment();
+                    count(List.of(write));
+                } catch (RuntimeException rowFailure) {
+                    failed.increment();
+                    String type = write.home() != null ? "home" : "auto";
+                    log.error("Dropped queued {} {} for user {}: {}", type, write.id(), write.userId(),
+                            rowFailure.getMessage());
+                    recordFailure(new WriteBehindFailure(write.id(), write.userId(), type, rowFailure.getMessage(),
+                            Instant.now()));
+                }
+            }
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizes.record(batch.size());
+
+        Set<Integer> homeOwners = new HashSet<>();
+        Set<Integer> autoOwners = new HashSet<>();
+        for (PendingWrite write : batch) {
+            (write.home() != null ? homeOwners : autoOwners).add(write.userId());
+        }
+        homeOwners.forEach(userId -> entityCache.evictHomes(userId.longValue()));
+        autoOwners.forEach(userId -> entityCache.evictAutos(userId.longValue()));
+        //The inserts bypass Hibernate, so cached per-owner query results would not see the new rows
+        secondLevelCache.evictQueryRegions();
+    }
+
+    private void recordFailure(WriteBehindFailure failure) {
+        synchronized (failures) {
+            failures.addLast(failure);
+            while (failures.size() > maxFailures) {
+                failures.removeFirst();
+            }
+        }
+    }
+
+    /**
+     * Adds committed rows to the book statistics.
+     */
+    private void count(List<PendingWrite> written) {
+        BookStats.Counts changes = bookStats.changes();
+        for (PendingWrite write : written) {
+            if (write.home() != null) {
+                changes.addHome(write.home().heatingType(), write.home().location(), write.home().value());
+            } else {
+                changes.addAuto(write.auto().value());
+            }
+        }
+        bookStats.apply(changes);
+    }
+
+    private void insert(List<PendingWrite> batch) {
+        List<Object[]> homes = new ArrayList<>();
+        List<Object[]> autos = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (write.home() != null) {
+                NewHome home = write.home();
+                homes.add(new Object[]{write.id(), write.userId(), dateOf(home.dateBuilt()), home.value(),
+                        ordinalOf(home.heatingType()), ordinalOf(home.location())});
+            } else {
+                NewAuto auto = write.auto();
+                autos.add(new Object[]{write.id(), write.userId(), dateOf(auto.dateBuilt()), auto.value()});
+            }
+        }
+        if (!homes.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_HOME, homes,
+                    new int[]{Types.INTEGER, Types.INTEGER, Types.DATE, Types.INTEGER, Types.INTEGER, Types.INTEGER});
+        }
+        if (!autos.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_AUTO, autos, new int[]{Types.INTEGER, Types.INTEGER, Types.DATE, Types.INTEGER});
+        }
+    }
+
+    private static Date dateOf(LocalDate date) {
+        return date == null ? null : Date.valueOf(date);
+    }
+
+    private static Integer ordinalOf(Enum<?> value) {
+        return value == null ? null : value.ordinal();
+    }
+
+    /**
+     * Stops accepting creates and waits for the writer to empty the queue.
+     */
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        accepting = false;
+        writer.join(shutdownTimeout.toMillis());
+        if (writer.isAlive()) {
+            log.error("Write-behind queue not drained after {}, {} rows lost", shutdownTimeout, queue.size());
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * A queued create: a home or an auto, with its reserved id and owner.
+     */
+    private record PendingWrite(Integer id, Integer userId, NewHome home, NewAuto auto) {
+    }
+
+    /**
+     * Hands out ids from blocks reserved on an entity's sequence.
+     * <p>
+     * Each call to the sequence reserves allocationSize ids, the same pooled-lo blocks Hibernate takes
+     * for its own inserts, so ids handed out here never collide with ids Hibernate generates.
+     * Request threads may be virtual, so the sequence call is guarded by a lock rather than a
+     * monitor, which would pin the carrier thread for the whole round trip.
+     */
+    private static final class IdBlocks {
+        private final JdbcTemplate jdbcTemplate;
+        private final String nextValueSql;
+        private final int allocationSize;
+        private final ReentrantLock lock = new ReentrantLock();
+        private int next;
+        private int end;
+
+        IdBlocks(JdbcTemplate jdbcTemplate, Dialect dialect, Class<?> entity) {
+            SequenceGenerator generator;
+            try {
+                generator = entity.getDeclaredField("id").getAnnotation(SequenceGenerator.class);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException(entity.getSimpleName() + " has no id field", e);
+            }
+            this.jdbcTemplate = jdbcTemplate;
+            this.nextValueSql = dialect.getSequenceSupport().getSequenceNextValString(generator.sequenceName());
+            this.allocationSize = generator.allocationSize();
+        }
+
+        Integer next() {
+            lock.lock();
+            try {
+                if (next == end) {
+                    Integer start = jdbcTemplate.queryForObject(nextValueSql, Integer.class);
+                    next = start;
+                    end = start + allocationSize;
+                }
+                return next++;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
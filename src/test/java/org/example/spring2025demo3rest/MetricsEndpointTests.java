@@ -0,0 +1,40 @@
+package org.example.spring2025demo3rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+class MetricsEndpointTests {
+
+    @Autowired private MockMvc mockMvc;
+
+    @Test
+    void exposesRouteRepositoryHibernateAndPoolMetrics() throws Exception {
+        mockMvc.perform(get("/v1/users/1"));
+        mockMvc.perform(get("/v1/users?limit=1"));
+        String scrape = mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertTrue(scrape.contains("http_server_requests_seconds_bucket"), "request latency histogram");
+        assertTrue(scrape.contains("uri=\"/v1/users/{id}\""), "per-route tag");
+        assertTrue(scrape.contains("quantile=\"0.99\""), "p99");
+        assertTrue(scrape.contains("spring_data_repository_invocations_seconds"), "repository timings");
+        assertTrue(scrape.contains("method=\"findById\""), "per-method tag");
+        assertTrue(scrape.contains("hibernate_statements_total"), "hibernate statistics");
+        assertTrue(scrape.contains("hikaricp_connections_pending"), "pool saturation");
+        assertTrue(scrape.contains("cache_gets_total{cache=\"users\""), "cache hit/miss");
+        assertTrue(scrape.contains("cache_gets_total{cache=\"idempotency\""), "idempotency store hit/miss");
+        assertTrue(scrape.contains("db_admission_queued"), "admission queue depth");
+        assertTrue(scrape.contains("db_admission_rejected_total"), "admission rejections");
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.spring2025demo3rest;
+
+import org.example.spring2025demo3rest.pojos.User;
+
+/**
+ * Unsaved users for test fixtures. Emails are unique, so every test names its users differently.
+ */
+public final class TestUsers {
+
+    private TestUsers() {
+    }
+
+    /**
+     * Creates a user whose email is derived from the name.
+     * @param name the name, spaces become dots in the email
+     * @return the unsaved user
+     */
+    public static User named(String name) {
+        return withEmail(name, name.replace(' ', '.') + "@example.com");
+    }
+
+    /**
+     * Creates a user with a given email.
+     * @param name the name
+     * @param email the email
+     * @return the unsaved user
+     */
+    public static User withEmail(String name, String email) {
+        User user = new User();
+        user.setName(name);
+        user.setEmail(email);
+        return user;
+    }
+}
@@ -0,0 +1,154 @@
+package org.example.spring2025demo3rest.benchmarks;
+
+import org.example.spring2025demo3rest.Spring2025Demo3RestApplication;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows per second for creating homes, one row per request as before the bulk endpoints versus the batched paths.
+ * The two JDBC benchmarks send the same batched INSERTs and differ only in the ids: one sequence call per row,
+ * or one per block of 50 as the pooled-lo optimizer does, so their gap is what the id optimizer alone is worth.
+ * Runs against the in-memory H2 database of the test profile: mvn -Pjmh verify -DskipTests -Djmh.args=BatchInsert
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchInsertBenchmark {
+
+    private static final int ROWS = 1000;
+    private static final int JDBC_BATCH = 50;
+    //Matches allocationSize of home_seq, which the database sequence also increments by
+    private static final int ID_BLOCK = 50;
+    private static final String INSERT = "insert into home (id, date_built, value, heating_type, location, version, user_id) "
+            + "values (?, ?, ?, ?, ?, 0, ?)";
+
+    private ConfigurableApplicationContext context;
+    private UserRepository userRepository;
+    private HomeRepository homeRepository;
+    private BatchInsertService batchInsertService;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private Integer userId;
+    private List<NewHome> rows;
+    private List<Integer> indexes;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Spring2025Demo3RestApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN", "app.batch.chunk-size=500")
+                .run();
+        userRepository = context.getBean(UserRepository.class);
+        homeRepository = context.getBean(HomeRepository.class);
+        batchInsertService = context.getBean(BatchInsertService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+
+        User user = new User();
+        user.setName("Benchmark");
+        user.setEmail("batch-benchmark@example.com");
+        userId = userRepository.save(user).getId();
+        rows = new ArrayList<>(ROWS);
+        indexes = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            indexes.add(i);
+            rows.add(new NewHome(LocalDate.of(1950 + i % 70, 1, 1), 100_000 + i,
+                    Home.HeatingType.values()[i % 3], Home.Location.values()[i % 2]));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * What createHomeByUser did for each row before the bulk endpoints: load the owner, save the home, commit.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void perRowSave() {
+        for (NewHome row : rows) {
+            User user = userRepository.findById(userId.longValue()).orElseThrow();
+            homeRepository.save(row.toHome(user));
+        }
+    }
+
+    /**
+     * Batched INSERTs in one transaction, with a sequence call for every row.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void batchedIdPerRow() {
+        transactionTemplate.executeWithoutResult(status -> insert(ids(1)));
+    }
+
+    /**
+     * Batched INSERTs in one transaction, with a sequence call for every ID_BLOCK rows.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void batchedPooledIds() {
+        transactionTemplate.executeWithoutResult(status -> insert(ids(ID_BLOCK)));
+    }
+
+    /**
+     * The bulk endpoint's path: Hibernate with JDBC batching and pooled-lo ids.
+     */
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public Object batchedService() {
+        return batchInsertService.insertHomes(userId, rows);
+    }
+
+    /**
+     * Draws ROWS ids from home_seq. Each call returns the low end of a block of ID_BLOCK ids, as the
+     * pooled-lo optimizer reads it, so ids drawn here never collide with the ones Hibernate hands out.
+     * @param perCall how many ids of each block to use, 1 for a sequence call per row
+     */
+    private int[] ids(int perCall) {
+        int[] ids = new int[ROWS];
+        for (int i = 0; i < ROWS; i += perCall) {
+            int low = jdbcTemplate.queryForObject("select next value for home_seq", Integer.class);
+            for (int j = 0; j < perCall && i + j < ROWS; j++) {
+                ids[i + j] = low + j;
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Inserts the rows with the given ids in JDBC batches of JDBC_BATCH, the hibernate.jdbc.batch_size.
+     */
+    private void insert(int[] ids) {
+        jdbcTemplate.batchUpdate(INSERT, indexes, JDBC_BATCH, (statement, i) -> {
+            NewHome row = rows.get(i);
+            statement.setInt(1, ids[i]);
+            statement.setDate(2, Date.valueOf(row.dateBuilt()));
+            statement.setInt(3, row.value());
+            statement.setInt(4, row.heatingType().ordinal());
+            statement.setInt(5, row.location().ordinal());
+            statement.setInt(6, userId);
+        });
+    }
+}
@@ -0,0 +1,132 @@
+package org.example.spring2025demo3rest.benchmarks;
+
+import org.example.spring2025demo3rest.Spring2025Demo3RestApplication;
+import org.example.spring2025demo3rest.controllers.MainController;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.example.spring2025demo3rest.services.EntityCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MainController handlers called directly against the in-memory H2 database of the test profile.
+ * Covers the cached and uncached read paths and single-row versus batched writes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+
+    private static final int HOMES_PER_USER = 50;
+    private static final int BATCH = 100;
+
+    private ConfigurableApplicationContext context;
+    private MainController controller;
+    private EntityCache entityCache;
+    private BatchInsertService batchInsertService;
+    private Long userId;
+    private Long homeId;
+    private List<NewHome> batch;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(Spring2025Demo3RestApplication.class)
+                .profiles("test")
+                .web(WebApplicationType.NONE)
+                .properties("logging.level.root=WARN")
+                .run();
+        controller = context.getBean(MainController.class);
+        entityCache = context.getBean(EntityCache.class);
+        batchInsertService = context.getBean(BatchInsertService.class);
+
+        User user = new User();
+        user.setName("Benchmark");
+        user.setEmail("benchmark@example.com");
+        user = context.getBean(UserRepository.class).save(user);
+        userId = user.getId().longValue();
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < Math.max(HOMES_PER_USER, BATCH); i++) {
+            batch.add(new NewHome(LocalDate.of(1950 + i % 70, 1, 1), 100_000 + i,
+                    Home.HeatingType.values()[i % 3], Home.Location.values()[i % 2]));
+        }
+        homeId = batchInsertService.insertHomes(user.getId(), batch.subList(0, HOMES_PER_USER)).get(0).longValue();
+        batch = batch.subList(0, BATCH);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object getUserCached() {
+        return controller.getUser(userId, unconditional());
+    }
+
+    @Benchmark
+    public Object getUserUncached() {
+        entityCache.evictUser(userId);
+        return controller.getUser(userId, unconditional());
+    }
+
+    @Benchmark
+    public Object getAllHomesByUserUncached() {
+        entityCache.evictHomes(userId);
+        return controller.getAllHomesByUser(userId, unconditional());
+    }
+
+    @Benchmark
+    public Object getUsersPage() {
+        return controller.getUsersPage(100, null);
+    }
+
+    @Benchmark
+    public Object updateHomeByUser() {
+        return controller.updateHomeByUser(userId, homeId, LocalDate.of(1970, 1, 1), 123_456,
+                Home.HeatingType.OIL_HEATING, Home.Location.URBAN, null);
+    }
+
+    /**
+     * Creates BATCH homes one request at a time, as a client without the bulk endpoint would.
+     * Ids come from the same pooled sequence as the batched path, so the difference measures the batching
+     * and the single transaction, not the id generator.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void createHomesOneByOne() {
+        for (NewHome home : batch) {
+            controller.createHomeByUser(userId, home.dateBuilt(), home.value(), home.heatingType(), home.location());
+        }
+    }
+
+    /**
+     * Creates BATCH homes through the bulk endpoint with JDBC batching.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object createHomesBatched() {
+        return controller.createHomesByUser(userId, batch);
+    }
+
+    /**
+     * A request without conditional headers, so every call builds the full response.
+     */
+    private static ServletWebRequest unconditional() {
+        return new ServletWebRequest(new MockHttpServletRequest());
+    }
+}
@@ -0,0 +1,92 @@
+package org.example.spring2025demo3rest.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.HomeView;
+import org.example.spring2025demo3rest.pojos.User;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the response bodies, with the same ObjectMapper setup Spring Boot uses.
+ * Home and Auto go through the @JsonFormat LocalDate path; Home entities also carry their owner.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<User> users;
+    private List<Home> homes;
+    private List<HomeView> homeViews;
+    private List<Auto> autos;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        users = new ArrayList<>(size);
+        homes = new ArrayList<>(size);
+        homeViews = new ArrayList<>(size);
+        autos = new ArrayList<>(size);
+        User owner = new User();
+        owner.setId(1);
+        owner.setName("Benchmark Owner");
+        owner.setEmail("owner@example.com");
+        for (int i = 0; i < size; i++) {
+            User user = new User();
+            user.setId(i);
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            users.add(user);
+
+            LocalDate built = LocalDate.of(1950 + i % 70, 1 + i % 12, 1 + i % 28);
+            Home home = new Home();
+            home.setUser(owner);
+            home.setDateBuilt(built);
+            home.setValue(100_000 + i);
+            home.setHeatingType(Home.HeatingType.values()[i % 3]);
+            home.setLocation(Home.Location.values()[i % 2]);
+            homes.add(home);
+            homeViews.add(new HomeView(i, built, 100_000 + i, home.getHeatingType(), home.getLocation(), 0));
+
+            Auto auto = new Auto();
+            auto.setUser(owner);
+            auto.setDateBuilt(built);
+            auto.setValue(10_000 + i);
+            autos.add(auto);
+        }
+    }
+
+    @Benchmark
+    public byte[] users() throws Exception {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public byte[] homeEntities() throws Exception {
+        return objectMapper.writeValueAsBytes(homes);
+    }
+
+    @Benchmark
+    public byte[] homeViews() throws Exception {
+        return objectMapper.writeValueAsBytes(homeViews);
+    }
+
+    @Benchmark
+    public byte[] autoEntities() throws Exception {
+        return objectMapper.writeValueAsBytes(autos);
+    }
+}
@@ -0,0 +1,114 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DbAdmissionFilterTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void shedsWithRetryAfterWhenSaturated() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(1, 0, Duration.ZERO, Duration.ofSeconds(2), registry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), (req, res) -> {
+                    running.countDown();
+                    await(finish);
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("db.admission.active").gauge().value());
+
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), rejected, (req, res) -> { });
+        assertEquals(503, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertEquals(1.0, registry.get("db.admission.rejected").tag("reason", "queue_full").counter().count());
+
+        finish.countDown();
+        holder.join();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), admitted, (req, res) -> { });
+        assertEquals(200, admitted.getStatus());
+        assertEquals(0.0, registry.get("db.admission.active").gauge().value());
+    }
+
+    @Test
+    void queuesUntilTheTimeout() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(1, 10, Duration.ofMillis(50), Duration.ofSeconds(1), registry);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread holder = Thread.ofVirtual().start(() -> {
+            try {
+                filter.doFilter(new MockHttpServletRequest(), new MockHttpServletResponse(), (req, res) -> {
+                    running.countDown();
+                    await(finish);
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        MockHttpServletResponse timedOut = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest(), timedOut, (req, res) -> { });
+        assertEquals(503, timedOut.getStatus());
+        assertEquals(1.0, registry.get("db.admission.rejected").tag("reason", "timeout").counter().count());
+        assertTrue(registry.get("db.admission.wait").timer().max(TimeUnit.MILLISECONDS) >= 50);
+
+        finish.countDown();
+        holder.join();
+    }
+
+    @Test
+    void letsRoutesThatNeedNoPermitThrough() throws Exception {
+        DbAdmissionFilter filter = new DbAdmissionFilter(0, 0, Duration.ZERO, Duration.ofSeconds(1), registry);
+        assertEquals(503, filtered(filter, new MockHttpServletRequest("GET", "/v1/users/1")));
+        assertEquals(200, filtered(filter, new MockHttpServletRequest("GET", "/v1/stats")));
+        assertEquals(200, filtered(filter, new MockHttpServletRequest("GET", "/v1/analytics/homes/percentiles")));
+        assertEquals(200, filtered(filter, new MockHttpServletRequest("GET", "/v1/export")));
+        assertEquals(200, filtered(filter, async("POST", "/v1/users/1/homes")));
+        assertEquals(200, filtered(filter, async("POST", "/v1/users/1/autos")));
+        assertEquals(200, filtered(filter, async("DELETE", "/v1/users/batch")));
+        //async=true only exempts the routes that queue work
+        assertEquals(503, filtered(filter, async("GET", "/v1/users")));
+        assertEquals(503, filtered(filter, async("GET", "/v1/users/1/homes")));
+        assertEquals(503, filtered(filter, async("POST", "/v1/users/batch")));
+        assertEquals(503, filtered(filter, async("DELETE", "/v1/users/1/homes/2")));
+    }
+
+    private static MockHttpServletRequest async(String method, String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, uri);
+        request.setParameter("async", "true");
+        return request;
+    }
+
+    private static int filtered(DbAdmissionFilter filter, MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> { });
+        return response.getStatus();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotencyFilterTests {
+
+    private final IdempotencyFilter filter = new IdempotencyFilter(1 << 20, 64, Duration.ofMinutes(1),
+            Duration.ofSeconds(5), new SimpleMeterRegistry());
+    private final AtomicInteger executions = new AtomicInteger();
+
+    @Test
+    void replaysTheFirstResponse() throws Exception {
+        MockHttpServletResponse first = post("k1", "a");
+        assertEquals(201, first.getStatus());
+        assertEquals("created 1", first.getContentAsString());
+        assertNull(first.getHeader(IdempotencyFilter.REPLAYED));
+
+        MockHttpServletResponse replay = post("k1", "a");
+        assertEquals(201, replay.getStatus());
+        assertEquals("created 1", replay.getContentAsString());
+        assertEquals("/v1/things/1", replay.getHeader("Location"));
+        assertEquals("true", replay.getHeader(IdempotencyFilter.REPLAYED));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        Thread firstThread = Thread.ofVirtual().start(() -> {
+            try {
+                filter.doFilter(request("k2", "a"), new MockHttpServletResponse(), (req, res) -> {
+                    running.countDown();
+                    await(finish);
+                    res.getWriter().write("slow");
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        MockHttpServletResponse[] duplicate = new MockHttpServletResponse[1];
+        Thread duplicateThread = Thread.ofVirtual().start(() -> {
+            try {
+                duplicate[0] = post("k2", "a");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        finish.countDown();
+        firstThread.join();
+        duplicateThread.join();
+        assertEquals("slow", duplicate[0].getContentAsString());
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void rejectsAKeyReusedWithOtherParameters() throws Exception {
+        post("k3", "a");
+        assertEquals(422, post("k3", "b").getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void matchesTheBodyToo() throws Exception {
+        assertEquals("created 1 from [1,2]", postJson("k5", "[1,2]").getContentAsString());
+        MockHttpServletResponse replay = postJson("k5", "[1,2]");
+        assertEquals("created 1 from [1,2]", replay.getContentAsString());
+        assertEquals("true", replay.getHeader(IdempotencyFilter.REPLAYED));
+        assertEquals(422, postJson("k5", "[3,4]").getStatus());
+        assertEquals(413, postJson("k6", "[" + "1,".repeat(40) + "1]").getStatus());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void forgetsFailedRequests() throws Exception {
+        MockHttpServletResponse failed = new MockHttpServletResponse();
+        filter.doFilter(request("k4", "a"), failed, (req, res) -> ((HttpServletResponse) res).setStatus(500));
+        assertEquals(500, failed.getStatus());
+
+        MockHttpServletResponse retried = post("k4", "a");
+        assertEquals(201, retried.getStatus());
+        assertNull(retried.getHeader(IdempotencyFilter.REPLAYED));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void rejectsOversizedKeys() throws Exception {
+        assertEquals(400, post("k".repeat(256), "a").getStatus());
+        assertEquals(0, executions.get());
+    }
+
+    private MockHttpServletResponse post(String key, String name) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request(key, name), response, (req, res) -> {
+            int id = executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(201);
+            ((HttpServletResponse) res).setHeader("Location", "/v1/things/" + id);
+            res.getWriter().write("created " + id);
+        });
+        return response;
+    }
+
+    private MockHttpServletResponse postJson(String key, String json) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/things/batch");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        request.setContentType("application/json");
+        request.setContent(json.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, (req, res) -> {
+            int id = executions.incrementAndGet();
+            ((HttpServletResponse) res).setStatus(201);
+            res.getWriter().write("created " + id + " from "
+                    + new String(req.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        });
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String key, String name) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/v1/things");
+        request.addHeader(IdempotencyFilter.IDEMPOTENCY_KEY, key);
+        request.addParameter("name", name);
+        return request;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
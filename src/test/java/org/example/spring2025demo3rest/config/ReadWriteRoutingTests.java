@@ -0,0 +1,154 @@
+package org.example.spring2025demo3rest.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.EntityCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Two embedded databases stand in for the primary and a replica that has not caught up
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadWriteRoutingTests.PRIMARY_URL,
+        "app.datasource.routing.enabled=true",
+        "app.datasource.routing.replica-urls[0]=" + ReadWriteRoutingTests.REPLICA_URL})
+class ReadWriteRoutingTests {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE";
+    private static final String PRIMARY = "jdbc:h2:mem:routing-primary";
+    private static final String REPLICA = "jdbc:h2:mem:routing-replica";
+    private static final int REPLICA_ONLY_ID = 424242;
+
+    static {
+        //The replica gets its own copy of the user table, holding a row the primary does not have
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists user (id int primary key, name varchar(255), "
+                    + "email varchar(255), version bigint default 0)");
+            statement.execute("merge into user key (id) values (" + REPLICA_ONLY_ID + ", 'Replica Only', 'replica@example.com', 0)");
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private EntityCache entityCache;
+    @Autowired private MeterRegistry registry;
+
+    //The test framework binds a mock request to every test thread
+    @AfterEach
+    void endRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void bindsEachIndexedReplicaUrlWhole() {
+        //The URL contains a comma, which a comma-separated list would have cut into two bogus replicas
+        assertTrue(REPLICA_URL.contains(","));
+        assertEquals(1.0, registry.get("db.routing.replicas.healthy").gauge().value());
+    }
+
+    @Test
+    void cacheLoadsReadTheReplicaUntilTheRequestHasWritten() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        entityCache.clear();
+        assertTrue(entityCache.findUser((long) REPLICA_ONLY_ID).isPresent());
+
+        User written = userRepository.save(named("Routing Cache Write"));
+        entityCache.clear();
+        assertTrue(entityCache.findUser(written.getId().longValue()).isPresent());
+        assertTrue(entityCache.findUser((long) REPLICA_ONLY_ID).isEmpty());
+        entityCache.clear();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplicaAndWritesToThePrimary() {
+        //Like a batch job, outside any request, so there is no read-your-writes
+        RequestContextHolder.resetRequestAttributes();
+        assertEquals("Replica Only", userRepository.findById((long) REPLICA_ONLY_ID).orElseThrow().getName());
+
+        User written = userRepository.save(named("Routing Primary"));
+        //This replica never catches up
+        assertFalse(userRepository.existsById(written.getId().longValue()));
+    }
+
+    @Test
+    void requestReadsItsOwnWritesFromThePrimary() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertTrue(userRepository.existsById((long) REPLICA_ONLY_ID));
+
+        User written = userRepository.save(named("Routing Read Your Writes"));
+        assertTrue(userRepository.existsById(written.getId().longValue()));
+        assertFalse(userRepository.existsById((long) REPLICA_ONLY_ID));
+    }
+
+    @Test
+    void failsOverToThePrimaryUntilTheReplicaIsBack() throws Exception {
+        FlakyDataSource replica = new FlakyDataSource(REPLICA_URL);
+        try (ReadWriteRoutingDataSource router = new ReadWriteRoutingDataSource(
+                new DriverManagerDataSource(PRIMARY_URL, "sa", ""), List.of(replica), true,
+                Duration.ofMillis(50), new SimpleMeterRegistry())) {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            assertEquals(REPLICA, urlOf(router));
+
+            replica.down = true;
+            assertEquals(PRIMARY, urlOf(router));
+            replica.down = false;
+            //Out of rotation until the health check has seen it answer again
+            assertEquals(PRIMARY, urlOf(router));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (!urlOf(router).equals(REPLICA) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(REPLICA, urlOf(router));
+        } finally {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+    }
+
+    private static String urlOf(ReadWriteRoutingDataSource router) throws SQLException {
+        try (Connection connection = router.getConnection()) {
+            return connection.getMetaData().getURL();
+        }
+    }
+
+    /**
+     * A replica that refuses connections while down.
+     */
+    private static final class FlakyDataSource extends DriverManagerDataSource {
+        private volatile boolean down;
+
+        FlakyDataSource(String url) {
+            super(url, "sa", "");
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Replica down");
+            }
+            return super.getConnection();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.spring2025demo3rest.services.ValueSnapshot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//A database of its own so the snapshot covers exactly the rows written here, cut into small segments and
+//slices so every query spans many of them
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:analytics-test;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "app.analytics.refresh-interval=0",
+        "app.analytics.segment-size=8",
+        "app.analytics.slice-size=3",
+        "app.analytics.parallelism=4"})
+@AutoConfigureMockMvc
+class AnalyticsControllerTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private ValueSnapshot valueSnapshot;
+    @Autowired private MeterRegistry registry;
+
+    @Test
+    void answersHomeQuestionsFromTheSnapshot() throws Exception {
+        long userId = createUser("Analytics Homes");
+        //Home i is worth 7919 * i mod 100000, so values are distinct and out of id order
+        StringBuilder homes = new StringBuilder("[");
+        List<Integer> urbanValues = new ArrayList<>();
+        for (int i = 1; i <= 60; i++) {
+            int value = 7919 * i % 100_000;
+            String location = i % 3 == 0 ? "RURAL" : "URBAN";
+            if (location.equals("URBAN")) {
+                urbanValues.add(value);
+            }
+            homes.append(i > 1 ? "," : "").append("{\"dateBuilt\":\"").append(1950 + i).append("-06-01\",\"value\":")
+                    .append(value).append(",\"heatingType\":\"OIL_HEATING\",\"location\":\"").append(location).append("\"}");
+        }
+        mockMvc.perform(post("/v1/users/" + userId + "/homes/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(homes.append("]").toString()))
+                .andExpect(status().isOk());
+        valueSnapshot.refresh();
+
+        JsonNode percentiles = query(get("/v1/analytics/homes/percentiles").param("p", "0", "25", "50", "99.5", "100")
+                .param("location", "URBAN"));
+        urbanValues.sort(null);
+        assertEquals(40, percentiles.at("/summary/count").asLong());
+        assertEquals(urbanValues.get(0), percentiles.at("/percentiles/0/value").asInt());
+        assertEquals(urbanValues.get(9), percentiles.at("/percentiles/1/value").asInt());
+        assertEquals(urbanValues.get(19), percentiles.at("/percentiles/2/value").asInt());
+        assertEquals(urbanValues.get(39), percentiles.at("/percentiles/3/value").asInt());
+        assertEquals(urbanValues.get(39), percentiles.at("/percentiles/4/value").asInt());
+        assertEquals(99.5, percentiles.at("/percentiles/3/p").asDouble());
+
+        JsonNode histogram = query(get("/v1/analytics/homes/histogram").param("width", "25000"));
+        assertEquals(4, histogram.get("buckets").size());
+        long inHistogram = 0;
+        for (JsonNode bucket : histogram.get("buckets")) {
+            inHistogram += bucket.get("count").asLong();
+        }
+        assertEquals(60, inHistogram);
+        assertEquals(25_000, histogram.at("/buckets/1/minValue").asLong());
+
+        JsonNode byDecade = query(get("/v1/analytics/homes/groups").param("by", "decade").param("location", "RURAL"));
+        assertEquals("1950", byDecade.at("/groups/0/key").asText());
+        assertEquals(3, byDecade.at("/groups/0/summary/count").asLong());
+        //Rural homes were built every third year from 1953 to 2010, four of them in the 1980s
+        assertEquals(7, byDecade.get("groups").size());
+        assertEquals("1980", byDecade.at("/groups/3/key").asText());
+        assertEquals(4, byDecade.at("/groups/3/summary/count").asLong());
+        assertEquals(3, query(get("/v1/analytics/homes/percentiles").param("decade", "1950")
+                .param("location", "RURAL").param("heatingType", "OIL_HEATING")).at("/summary/count").asLong());
+
+        JsonNode byLocation = query(get("/v1/analytics/homes/groups").param("by", "location"));
+        assertEquals("URBAN", byLocation.at("/groups/0/key").asText());
+        assertEquals(40, byLocation.at("/groups/0/summary/count").asLong());
+        assertEquals(20, byLocation.at("/groups/1/summary/count").asLong());
+    }
+
+    @Test
+    void refreshReadsOnlyTheSegmentsThatChanged() throws Exception {
+        long userId = createUser("Analytics Autos");
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= 20; i++) {
+            ids.add(createAuto(userId, 1_000 * i, 2000 + i % 10));
+        }
+        valueSnapshot.refresh();
+        JsonNode before = query(get("/v1/analytics/autos/percentiles").param("p", "50", "100"));
+        assertEquals(20, before.at("/summary/count").asLong());
+        assertEquals(10_000, before.at("/percentiles/0/value").asInt());
+        assertEquals(20_000, before.at("/percentiles/1/value").asInt());
+
+        mockMvc.perform(patch("/v1/users/" + userId + "/autos/" + ids.get(0)).param("value", "90000"))
+                .andExpect(status().isOk());
+        double reloaded = registry.get("value.snapshot.segments.reloaded").counter().count();
+        valueSnapshot.refresh();
+        assertEquals(1, registry.get("value.snapshot.segments.reloaded").counter().count() - reloaded);
+        assertEquals(90_000, query(get("/v1/analytics/autos/percentiles").param("p", "100"))
+                .at("/percentiles/0/value").asInt());
+
+        mockMvc.perform(delete("/v1/users/" + userId + "/autos/" + ids.get(19))).andExpect(status().isOk());
+        valueSnapshot.refresh();
+        JsonNode groups = query(get("/v1/analytics/autos/groups"));
+        assertEquals("2000", groups.at("/groups/0/key").asText());
+        assertEquals(19, groups.at("/groups/0/summary/count").asLong());
+        assertEquals(19, query(get("/v1/analytics/autos/histogram").param("width", "100000"))
+                .at("/buckets/0/count").asLong());
+    }
+
+    @Test
+    void rejectsInvalidQuestions() throws Exception {
+        mockMvc.perform(get("/v1/analytics/homes/percentiles").param("p", "101")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/analytics/homes/percentiles").param("decade", "1995")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/analytics/homes/histogram").param("width", "0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/analytics/homes/groups").param("by", "owner")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/v1/analytics/autos/groups").param("by", "location")).andExpect(status().isBadRequest());
+    }
+
+    private JsonNode query(MockHttpServletRequestBuilder request) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private long createUser(String name) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(post("/v1/users").param("name", name)
+                        .param("email", name.replace(' ', '.') + "@example.com"))
+                .andReturn().getResponse().getContentAsString()).get("id").asLong();
+    }
+
+    private int createAuto(long userId, int value, int year) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(post("/v1/users/" + userId + "/autos")
+                        .param("dateBuilt", year + "-01-01").param("value", String.valueOf(value)))
+                .andReturn().getResponse().getContentAsString()).get("id").asInt();
+    }
+}
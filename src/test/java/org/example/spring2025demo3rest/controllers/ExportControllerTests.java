@@ -0,0 +1,113 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.example.spring2025demo3rest.TestUsers.withEmail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ExportControllerTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void exportsUsersWithNestedHomesAndAutosAsNdjson() throws Exception {
+        User owner = userRepository.save(withEmail("Export, Owner", "export-owner@example.com"));
+        User empty = userRepository.save(withEmail("Export Empty", "export-empty@example.com"));
+        batchInsertService.insertHomes(owner.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 5, 1), 250_000, Home.HeatingType.WOOD_HEATING, Home.Location.RURAL),
+                new NewHome(LocalDate.of(2001, 1, 1), 300_000, Home.HeatingType.OIL_HEATING, Home.Location.URBAN)));
+        batchInsertService.insertAutos(owner.getId(), List.of(new NewAuto(LocalDate.of(2019, 3, 1), 20_000)));
+
+        String body = new String(export("/v1/export", null), StandardCharsets.UTF_8);
+        JsonNode exported = line(body, owner.getId());
+        assertEquals("Export, Owner", exported.get("name").asText());
+        assertEquals(2, exported.get("homes").size());
+        assertEquals("WOOD_HEATING", exported.at("/homes/0/heatingType").asText());
+        assertEquals("RURAL", exported.at("/homes/0/location").asText());
+        assertEquals("1990-05-01", exported.at("/homes/0/dateBuilt").asText());
+        assertEquals(1, exported.get("autos").size());
+        assertEquals(20_000, exported.at("/autos/0/value").asInt());
+
+        JsonNode none = line(body, empty.getId());
+        assertEquals(0, none.get("homes").size());
+        assertEquals(0, none.get("autos").size());
+    }
+
+    @Test
+    void exportsGzippedCsvWithOneLinePerItem() throws Exception {
+        User owner = userRepository.save(withEmail("Csv, \"Quoted\"", "export-csv@example.com"));
+        User empty = userRepository.save(withEmail("Csv Empty", "export-csv-empty@example.com"));
+        batchInsertService.insertHomes(owner.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 5, 1), 250_000, Home.HeatingType.WOOD_HEATING, Home.Location.RURAL)));
+        batchInsertService.insertAutos(owner.getId(), List.of(new NewAuto(LocalDate.of(2019, 3, 1), 20_000)));
+
+        byte[] gzipped = export("/v1/export?format=csv", "gzip");
+        String body = new String(new GZIPInputStream(new ByteArrayInputStream(gzipped)).readAllBytes(),
+                StandardCharsets.UTF_8);
+        String[] lines = body.split("\n");
+        assertEquals("user_id,name,email,type,id,date_built,value,heating_type,location,premium", lines[0]);
+        List<String> ownerLines = Arrays.stream(lines).filter(l -> l.startsWith(owner.getId() + ",")).toList();
+        assertEquals(2, ownerLines.size());
+        assertTrue(ownerLines.get(0).startsWith(owner.getId() + ",\"Csv, \"\"Quoted\"\"\",export-csv@example.com,home,"));
+        assertTrue(ownerLines.get(0).endsWith(",1990-05-01,250000,WOOD_HEATING,RURAL,"));
+        assertTrue(ownerLines.get(1).contains(",auto,"));
+        assertTrue(Arrays.asList(lines).contains(empty.getId() + ",Csv Empty,export-csv-empty@example.com,,,,,,,"));
+    }
+
+    @Test
+    void unknownFormatIsBadRequest() throws Exception {
+        mockMvc.perform(get("/v1/export?format=xml")).andExpect(status().isBadRequest());
+    }
+
+    private byte[] export(String url, String acceptEncoding) throws Exception {
+        var request = get(url);
+        if (acceptEncoding != null) {
+            request.header("Accept-Encoding", acceptEncoding);
+        }
+        MvcResult started = mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+        return mockMvc.perform(asyncDispatch(started))
+                .andExpect(acceptEncoding == null ? header().doesNotExist("Content-Encoding")
+                        : header().string("Content-Encoding", acceptEncoding))
+                .andReturn().getResponse().getContentAsByteArray();
+    }
+
+    private JsonNode line(String ndjson, Integer userId) throws Exception {
+        for (String line : ndjson.split("\n")) {
+            JsonNode node = objectMapper.readTree(line);
+            if (node.get("id").asInt() == userId) {
+                return node;
+            }
+        }
+        throw new AssertionError("No line for user " + userId);
+    }
+}
@@ -0,0 +1,126 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.example.spring2025demo3rest.TestUsers.withEmail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ImportControllerTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+
+    @Test
+    void importsCsvAndReportsBadRows() throws Exception {
+        User owner = userRepository.save(withEmail("CSV Owner", "csv-owner@example.com"));
+        //Listing the homes caches the empty list, which the import has to evict
+        mockMvc.perform(get("/v1/users/" + owner.getId() + "/homes")).andExpect(status().isOk());
+        String csv = """
+                type,userId,email,dateBuilt,value,heatingType,location
+                home,%1$d,,1990-05-01,250000,OIL_HEATING,URBAN
+                home,,csv-owner@example.com,2001-01-01,300000,wood_heating,rural
+                auto,%1$d,,2019-03-01,20000,,
+                home,%1$d,,1990-05-01,250000,GAS_HEATING,URBAN
+                auto,999999,,2019-03-01,20000,,
+                boat,%1$d,,2019-03-01,20000,,
+                auto,,nobody@example.com,2019-03-01,20000,,
+                auto,%1$d,,03/01/2019,20000,,
+                """.formatted(owner.getId());
+
+        JsonNode job = importing("text/csv", csv);
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(8, job.get("rowsRead").asInt());
+        assertEquals(2, job.get("homesCreated").asInt());
+        assertEquals(1, job.get("autosCreated").asInt());
+        assertEquals(5, job.get("rowsRejected").asInt());
+        assertEquals(5, job.at("/errors/0/line").asInt());
+        assertEquals(6, job.at("/errors/1/line").asInt());
+
+        assertEquals(2, homeRepository.findViewsByUserId(owner.getId().longValue()).size());
+        JsonNode homes = objectMapper.readTree(mockMvc.perform(get("/v1/users/" + owner.getId() + "/homes"))
+                .andReturn().getResponse().getContentAsString());
+        assertEquals(2, homes.size());
+
+        JsonNode polled = objectMapper.readTree(mockMvc.perform(get("/v1/imports/" + job.get("id").asText()))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        assertEquals(5, polled.get("rowsRejected").asInt());
+    }
+
+    @Test
+    void importsNdjson() throws Exception {
+        User owner = userRepository.save(withEmail("NDJSON Owner", "ndjson-owner@example.com"));
+        String ndjson = """
+                {"type":"home","email":"ndjson-owner@example.com","dateBuilt":"1980-01-01","value":150000,"heatingType":"OTHER_HEATING","location":"RURAL"}
+                {"type":"auto","userId":%1$d,"dateBuilt":"2021-06-01","value":35000}
+                not json
+                {"type":"auto","userId":%1$d,"dateBuilt":"2022-06-01"}
+                """.formatted(owner.getId());
+
+        JsonNode job = importing(MediaType.APPLICATION_NDJSON_VALUE, ndjson);
+        assertEquals(1, job.get("homesCreated").asInt());
+        assertEquals(1, job.get("autosCreated").asInt());
+        assertEquals(2, job.get("rowsRejected").asInt());
+        assertEquals(1, autoRepository.findViewsByUserId(owner.getId().longValue()).size());
+    }
+
+    @Test
+    void readsQuotedCsvFields() throws Exception {
+        User owner = userRepository.save(withEmail("Quoted CSV Owner", "quoted-csv-owner@example.com"));
+        String csv = """
+                type,userId,address,dateBuilt,value,heatingType,location
+                home,%1$d,"12 Main St, Apt 4",1990-05-01,250000,OIL_HEATING,URBAN
+                home,%1$d,"The ""Old"" Mill, Lane 2", 2001-01-01 ,"300000",WOOD_HEATING,RURAL
+                home,%1$d,"Unclosed, 1990-05-01,250000,OIL_HEATING,URBAN
+                """.formatted(owner.getId());
+
+        JsonNode job = importing("text/csv", csv);
+        assertEquals(2, job.get("homesCreated").asInt());
+        assertEquals(1, job.get("rowsRejected").asInt());
+        assertEquals(4, job.at("/errors/0/line").asInt());
+    }
+
+    @Test
+    void csvWithoutHeaderFails() throws Exception {
+        JsonNode job = importing("text/csv", "home,1,,1990-05-01,250000,OIL_HEATING,URBAN\n");
+        assertEquals("FAILED", job.get("state").asText());
+    }
+
+    @Test
+    void unknownJobIsNotFound() throws Exception {
+        mockMvc.perform(get("/v1/imports/nope")).andExpect(status().isNotFound());
+    }
+
+    /**
+     * Starts an import and polls it until it has finished.
+     */
+    private JsonNode importing(String contentType, String body) throws Exception {
+        JsonNode job = objectMapper.readTree(mockMvc.perform(post("/v1/imports").contentType(contentType).content(body))
+                .andExpect(status().isAccepted()).andReturn().getResponse().getContentAsString());
+        String jobId = job.get("id").asText();
+        for (int attempt = 0; attempt < 100 && "RUNNING".equals(job.get("state").asText()); attempt++) {
+            Thread.sleep(50);
+            job = objectMapper.readTree(mockMvc.perform(get("/v1/imports/" + jobId))
+                    .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        }
+        return job;
+    }
+}
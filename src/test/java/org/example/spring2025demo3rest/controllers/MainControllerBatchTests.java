@@ -0,0 +1,56 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerBatchTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+
+    @Test
+    void createsUsersAndHomesInBulk() throws Exception {
+        JsonNode userIds = postJson("/v1/users/batch",
+                "[{\"name\":\"A\",\"email\":\"a@example.com\"},{\"name\":\"B\",\"email\":\"b@example.com\"}]");
+        assertEquals(2, userIds.size());
+
+        int owner = userIds.get(0).asInt();
+        StringBuilder homes = new StringBuilder("[");
+        for (int i = 0; i < 120; i++) {
+            homes.append(i == 0 ? "" : ",")
+                    .append("{\"dateBuilt\":\"1970-01-01\",\"value\":").append(i)
+                    .append(",\"heatingType\":\"WOOD_HEATING\",\"location\":\"RURAL\"}");
+        }
+        JsonNode homeIds = postJson("/v1/users/" + owner + "/homes/batch", homes.append("]").toString());
+        assertEquals(120, homeIds.size());
+        assertEquals(120, homeRepository.findViewsByUserId((long) owner).size());
+    }
+
+    @Test
+    void rejectsBulkHomesForUnknownUser() throws Exception {
+        mockMvc.perform(post("/v1/users/999999/homes/batch").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isNotFound());
+    }
+
+    private JsonNode postJson(String url, String body) throws Exception {
+        String response = mockMvc.perform(post(url).contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(response);
+    }
+}
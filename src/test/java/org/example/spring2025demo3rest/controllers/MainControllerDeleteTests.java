@@ -0,0 +1,126 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerDeleteTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void deletesUserWithHomesAndAutosInThreeDeletes() throws Exception {
+        User owner = saveWithChildren("Delete Owner");
+        long userId = owner.getId();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(delete("/v1/users/" + userId))
+                .andExpect(status().isOk())
+                .andExpect(content().string("User with ID " + userId + " deleted successfully."));
+        //Three deletes, after two aggregate reads of what leaves the book statistics
+        assertEquals(5, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        assertFalse(userRepository.existsById(userId));
+        assertEquals(0, homeRepository.findViewsByUserId(userId).size());
+        assertEquals(0, autoRepository.findViewsByUserId(userId).size());
+        mockMvc.perform(delete("/v1/users/" + userId))
+                .andExpect(content().string("User with ID " + userId + " not found."));
+    }
+
+    @Test
+    void bulkDeleteCountsWhatWasRemoved() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(saveWithChildren("Bulk Delete " + i).getId().longValue());
+        }
+        ids.add(999_999L);
+
+        mockMvc.perform(delete("/v1/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ids)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("COMPLETED"))
+                .andExpect(jsonPath("$.requested").value(4))
+                .andExpect(jsonPath("$.usersDeleted").value(3))
+                .andExpect(jsonPath("$.homesDeleted").value(6))
+                .andExpect(jsonPath("$.autosDeleted").value(3));
+        ids.forEach(id -> assertFalse(userRepository.existsById(id)));
+    }
+
+    @Test
+    void asyncBulkDeleteCanBePolled() throws Exception {
+        List<Long> ids = List.of(saveWithChildren("Async Delete 1").getId().longValue(),
+                saveWithChildren("Async Delete 2").getId().longValue());
+
+        String body = mockMvc.perform(delete("/v1/users/batch").param("async", "true")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(ids)))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        String jobId = objectMapper.readTree(body).get("id").asText();
+
+        JsonNode job;
+        long deadline = System.currentTimeMillis() + 10_000;
+        do {
+            Thread.sleep(20);
+            job = objectMapper.readTree(mockMvc.perform(get("/v1/users/batch/jobs/" + jobId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+        } while ("RUNNING".equals(job.get("state").asText()) && System.currentTimeMillis() < deadline);
+
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(2, job.get("usersDeleted").asLong());
+        assertEquals(4, job.get("homesDeleted").asLong());
+        ids.forEach(id -> assertFalse(userRepository.existsById(id)));
+        mockMvc.perform(get("/v1/users/batch/jobs/unknown")).andExpect(status().isNotFound());
+    }
+
+    private User saveWithChildren(String name) {
+        User user = named(name);
+        user = userRepository.save(user);
+        batchInsertService.insertHomes(user.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN),
+                new NewHome(LocalDate.of(2000, 1, 1), 200, Home.HeatingType.WOOD_HEATING, Home.Location.RURAL)));
+        batchInsertService.insertAutos(user.getId(), List.of(new NewAuto(LocalDate.of(2020, 1, 1), 100)));
+        return user;
+    }
+}
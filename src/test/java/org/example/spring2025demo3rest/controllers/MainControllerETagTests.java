@@ -0,0 +1,150 @@
+package org.example.spring2025demo3rest.controllers;
+
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerETagTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private BatchInsertService batchInsertService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void userAnswersNotModifiedUntilItChanges() throws Exception {
+        User user = userRepository.save(named("ETag User"));
+        String etag = etagOf("/v1/users/" + user.getId());
+        assertEquals("\"0\"", etag);
+
+        mockMvc.perform(get("/v1/users/" + user.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        mockMvc.perform(put("/v1/users/" + user.getId()).param("name", "Renamed").param("email", "renamed@example.com"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/v1/users/" + user.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+    }
+
+    @Test
+    void homeListTagChangesOnCreateUpdateAndDelete() throws Exception {
+        User user = userRepository.save(named("ETag Homes"));
+        List<Integer> ids = batchInsertService.insertHomes(user.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN),
+                new NewHome(LocalDate.of(2000, 1, 1), 200, Home.HeatingType.OIL_HEATING, Home.Location.URBAN)));
+        String url = "/v1/users/" + user.getId() + "/homes";
+        String first = etagOf(url);
+        mockMvc.perform(get(url).header("If-None-Match", first)).andExpect(status().isNotModified());
+
+        //Updating the older home leaves the maximum version unchanged, the tag must still move
+        mockMvc.perform(put(url + "/" + ids.get(0)).param("dateBuilt", "1991-01-01").param("value", "150")
+                        .param("heatingType", "WOOD_HEATING").param("location", "RURAL"))
+                .andExpect(status().isOk());
+        String updated = etagOf(url);
+        assertNotEquals(first, updated);
+
+        mockMvc.perform(post(url).param("dateBuilt", "2010-01-01").param("value", "300")
+                .param("heatingType", "OIL_HEATING").param("location", "URBAN")).andExpect(status().isOk());
+        String created = etagOf(url);
+        assertNotEquals(updated, created);
+
+        mockMvc.perform(delete(url + "/" + ids.get(1)))
+                .andExpect(status().isOk());
+        assertNotEquals(created, etagOf(url));
+    }
+
+    @Test
+    void listTagCoversEveryRow() {
+        //Home 2 deleted and home 1 inserted below the largest id: same count, largest id and version sum
+        List<long[]> before = List.of(new long[]{2, 0}, new long[]{3, 1}, new long[]{4, 0});
+        List<long[]> after = List.of(new long[]{1, 0}, new long[]{3, 1}, new long[]{4, 0});
+        assertNotEquals(tagOf(before), tagOf(after));
+        //The same rows in another order are the same list
+        assertEquals(tagOf(after), tagOf(List.of(after.get(2), after.get(0), after.get(1))));
+    }
+
+    @Test
+    void autoListAnswersNotModified() throws Exception {
+        User user = userRepository.save(named("ETag Autos"));
+        batchInsertService.insertAutos(user.getId(), List.of(new NewAuto(LocalDate.of(2020, 1, 1), 100)));
+        String url = "/v1/users/" + user.getId() + "/autos";
+        mockMvc.perform(get(url).header("If-None-Match", etagOf(url))).andExpect(status().isNotModified());
+    }
+
+    @Test
+    void updateChecksIfMatch() throws Exception {
+        User user = userRepository.save(named("If-Match"));
+        Integer homeId = batchInsertService.insertHomes(user.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN))).get(0);
+        String url = "/v1/users/" + user.getId() + "/homes/" + homeId;
+
+        String etag = mockMvc.perform(put(url).header("If-Match", "\"0\"").param("dateBuilt", "1990-01-01")
+                        .param("value", "110").param("heatingType", "OIL_HEATING").param("location", "URBAN"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertEquals("\"1\"", etag);
+
+        mockMvc.perform(put(url).header("If-Match", "\"0\"").param("dateBuilt", "1990-01-01")
+                        .param("value", "120").param("heatingType", "OIL_HEATING").param("location", "URBAN"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string("ETag", "\"1\""));
+        assertEquals(110, homeRepository.findById(homeId.longValue()).orElseThrow().getValue());
+    }
+
+    @Test
+    void concurrentUpdateIsRejected() {
+        User user = userRepository.save(named("Lost Update"));
+        Integer homeId = batchInsertService.insertHomes(user.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN))).get(0);
+        Home stale = homeRepository.findByIdAndUserId(homeId.longValue(), user.getId().longValue()).orElseThrow();
+        assertNotNull(stale.getVersion());
+
+        //Another writer commits between our read and our write
+        jdbcTemplate.update("update home set value = 999, version = version + 1 where id = ?", homeId);
+        stale.setValue(500);
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> homeRepository.save(stale));
+        assertEquals(999, homeRepository.findById(homeId.longValue()).orElseThrow().getValue());
+    }
+
+    private static String tagOf(List<long[]> rows) {
+        return ETags.ofList(rows, row -> (int) row[0], row -> row[1]);
+    }
+
+    private String etagOf(String url) throws Exception {
+        String etag = mockMvc.perform(get(url)).andExpect(status().isOk()).andReturn().getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        return etag;
+    }
+}
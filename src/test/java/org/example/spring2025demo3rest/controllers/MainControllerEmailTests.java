@@ -0,0 +1,94 @@
+package org.example.spring2025demo3rest.controllers;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerEmailTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private MeterRegistry registry;
+
+    @Test
+    void findsUsersByEmail() throws Exception {
+        User user = userRepository.save(named("Email Lookup"));
+        mockMvc.perform(get("/v1/users/by-email").param("email", user.getEmail()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(user.getId()))
+                .andExpect(jsonPath("$.name").value("Email Lookup"));
+        mockMvc.perform(get("/v1/users/by-email").param("email", "nobody@example.com"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void checksNewEmailsWithoutQueryingTheIndex() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        double skipped = skippedLookups();
+        statistics.clear();
+        for (int i = 0; i < 20; i++) {
+            mockMvc.perform(post("/v1/users").param("name", "New " + i).param("email", "email-new-" + i + "@example.com"))
+                    .andExpect(status().isOk());
+        }
+        //A lookup by email only runs for the rare false positive of the email filter
+        long lookups = 20 - Math.round(skippedLookups() - skipped);
+        assertTrue(lookups < 20);
+        assertEquals(lookups, statistics.getQueryExecutionCount());
+        assertEquals(20, statistics.getEntityInsertCount());
+    }
+
+    @Test
+    void rejectsEmailsOfOtherUsers() throws Exception {
+        User taken = userRepository.save(named("Email Taken"));
+        User other = userRepository.save(named("Email Other"));
+        long before = userRepository.count();
+
+        mockMvc.perform(post("/v1/users").param("name", "Copy").param("email", taken.getEmail()))
+                .andExpect(status().isConflict());
+        assertEquals(before, userRepository.count());
+        mockMvc.perform(put("/v1/users/" + other.getId()).param("name", "Copy").param("email", taken.getEmail()))
+                .andExpect(status().isConflict());
+        mockMvc.perform(patch("/v1/users/" + other.getId()).param("email", taken.getEmail()))
+                .andExpect(status().isConflict());
+        mockMvc.perform(post("/v1/users/batch").contentType("application/json")
+                        .content("[{\"name\":\"Copy\",\"email\":\"" + taken.getEmail() + "\"}]"))
+                .andExpect(status().isConflict());
+        assertEquals(before, userRepository.count());
+
+        //Keeping one's own email is not a conflict
+        mockMvc.perform(put("/v1/users/" + taken.getId()).param("name", "Renamed").param("email", taken.getEmail()))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/v1/users/" + taken.getId()).param("email", taken.getEmail()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(put("/v1/users/" + other.getId()).param("name", "Moved").param("email", "moved@example.com"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/v1/users/by-email").param("email", "moved@example.com"))
+                .andExpect(jsonPath("$.id").value(other.getId()));
+    }
+
+    private double skippedLookups() {
+        return registry.get("email.filter.lookups").tag("result", "skipped").counter().count();
+    }
+}
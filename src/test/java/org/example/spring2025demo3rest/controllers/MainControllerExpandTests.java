@@ -0,0 +1,99 @@
+package org.example.spring2025demo3rest.controllers;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.example.spring2025demo3rest.services.EntityCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerExpandTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BatchInsertService batchInsertService;
+    @Autowired private EntityCache entityCache;
+
+    @Test
+    void expandsOneUserInAtMostThreeQueries() throws Exception {
+        User user = saveWithChildren("Expand One", 2);
+        entityCache.clear();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/v1/users/" + user.getId()).param("expand", "homes,autos"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Expand One"))
+                .andExpect(jsonPath("$.homes.length()").value(2))
+                .andExpect(jsonPath("$.autos.length()").value(1));
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        mockMvc.perform(get("/v1/users/" + user.getId()).param("expand", "autos"))
+                .andExpect(jsonPath("$.homes").doesNotExist())
+                .andExpect(jsonPath("$.autos[0].value").value(100));
+        mockMvc.perform(get("/v1/users/999999").param("expand", "homes")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/v1/users/" + user.getId()).param("expand", "claims")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void expandsManyUsersInThreeQueries() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(saveWithChildren("Expand Many " + i, i).getId().longValue());
+        }
+        String idList = ids.stream().map(String::valueOf).collect(Collectors.joining(",")) + ",999999";
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(get("/v1/users").param("ids", idList).param("expand", "homes,autos"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(5))
+                .andExpect(jsonPath("$.items[0].homes.length()").value(0))
+                .andExpect(jsonPath("$.items[4].id").value(ids.get(4)))
+                .andExpect(jsonPath("$.items[4].homes.length()").value(4))
+                .andExpect(jsonPath("$.items[4].autos.length()").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(999999));
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+        mockMvc.perform(get("/v1/users").param("ids", idList))
+                .andExpect(jsonPath("$.items.length()").value(5))
+                .andExpect(jsonPath("$.items[0].homes").doesNotExist());
+    }
+
+    private User saveWithChildren(String name, int homes) {
+        User user = named(name);
+        user = userRepository.save(user);
+        List<NewHome> newHomes = new ArrayList<>();
+        for (int i = 0; i < homes; i++) {
+            newHomes.add(new NewHome(LocalDate.of(1990 + i, 1, 1), 100 + i, Home.HeatingType.OIL_HEATING, Home.Location.URBAN));
+        }
+        if (!newHomes.isEmpty()) {
+            batchInsertService.insertHomes(user.getId(), newHomes);
+        }
+        batchInsertService.insertAutos(user.getId(), List.of(new NewAuto(LocalDate.of(2020, 1, 1), 100)));
+        return user;
+    }
+}
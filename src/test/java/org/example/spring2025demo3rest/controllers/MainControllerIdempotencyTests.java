@@ -0,0 +1,57 @@
+package org.example.spring2025demo3rest.controllers;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.json.JsonCompareMode;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerIdempotencyTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+
+    @Test
+    void retriedCreateReturnsTheSameUserWithoutTouchingTheDatabase() throws Exception {
+        long before = userRepository.count();
+        String created = mockMvc.perform(post("/v1/users")
+                        .header("Idempotency-Key", "create-idempotent-user")
+                        .param("name", "Idempotent User")
+                        .param("email", "idempotent-user@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andReturn().getResponse().getContentAsString();
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(post("/v1/users")
+                        .header("Idempotency-Key", "create-idempotent-user")
+                        .param("name", "Idempotent User")
+                        .param("email", "idempotent-user@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().json(created, JsonCompareMode.STRICT));
+        assertEquals(0, statistics.getPrepareStatementCount());
+        assertEquals(before + 1, userRepository.count());
+
+        mockMvc.perform(post("/v1/users")
+                        .header("Idempotency-Key", "create-idempotent-user")
+                        .param("name", "Someone Else")
+                        .param("email", "idempotent-user@example.com"))
+                .andExpect(status().isUnprocessableEntity());
+    }
+}
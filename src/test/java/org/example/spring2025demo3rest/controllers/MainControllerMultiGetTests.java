@@ -0,0 +1,83 @@
+package org.example.spring2025demo3rest.controllers;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//IN lists of two ids so a handful of ids spans several queries; own database since the id sequences restart with the schema
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:multiget-test;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "app.query.in-list-size=2"})
+@AutoConfigureMockMvc
+class MainControllerMultiGetTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void getsUsersInRequestOrderWithOneQueryPerInList() throws Exception {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ids.add(userRepository.save(named("Multi Get " + i)).getId());
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        //Five distinct ids, one of them unknown and one repeated: three IN lists
+        mockMvc.perform(get("/v1/users").param("ids", ids.get(3) + ",999999," + ids.get(0) + "," + ids.get(2) + ","
+                        + ids.get(0) + "," + ids.get(1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(4))
+                .andExpect(jsonPath("$.items[0].id").value(ids.get(3)))
+                .andExpect(jsonPath("$.items[1].id").value(ids.get(0)))
+                .andExpect(jsonPath("$.items[3].id").value(ids.get(1)))
+                .andExpect(jsonPath("$.missing.length()").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(999999));
+        assertEquals(3, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getsHomesAndAutosWithTheirOwners() throws Exception {
+        User owner = userRepository.save(named("Multi Get Owner"));
+        List<Integer> homeIds = batchInsertService.insertHomes(owner.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN),
+                new NewHome(LocalDate.of(2000, 1, 1), 200, Home.HeatingType.WOOD_HEATING, Home.Location.RURAL),
+                new NewHome(LocalDate.of(2010, 1, 1), 300, Home.HeatingType.OTHER_HEATING, Home.Location.URBAN)));
+        List<Integer> autoIds = batchInsertService.insertAutos(owner.getId(), List.of(
+                new NewAuto(LocalDate.of(2020, 1, 1), 100)));
+
+        mockMvc.perform(get("/v1/homes").param("ids", homeIds.get(2) + "," + homeIds.get(0) + "," + homeIds.get(1)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(homeIds.get(2)))
+                .andExpect(jsonPath("$.items[0].value").value(300))
+                .andExpect(jsonPath("$.items[1].userId").value(owner.getId()))
+                .andExpect(jsonPath("$.missing.length()").value(0));
+        mockMvc.perform(get("/v1/autos").param("ids", "999999," + autoIds.get(0)))
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items[0].userId").value(owner.getId()))
+                .andExpect(jsonPath("$.missing[0]").value(999999));
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerPaginationTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+
+    private User owner;
+
+    @BeforeEach
+    void setUp() {
+        homeRepository.deleteAll();
+        autoRepository.deleteAll();
+        userRepository.deleteAll();
+        for (int i = 0; i < 7; i++) {
+            User user = new User();
+            user.setName("User " + i);
+            user.setEmail("user" + i + "@example.com");
+            owner = userRepository.save(user);
+        }
+        for (int i = 0; i < 3; i++) {
+            Home home = new Home();
+            home.setUser(owner);
+            home.setValue(100_000 + i);
+            home.setDateBuilt(LocalDate.of(1990 + i, 1, 1));
+            home.setHeatingType(Home.HeatingType.OIL_HEATING);
+            home.setLocation(Home.Location.URBAN);
+            homeRepository.save(home);
+        }
+    }
+
+    @Test
+    void walksUsersPageByPage() throws Exception {
+        Set<Integer> seen = new HashSet<>();
+        String cursor = "";
+        int pages = 0;
+        do {
+            JsonNode page = getJson("/v1/users?limit=3&cursor=" + cursor);
+            page.get("items").forEach(user -> assertTrue(seen.add(user.get("id").asInt())));
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            pages++;
+        } while (cursor != null);
+        assertEquals(7, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void pagesHomesOfOneUser() throws Exception {
+        JsonNode first = getJson("/v1/users/" + owner.getId() + "/homes?limit=2");
+        assertEquals(2, first.get("items").size());
+        JsonNode second = getJson("/v1/users/" + owner.getId() + "/homes?limit=2&cursor=" + first.get("nextCursor").asText());
+        assertEquals(1, second.get("items").size());
+        assertTrue(second.get("nextCursor").isNull());
+    }
+
+    @Test
+    void rejectsMalformedCursor() throws Exception {
+        mockMvc.perform(get("/v1/users?limit=2&cursor=not-a-cursor")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void plainListStillReturnsArray() throws Exception {
+        JsonNode users = getJson("/v1/users");
+        assertTrue(users.isArray());
+        assertEquals(7, users.size());
+    }
+
+    @Test
+    void streamsUsersAsNdjson() throws Exception {
+        MvcResult started = mockMvc.perform(get("/v1/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk()).andReturn();
+        String body = mockMvc.perform(asyncDispatch(started)).andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(7, lines.length);
+        for (String line : lines) {
+            assertTrue(objectMapper.readTree(line).has("email"));
+        }
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        String body = mockMvc.perform(get(url)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
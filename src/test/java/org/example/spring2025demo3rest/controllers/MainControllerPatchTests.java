@@ -0,0 +1,104 @@
+package org.example.spring2025demo3rest.controllers;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerPatchTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void patchesOnlyGivenHomeFieldsInOneUpdate() throws Exception {
+        User owner = userRepository.save(named("Patch Owner"));
+        Integer homeId = batchInsertService.insertHomes(owner.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN))).get(0);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mockMvc.perform(patch("/v1/users/" + owner.getId() + "/homes/" + homeId).param("value", "250"))
+                .andExpect(status().isOk());
+        //The update, after a locking projection read of the old value for the book statistics
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        Home home = homeRepository.findById(homeId.longValue()).orElseThrow();
+        assertEquals(250, home.getValue());
+        assertEquals(LocalDate.of(1990, 1, 1), home.getDateBuilt());
+        assertEquals(Home.HeatingType.OIL_HEATING, home.getHeatingType());
+        assertEquals(Home.Location.URBAN, home.getLocation());
+        assertEquals(1L, home.getVersion());
+    }
+
+    @Test
+    void patchOfAnotherUsersHomeIsNotFound() throws Exception {
+        User owner = userRepository.save(named("Patch Home Owner"));
+        User other = userRepository.save(named("Patch Other"));
+        Integer homeId = batchInsertService.insertHomes(owner.getId(), List.of(
+                new NewHome(LocalDate.of(1990, 1, 1), 100, Home.HeatingType.OIL_HEATING, Home.Location.URBAN))).get(0);
+
+        mockMvc.perform(patch("/v1/users/" + other.getId() + "/homes/" + homeId).param("value", "1"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(patch("/v1/users/" + owner.getId() + "/homes/" + homeId))
+                .andExpect(status().isBadRequest());
+        assertEquals(100, homeRepository.findById(homeId.longValue()).orElseThrow().getValue());
+    }
+
+    @Test
+    void patchChecksIfMatchInTheUpdate() throws Exception {
+        User owner = userRepository.save(named("Patch If-Match"));
+        Integer autoId = batchInsertService.insertAutos(owner.getId(), List.of(
+                new NewAuto(LocalDate.of(2020, 1, 1), 100))).get(0);
+        String url = "/v1/users/" + owner.getId() + "/autos/" + autoId;
+
+        mockMvc.perform(patch(url).header("If-Match", "\"0\"").param("dateBuilt", "2021-02-03"))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch(url).header("If-Match", "\"0\"").param("value", "5"))
+                .andExpect(status().isPreconditionFailed());
+
+        Auto auto = autoRepository.findById(autoId.longValue()).orElseThrow();
+        assertEquals(LocalDate.of(2021, 2, 3), auto.getDateBuilt());
+        assertEquals(100, auto.getValue());
+    }
+
+    @Test
+    void patchesUser() throws Exception {
+        User user = userRepository.save(named("Patch User"));
+        mockMvc.perform(patch("/v1/users/" + user.getId()).param("email", "patched@example.com"))
+                .andExpect(status().isOk());
+        User patched = userRepository.findById(user.getId().longValue()).orElseThrow();
+        assertEquals("Patch User", patched.getName());
+        assertEquals("patched@example.com", patched.getEmail());
+
+        mockMvc.perform(patch("/v1/users/999999").param("name", "Nobody")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,93 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.example.spring2025demo3rest.services.EntityCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.withEmail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Compares the old entity-based home list (owner loaded and repeated in every row)
+ * with the projection-based one, by statement count and response size.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerProjectionTests {
+
+    private static final int HOMES = 200;
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private TransactionTemplate transactionTemplate;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private BatchInsertService batchInsertService;
+    @Autowired private EntityCache entityCache;
+
+    @Test
+    void homeListIsOneQueryAndSmallerWithoutRepeatedOwner() throws Exception {
+        User owner = userRepository.save(withEmail("Owner With A Reasonably Long Name", "owner.with.many.properties@example.com"));
+        List<NewHome> rows = new ArrayList<>();
+        for (int i = 0; i < HOMES; i++) {
+            rows.add(new NewHome(LocalDate.of(1960 + i % 60, 1, 1), 150_000 + i,
+                    Home.HeatingType.OIL_HEATING, Home.Location.URBAN));
+        }
+        batchInsertService.insertHomes(owner.getId(), rows);
+        Long userId = owner.getId().longValue();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        //Before: entities with the owner serialized into every row
+        statistics.clear();
+        byte[] before = transactionTemplate.execute(status -> {
+            try {
+                return objectMapper.writeValueAsBytes(homeRepository.getAllByUserId(userId));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long beforeStatements = statistics.getPrepareStatementCount();
+        long beforeEntities = statistics.getEntityLoadCount();
+
+        //After: projections straight from the home table
+        entityCache.clear();
+        statistics.clear();
+        String after = mockMvc.perform(get("/v1/users/" + userId + "/homes"))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        long afterStatements = statistics.getPrepareStatementCount();
+        long afterEntities = statistics.getEntityLoadCount();
+        int afterBytes = after.getBytes().length;
+
+        //Both sides are one statement; the entities also load and serialize the owner
+        assertEquals(1, beforeStatements);
+        assertEquals(HOMES + 1, beforeEntities);
+        assertEquals(1, afterStatements);
+        assertEquals(0, afterEntities);
+        assertTrue(afterBytes < before.length * 0.75, "projection payload should be much smaller");
+        assertFalse(after.contains("email"));
+        assertEquals(HOMES, objectMapper.readTree(after).size());
+    }
+}
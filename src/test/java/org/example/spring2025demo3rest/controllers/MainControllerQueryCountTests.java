@@ -0,0 +1,163 @@
+package org.example.spring2025demo3rest.controllers;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.EntityCache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Guards the number of SQL statements each nested endpoint sends, using Hibernate statistics.
+ * Caches are cleared before each measured request unless a test checks the cached path.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerQueryCountTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private EntityCache entityCache;
+
+    private Statistics statistics;
+    private User owner;
+    private Home home;
+    private Auto auto;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        owner = new User();
+        owner.setName("Owner");
+        //Emails are unique, and every test creates its own owner
+        owner.setEmail("owner-" + UUID.randomUUID() + "@example.com");
+        owner = userRepository.save(owner);
+
+        home = new Home();
+        home.setUser(owner);
+        home.setValue(250_000);
+        home.setDateBuilt(LocalDate.of(1965, 5, 1));
+        home.setHeatingType(Home.HeatingType.WOOD_HEATING);
+        home.setLocation(Home.Location.RURAL);
+        home = homeRepository.save(home);
+
+        auto = new Auto();
+        auto.setUser(owner);
+        auto.setValue(20_000);
+        auto.setDateBuilt(LocalDate.of(2018, 3, 1));
+        auto = autoRepository.save(auto);
+    }
+
+    @Test
+    void listsHomesAndAutosInOneQuery() throws Exception {
+        assertStatements(1, get("/v1/users/" + owner.getId() + "/homes"));
+        assertStatements(1, get("/v1/users/" + owner.getId() + "/autos"));
+    }
+
+    @Test
+    void listForUnknownUserChecksExistence() throws Exception {
+        assertStatements(2, get("/v1/users/999999/homes"));
+    }
+
+    @Test
+    void cachedReadsSkipTheDatabase() throws Exception {
+        assertStatements(1, get("/v1/users/" + owner.getId()));
+        assertEquals(0, countStatements(get("/v1/users/" + owner.getId()), false));
+        assertStatements(1, get("/v1/users/" + owner.getId() + "/homes"));
+        assertEquals(0, countStatements(get("/v1/users/" + owner.getId() + "/homes"), false));
+    }
+
+    @Test
+    void writesEvictCachedReads() throws Exception {
+        mockMvc.perform(get("/v1/users/" + owner.getId() + "/homes")).andExpect(status().isOk());
+        mockMvc.perform(put("/v1/users/" + owner.getId() + "/homes/" + home.getId())
+                .param("dateBuilt", "1966-05-01").param("value", "999")
+                .param("heatingType", "OIL_HEATING").param("location", "RURAL"));
+        mockMvc.perform(get("/v1/users/" + owner.getId() + "/homes"))
+                .andExpect(content().string(containsString("\"value\":999")));
+
+        mockMvc.perform(get("/v1/users/" + owner.getId())).andExpect(status().isOk());
+        mockMvc.perform(put("/v1/users/" + owner.getId()).param("name", "Renamed").param("email", "r@example.com"));
+        mockMvc.perform(get("/v1/users/" + owner.getId()))
+                .andExpect(content().string(containsString("Renamed")));
+    }
+
+    @Test
+    void createLoadsOwnerOnceAndInserts() throws Exception {
+        //Sequence blocks are shared across tests, so allow for one id block fetch
+        long statements = countStatements(post("/v1/users/" + owner.getId() + "/homes")
+                .param("dateBuilt", "2000-01-01").param("value", "1")
+                .param("heatingType", "OIL_HEATING").param("location", "URBAN"));
+        assertTrue(statements == 2 || statements == 3, "statements: " + statements);
+        statements = countStatements(post("/v1/users/" + owner.getId() + "/autos")
+                .param("dateBuilt", "2000-01-01").param("value", "1"));
+        assertTrue(statements == 2 || statements == 3, "statements: " + statements);
+    }
+
+    @Test
+    void updateIsOneOwnerScopedSelectAndOneUpdate() throws Exception {
+        assertStatements(2, put("/v1/users/" + owner.getId() + "/homes/" + home.getId())
+                .param("dateBuilt", "1966-05-01").param("value", "260000")
+                .param("heatingType", "OIL_HEATING").param("location", "RURAL"));
+        assertStatements(2, put("/v1/users/" + owner.getId() + "/autos/" + auto.getId())
+                .param("dateBuilt", "2018-03-01").param("value", "19000"));
+    }
+
+    @Test
+    void updateOfSomeoneElsesHomeIsNotFound() throws Exception {
+        mockMvc.perform(put("/v1/users/999999/homes/" + home.getId())
+                        .param("dateBuilt", "1966-05-01").param("value", "1")
+                        .param("heatingType", "OIL_HEATING").param("location", "RURAL"))
+                .andExpect(content().string("Home with ID " + home.getId() + " not found."));
+    }
+
+    @Test
+    void deleteIsOneLockingReadAndOneDelete() throws Exception {
+        assertStatements(2, delete("/v1/users/" + owner.getId() + "/homes/" + home.getId()));
+        assertStatements(2, delete("/v1/users/" + owner.getId() + "/autos/" + auto.getId()));
+    }
+
+    private void assertStatements(long expected, RequestBuilder request) throws Exception {
+        assertEquals(expected, countStatements(request));
+    }
+
+    private long countStatements(RequestBuilder request) throws Exception {
+        return countStatements(request, true);
+    }
+
+    private long countStatements(RequestBuilder request, boolean coldCache) throws Exception {
+        if (coldCache) {
+            entityCache.clear();
+        }
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().isOk());
+        return statistics.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,75 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.withEmail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerSearchTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void findsOldRuralWoodHeatedHomesAcrossPages() throws Exception {
+        User owner = userRepository.save(withEmail("Underwritten", "underwritten@example.com"));
+        List<NewHome> homes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            homes.add(new NewHome(LocalDate.of(1940 + i, 6, 1), 1_000_000 + i * 10_000,
+                    Home.HeatingType.values()[i % 3], Home.Location.values()[i % 2]));
+        }
+        batchInsertService.insertHomes(owner.getId(), homes);
+
+        String query = "/v1/homes/search?heatingType=WOOD_HEATING&location=RURAL&builtBefore=1970-01-01"
+                + "&minValue=1050000&limit=2";
+        int found = 0;
+        String cursor = null;
+        do {
+            JsonNode page = getJson(query + (cursor == null ? "" : "&cursor=" + cursor));
+            for (JsonNode home : page.get("items")) {
+                assertEquals("WOOD_HEATING", home.get("heatingType").asText());
+                assertEquals("RURAL", home.get("location").asText());
+                assertTrue(home.get("dateBuilt").asText().compareTo("1970") < 0);
+                assertTrue(home.get("value").asInt() >= 1_050_000);
+                assertEquals(owner.getId().intValue(), home.get("userId").asInt());
+                found++;
+            }
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null);
+        //i % 6 == 1 gives wood heating in a rural location; i in 5..29 gives the value and date range
+        assertEquals(4, found);
+    }
+
+    @Test
+    void autoSearchWithoutFiltersReturnsAPage() throws Exception {
+        JsonNode page = getJson("/v1/autos/search?limit=5");
+        assertTrue(page.get("items").isArray());
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(get(url)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerSummaryTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private UserRepository userRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void summarizesInSqlWithoutLoadingEntities() throws Exception {
+        User owner = userRepository.save(named("Summary Owner"));
+        User empty = userRepository.save(named("No Properties"));
+        batchInsertService.insertHomes(owner.getId(), List.of(
+                new NewHome(LocalDate.of(1950, 1, 1), 100, Home.HeatingType.WOOD_HEATING, Home.Location.RURAL),
+                new NewHome(LocalDate.of(1990, 1, 1), 300, Home.HeatingType.WOOD_HEATING, Home.Location.URBAN),
+                new NewHome(LocalDate.of(2010, 1, 1), 200, Home.HeatingType.OIL_HEATING, Home.Location.URBAN)));
+        batchInsertService.insertAutos(owner.getId(), List.of(
+                new NewAuto(LocalDate.of(2015, 1, 1), 10), new NewAuto(LocalDate.of(2020, 1, 1), 30)));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        JsonNode summary = getJson("/v1/users/" + owner.getId() + "/summary");
+        assertEquals(0, statistics.getEntityLoadCount());
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        assertEquals(3, summary.at("/homes/count").asInt());
+        assertEquals(600, summary.at("/homes/total").asInt());
+        assertEquals(100, summary.at("/homes/min").asInt());
+        assertEquals(300, summary.at("/homes/max").asInt());
+        assertEquals(200.0, summary.at("/homes/average").asDouble());
+        assertEquals(2, summary.at("/homesByHeatingType/WOOD_HEATING/count").asInt());
+        assertEquals(0, summary.at("/homesByHeatingType/OTHER_HEATING/count").asInt());
+        assertEquals(500, summary.at("/homesByLocation/URBAN/total").asInt());
+        assertEquals(20.0, summary.at("/autos/average").asDouble());
+
+        JsonNode bulk = getJson("/v1/users/summary?ids=" + empty.getId() + ",999999," + owner.getId());
+        assertEquals(2, bulk.size());
+        assertEquals(empty.getId().intValue(), bulk.get(0).get("userId").asInt());
+        assertEquals(0, bulk.get(0).at("/homes/count").asInt());
+        assertTrue(bulk.get(0).at("/homes/average").isNull());
+        assertEquals(owner.getId().intValue(), bulk.get(1).get("userId").asInt());
+
+        mockMvc.perform(get("/v1/users/999999/summary")).andExpect(status().isNotFound());
+    }
+
+    private JsonNode getJson(String url) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(get(url)).andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,108 @@
+package org.example.spring2025demo3rest.controllers;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.WriteBehindService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MainControllerWriteBehindTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private MeterRegistry registry;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private WriteBehindService writeBehindService;
+
+    @Test
+    void acceptsCreatesAndWritesThemBehind() throws Exception {
+        User owner = userRepository.save(named("Write Behind Owner"));
+        String url = "/v1/users/" + owner.getId();
+        //Listing caches the empty list, which the writer has to evict
+        mockMvc.perform(get(url + "/homes")).andExpect(jsonPath("$.length()").value(0));
+
+        List<Integer> homeIds = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            homeIds.add(Integer.valueOf(mockMvc.perform(post(url + "/homes").param("async", "true")
+                            .param("dateBuilt", "1990-01-01").param("value", String.valueOf(100 + i))
+                            .param("heatingType", "OIL_HEATING").param("location", "RURAL"))
+                    .andExpect(status().isAccepted())
+                    .andReturn().getResponse().getContentAsString()));
+        }
+        Integer autoId = Integer.valueOf(mockMvc.perform(post(url + "/autos").param("async", "true")
+                        .param("dateBuilt", "2020-01-01").param("value", "5000"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString());
+        assertEquals(10, new HashSet<>(homeIds).size());
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!autoRepository.existsById(autoId.longValue()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        for (Integer id : homeIds) {
+            Home home = homeRepository.findById(id.longValue()).orElseThrow();
+            assertEquals(Home.HeatingType.OIL_HEATING, home.getHeatingType());
+            assertEquals(Home.Location.RURAL, home.getLocation());
+        }
+        assertTrue(autoRepository.existsById(autoId.longValue()));
+        mockMvc.perform(get(url + "/homes")).andExpect(jsonPath("$.length()").value(10));
+        assertTrue(registry.get("write.behind.written").counter().count() >= 11);
+        assertTrue(registry.get("write.behind.flush").timer().count() >= 1);
+
+        //Ids reserved for the queue never collide with the ones Hibernate hands out
+        mockMvc.perform(post(url + "/homes").param("dateBuilt", "1990-01-01").param("value", "1")
+                        .param("heatingType", "OIL_HEATING").param("location", "RURAL"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void listsAcceptedCreatesThatFailed() throws Exception {
+        //As if the owner had been deleted between the 202 and the flush
+        int goneOwner = 888_888;
+        Integer id = writeBehindService.enqueueAuto(goneOwner, new NewAuto(LocalDate.of(2020, 1, 1), 5000));
+        String url = "/v1/users/" + goneOwner + "/write-behind/failures";
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (writeBehindService.failures(goneOwner).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        mockMvc.perform(get(url))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(id))
+                .andExpect(jsonPath("$[0].type").value("auto"))
+                .andExpect(jsonPath("$[0].error").isNotEmpty());
+        assertTrue(registry.get("write.behind.failed").counter().count() >= 1);
+    }
+
+    @Test
+    void rejectsUnknownOwner() throws Exception {
+        mockMvc.perform(post("/v1/users/999999/autos").param("async", "true")
+                        .param("dateBuilt", "2020-01-01").param("value", "5000"))
+                .andExpect(status().isNotFound());
+    }
+}
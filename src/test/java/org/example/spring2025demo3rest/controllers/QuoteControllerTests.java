@@ -0,0 +1,69 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewAuto;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.withEmail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class QuoteControllerTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private BatchInsertService batchInsertService;
+
+    @Test
+    void requotesEveryHomeAndAuto() throws Exception {
+        User owner = userRepository.save(withEmail("Quoted", "quoted@example.com"));
+        List<NewHome> homes = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            homes.add(new NewHome(LocalDate.of(1950 + i % 70, 1, 1), 100_000 + i,
+                    Home.HeatingType.values()[i % 3], Home.Location.values()[i % 2]));
+        }
+        List<Integer> homeIds = batchInsertService.insertHomes(owner.getId(), homes);
+        batchInsertService.insertAutos(owner.getId(), List.of(new NewAuto(LocalDate.of(2020, 1, 1), 30_000)));
+
+        JsonNode job = objectMapper.readTree(mockMvc.perform(post("/v1/quotes/jobs"))
+                .andExpect(status().isAccepted()).andReturn().getResponse().getContentAsString());
+        String jobId = job.get("id").asText();
+        for (int attempt = 0; attempt < 100 && "RUNNING".equals(job.get("state").asText()); attempt++) {
+            Thread.sleep(50);
+            job = objectMapper.readTree(mockMvc.perform(get("/v1/quotes/jobs/" + jobId))
+                    .andExpect(status().isOk()).andReturn().getResponse().getContentAsString());
+        }
+        assertEquals("COMPLETED", job.get("state").asText());
+        assertEquals(job.get("total").asLong(), job.get("processed").asLong());
+
+        Home home = homeRepository.findById(homeIds.get(0).longValue()).orElseThrow();
+        assertNotNull(home.getPremium());
+    }
+
+    @Test
+    void unknownJobIsNotFound() throws Exception {
+        mockMvc.perform(get("/v1/quotes/jobs/nope")).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.spring2025demo3rest.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.example.spring2025demo3rest.services.BookStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//A database of its own, so the statistics cover exactly the rows written here
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-test;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "app.stats.reconcile-interval=0"})
+@AutoConfigureMockMvc
+class StatsControllerTests {
+
+    @Autowired private MockMvc mockMvc;
+    @Autowired private ObjectMapper objectMapper;
+    @Autowired private BookStats bookStats;
+    @Autowired private MeterRegistry registry;
+
+    @Test
+    void followsEveryWriteWithoutScanning() throws Exception {
+        long userId = createUser("Stats Owner");
+        int home = createHome(userId, 100_000, "OIL_HEATING", "URBAN");
+        createHome(userId, 200_000, "OIL_HEATING", "URBAN");
+        mockMvc.perform(post("/v1/users/" + userId + "/homes/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"dateBuilt\":\"1990-01-01\",\"value\":50000,\"heatingType\":\"WOOD_HEATING\",\"location\":\"RURAL\"}]"))
+                .andExpect(status().isOk());
+        int auto = createAuto(userId, 4_000);
+        createAuto(userId, 60_000);
+
+        JsonNode stats = stats();
+        assertEquals(3, stats.at("/homes/count").asLong());
+        assertEquals(350_000, stats.at("/homes/totalValue").asLong());
+        assertEquals(2, cell(stats, "OIL_HEATING", "URBAN").get("count").asLong());
+        assertEquals(300_000, cell(stats, "OIL_HEATING", "URBAN").get("totalValue").asLong());
+        assertEquals(2, stats.at("/autos/count").asLong());
+        assertEquals(1, stats.at("/autosByValue/0/count").asLong());
+        assertEquals(60_000, stats.at("/autosByValue/4/totalValue").asLong());
+        assertEquals(50_000, stats.at("/autosByValue/4/minValue").asInt());
+
+        mockMvc.perform(put("/v1/users/" + userId + "/homes/" + home).param("dateBuilt", "1980-01-01")
+                .param("value", "150000").param("heatingType", "OTHER_HEATING").param("location", "RURAL"))
+                .andExpect(status().isOk());
+        stats = stats();
+        assertEquals(1, cell(stats, "OIL_HEATING", "URBAN").get("count").asLong());
+        assertEquals(150_000, cell(stats, "OTHER_HEATING", "RURAL").get("totalValue").asLong());
+        assertMatchesTheDatabase(stats);
+
+        //Patches and deletes read the old row under a lock in their own transaction
+        mockMvc.perform(patch("/v1/users/" + userId + "/homes/" + home).param("location", "URBAN"))
+                .andExpect(status().isOk());
+        mockMvc.perform(patch("/v1/users/" + userId + "/autos/" + auto).param("value", "15000"))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/v1/users/" + userId + "/autos/" + auto)).andExpect(status().isOk());
+        stats = stats();
+        assertEquals(1, cell(stats, "OIL_HEATING", "URBAN").get("count").asLong());
+        assertEquals(150_000, cell(stats, "OTHER_HEATING", "URBAN").get("totalValue").asLong());
+        assertEquals(0, cell(stats, "OTHER_HEATING", "RURAL").get("count").asLong());
+        assertEquals(1, stats.at("/autos/count").asLong());
+        assertEquals(0, stats.at("/autosByValue/2/count").asLong());
+        assertMatchesTheDatabase(stats);
+
+        mockMvc.perform(delete("/v1/users/" + userId)).andExpect(status().isOk());
+        stats = stats();
+        assertEquals(0, stats.at("/homes/count").asLong());
+        assertEquals(0, stats.at("/autos/totalValue").asLong());
+        assertMatchesTheDatabase(stats);
+    }
+
+    /**
+     * Rebuilds the statistics from the tables and checks that nothing had drifted.
+     */
+    private void assertMatchesTheDatabase(JsonNode stats) throws Exception {
+        bookStats.reconcile();
+        assertEquals(0.0, registry.get("book.stats.drift").gauge().value());
+        JsonNode rebuilt = stats();
+        ((ObjectNode) rebuilt).remove("reconciledAt");
+        ((ObjectNode) stats).remove("reconciledAt");
+        assertEquals(rebuilt, stats);
+    }
+
+    private JsonNode stats() throws Exception {
+        return objectMapper.readTree(mockMvc.perform(get("/v1/stats"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+    }
+
+    private static JsonNode cell(JsonNode stats, String heatingType, String location) {
+        for (JsonNode cell : stats.get("homesByHeatingTypeAndLocation")) {
+            if (cell.get("heatingType").asText().equals(heatingType) && cell.get("location").asText().equals(location)) {
+                return cell;
+            }
+        }
+        throw new AssertionError("No cell for " + heatingType + " " + location);
+    }
+
+    private long createUser(String name) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(post("/v1/users").param("name", name)
+                        .param("email", name.replace(' ', '.') + "@example.com"))
+                .andReturn().getResponse().getContentAsString()).get("id").asLong();
+    }
+
+    private int createHome(long userId, int value, String heatingType, String location) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(post("/v1/users/" + userId + "/homes")
+                        .param("dateBuilt", "2000-01-01").param("value", String.valueOf(value))
+                        .param("heatingType", heatingType).param("location", location))
+                .andReturn().getResponse().getContentAsString()).get("id").asInt();
+    }
+
+    private int createAuto(long userId, int value) throws Exception {
+        return objectMapper.readTree(mockMvc.perform(post("/v1/users/" + userId + "/autos")
+                        .param("dateBuilt", "2020-01-01").param("value", String.valueOf(value)))
+                .andReturn().getResponse().getContentAsString()).get("id").asInt();
+    }
+}
@@ -0,0 +1,79 @@
+package org.example.spring2025demo3rest.dataaccess;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.NewHome;
+import org.example.spring2025demo3rest.pojos.QuoteJobStatus;
+import org.example.spring2025demo3rest.pojos.User;
+import org.example.spring2025demo3rest.services.BatchInsertService;
+import org.example.spring2025demo3rest.services.RequoteService;
+import org.example.spring2025demo3rest.services.WriteBehindService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//A database of its own with the Hibernate second-level and query caches switched on
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:second-level-cache-test;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true"})
+class SecondLevelCacheTests {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private BatchInsertService batchInsertService;
+    @Autowired private WriteBehindService writeBehindService;
+    @Autowired private RequoteService requoteService;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private MeterRegistry registry;
+
+    @Test
+    void servesRepeatedReadsFromTheCacheAndSeesWritesThatBypassHibernate() throws Exception {
+        User owner = userRepository.save(named("Second Level Owner"));
+        NewHome row = new NewHome(LocalDate.of(1990, 1, 1), 200_000, Home.HeatingType.WOOD_HEATING, Home.Location.URBAN);
+        Integer homeId = batchInsertService.insertHomes(owner.getId(), List.of(row, row)).get(0);
+        Long userId = owner.getId().longValue();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        assertEquals(2, homeRepository.getAllByUserId(userId).size());
+        statistics.clear();
+        assertEquals(2, homeRepository.getAllByUserId(userId).size());
+        assertEquals(1, statistics.getQueryCacheHitCount());
+        assertEquals(0, statistics.getPrepareStatementCount());
+        //The same hits reach the hibernate.* metrics
+        assertTrue(registry.get("hibernate.cache.query.requests").tag("result", "hit").functionCounter().count() >= 1);
+        homeRepository.findById(homeId.longValue());
+        assertTrue(registry.get("hibernate.second.level.cache.requests").tag("region", Home.class.getName())
+                .tag("result", "hit").functionCounter().count() >= 1);
+
+        //Write-behind inserts go straight through JDBC and must drop the cached query result
+        Integer queued = writeBehindService.enqueueHome(owner.getId(), row);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!homeRepository.existsById(queued.longValue()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(3, homeRepository.getAllByUserId(userId).size());
+
+        //So do re-quote updates for the cached entities
+        assertNull(homeRepository.findById(homeId.longValue()).orElseThrow().getPremium());
+        QuoteJobStatus job = requoteService.start().orElseThrow();
+        for (int attempt = 0; attempt < 100 && "RUNNING".equals(job.state()); attempt++) {
+            Thread.sleep(50);
+            job = requoteService.status(job.id()).orElseThrow();
+        }
+        assertEquals("COMPLETED", job.state());
+        assertNotNull(homeRepository.findById(homeId.longValue()).orElseThrow().getPremium());
+    }
+}
@@ -0,0 +1,147 @@
+package org.example.spring2025demo3rest.loadtest;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.example.spring2025demo3rest.pojos.Auto;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Fills an empty database with generated users, homes and autos at startup, for load tests.
+ * Does nothing unless app.seed.users is set. The data only depends on app.seed.random-seed,
+ * so two runs with the same settings see the same rows.
+ * Runs before the other startup runners, which load their in-memory state from the tables.
+ * Kept with the tests so it never ships; the test classpath puts it under the application's component scan.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DataSeeder implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(DataSeeder.class);
+
+    @PersistenceContext private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Number of users to create, 0 to skip seeding.
+     */
+    @Value("${app.seed.users:0}")
+    private int users;
+
+    /**
+     * Each user gets between 0 and this many homes, uniformly.
+     */
+    @Value("${app.seed.max-homes-per-user:3}")
+    private int maxHomesPerUser;
+
+    /**
+     * Each user gets between 0 and this many autos, uniformly.
+     */
+    @Value("${app.seed.max-autos-per-user:2}")
+    private int maxAutosPerUser;
+
+    @Value("${app.seed.random-seed:42}")
+    private long randomSeed;
+
+    /**
+     * Users written per transaction, together with their homes and autos.
+     */
+    @Value("${app.batch.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Creates the seeder.
+     * @param transactionManager used for one transaction per chunk of users
+     */
+    public DataSeeder(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Seeds the database if app.seed.users is set and the users table is empty.
+     * @param args the application arguments, unused
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (users <= 0) {
+            return;
+        }
+        Long existing = transactionTemplate.execute(status ->
+                entityManager.createQuery("select count(u) from User u", Long.class).getSingleResult());
+        if (existing != null && existing > 0) {
+            log.info("Skipping seed, {} users already present", existing);
+            return;
+        }
+        long start = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(randomSeed);
+        int[] children = new int[1];
+        for (int from = 0; from < users; from += chunkSize) {
+            int to = Math.min(users, from + chunkSize);
+            int first = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = first; i < to; i++) {
+                    children[0] += seedUser(i, random);
+                }
+            });
+        }
+        log.info("Seeded {} users with {} homes and autos in {} ms",
+                users, children[0], (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Persists one user with a random number of homes and autos.
+     * Everything is flushed as JDBC batches when the chunk's transaction commits.
+     * @param n the sequence number of the user, used in its name and email
+     * @param random the generator shared by the whole run
+     * @return the number of homes and autos created
+     */
+    private int seedUser(int n, SplittableRandom random) {
+        User user = new User();
+        user.setName("User " + n);
+        user.setEmail("user" + n + "@example.com");
+        entityManager.persist(user);
+
+        int homes = random.nextInt(maxHomesPerUser + 1);
+        for (int i = 0; i < homes; i++) {
+            Home home = new Home();
+            home.setUser(user);
+            home.setDateBuilt(randomDate(random));
+            home.setValue(50_000 + random.nextInt(950_000));
+            home.setHeatingType(Home.HeatingType.values()[random.nextInt(Home.HeatingType.values().length)]);
+            home.setLocation(Home.Location.values()[random.nextInt(Home.Location.values().length)]);
+            entityManager.persist(home);
+        }
+        int autos = random.nextInt(maxAutosPerUser + 1);
+        for (int i = 0; i < autos; i++) {
+            Auto auto = new Auto();
+            auto.setUser(user);
+            auto.setDateBuilt(randomDate(random));
+            auto.setValue(1_000 + random.nextInt(99_000));
+            entityManager.persist(auto);
+        }
+        return homes + autos;
+    }
+
+    /**
+     * Picks a build date between 1950 and 2024.
+     * @param random the generator
+     * @return the date
+     */
+    private static LocalDate randomDate(SplittableRandom random) {
+        return LocalDate.ofEpochDay(LocalDate.of(1950, 1, 1).toEpochDay() + random.nextInt(75 * 365));
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.spring2025demo3rest.loadtest;
+
+import org.example.spring2025demo3rest.dataaccess.AutoRepository;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//Own database, so the seeded rows do not show up in the other test classes
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:seed-test;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "app.seed.users=120", "app.seed.max-homes-per-user=4", "app.seed.max-autos-per-user=2"})
+class DataSeederTests {
+
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+    @Autowired private AutoRepository autoRepository;
+    @Autowired private DataSeeder dataSeeder;
+
+    @Test
+    void seedsUsersWithASpreadOfHomesAndAutos() {
+        assertEquals(120, userRepository.count());
+        long homes = homeRepository.count();
+        long autos = autoRepository.count();
+        assertTrue(homes > 0 && homes <= 120 * 4);
+        assertTrue(autos > 0 && autos <= 120 * 2);
+
+        //A non-empty database is left alone
+        dataSeeder.run(null);
+        assertEquals(120, userRepository.count());
+        assertEquals(homes, homeRepository.count());
+    }
+}
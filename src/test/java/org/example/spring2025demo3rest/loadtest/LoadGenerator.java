@@ -0,0 +1,596 @@
+package org.example.spring2025demo3rest.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.example.spring2025demo3rest.Spring2025Demo3RestApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drives every /v1 endpoint with a weighted mix of requests and reports throughput and latency percentiles.
+ * <p>
+ * Without a baseUrl it boots the application on a random port with the test and loadtest profiles,
+ * which seed an in-memory H2 database (see application-loadtest.properties), so a run is reproducible
+ * on any box. Arguments are key=value pairs:
+ * <ul>
+ *     <li>model: closed (concurrency workers send back to back) or open (requests start at a fixed rate)</li>
+ *     <li>concurrency: closed-model workers, or the open-model cap on requests in flight (default 32)</li>
+ *     <li>rate: open-model requests per second (default 500)</li>
+ *     <li>duration, warmup: measured and unmeasured seconds (default 30 and 5)</li>
+ *     <li>users, homes, autos: seeded users and the maximum homes and autos per user (default 10000, 3, 2)</li>
+ *     <li>virtualThreads: serve requests on virtual threads, true or false (default false)</li>
+ *     <li>baseUrl: an already running server to target instead, e.g. http://localhost:8080</li>
+ * </ul>
+ * Open-model latencies are measured from the scheduled start, so a stalled server is not hidden
+ * by the generator slowing down with it.
+ * <p>
+ * Polls of job status (quote, import and bulk delete jobs) are left out of the mix: they only read an
+ * in-memory map, and the jobs themselves are started at a low rate.
+ * <p>
+ * Run with: mvn -Ploadtest verify -DskipTests -Dload.args="model=open rate=1000 duration=60"
+ */
+public class LoadGenerator {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String V1 = "/v1";
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final Map<String, Stats> stats = new LinkedHashMap<>();
+    private final List<Op> mix = new ArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private double totalWeight;
+
+    private List<Integer> userIds;
+    private List<String> emails;
+    private List<int[]> homes;
+    private List<int[]> autos;
+    private String rates;
+    private final ConcurrentLinkedQueue<Integer> createdUsers = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<int[]> createdHomes = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<int[]> createdAutos = new ConcurrentLinkedQueue<>();
+
+    /**
+     * One kind of request in the mix.
+     * @param name the label in the report
+     * @param weight the relative frequency
+     * @param request builds a request, or returns null when there is nothing to send yet
+     * @param onSuccess consumes the body of a 2xx response, may be null
+     */
+    private record Op(String name, double weight, Function<ThreadLocalRandom, HttpRequest> request,
+                      ResponseHandler onSuccess) {
+    }
+
+    /**
+     * Consumes the body of a successful response.
+     */
+    @FunctionalInterface
+    private interface ResponseHandler {
+        /**
+         * @param body the response body
+         * @throws IOException if the body cannot be parsed
+         */
+        void accept(String body) throws IOException;
+    }
+
+    /**
+     * Latency histogram and outcome counts for one request kind.
+     */
+    private static final class Stats {
+        private final Histogram latency = new ConcurrentHistogram(TimeUnit.MINUTES.toMicros(1), 3);
+        private final AtomicLong clientErrors = new AtomicLong();
+        private final AtomicLong serverErrors = new AtomicLong();
+
+        /**
+         * Clears everything recorded so far, at the end of the warmup.
+         */
+        void reset() {
+            latency.reset();
+            clientErrors.set(0);
+            serverErrors.set(0);
+        }
+    }
+
+    /**
+     * Creates a generator for a running server.
+     * @param baseUrl scheme, host and port of the server
+     */
+    LoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    /**
+     * Parses the arguments, starts the embedded server if needed and runs the load test.
+     * @param args key=value pairs, see the class comment
+     * @throws Exception if the server cannot be reached
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        String model = options.getOrDefault("model", "closed");
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "500"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.get("baseUrl");
+        if (baseUrl == null) {
+            context = new SpringApplicationBuilder(Spring2025Demo3RestApplication.class)
+                    .profiles("test", "loadtest")
+                    .run("--server.port=0",
+                            "--app.seed.users=" + options.getOrDefault("users", "10000"),
+                            "--app.seed.max-homes-per-user=" + options.getOrDefault("homes", "3"),
+                            "--app.seed.max-autos-per-user=" + options.getOrDefault("autos", "2"),
+                            "--spring.threads.virtual.enabled=" + options.getOrDefault("virtualThreads", "false"));
+            baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(baseUrl);
+            generator.discover();
+            generator.defineMix();
+            System.out.printf("Load test against %s: %s model, concurrency %d%s, %ds warmup, %ds measured%n",
+                    baseUrl, model, concurrency, model.equals("open") ? ", " + rate + " req/s" : "", warmup, duration);
+            generator.run(model, concurrency, rate, warmup);
+            generator.stats.values().forEach(Stats::reset);
+            generator.dropped.set(0);
+            long start = System.nanoTime();
+            generator.run(model, concurrency, rate, duration);
+            generator.report((System.nanoTime() - start) / 1e9);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    /**
+     * Reads the ids the mix picks from: users and their emails by cursor pages, homes and autos through the search endpoints.
+     * @throws Exception if the server does not answer
+     */
+    void discover() throws Exception {
+        userIds = new ArrayList<>();
+        emails = new ArrayList<>();
+        String cursor = null;
+        do {
+            JsonNode page = getJson(V1 + "/users?limit=1000" + (cursor == null ? "" : "&cursor=" + cursor));
+            page.get("items").forEach(user -> {
+                userIds.add(user.get("id").asInt());
+                emails.add(user.get("email").asText());
+            });
+            cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+        } while (cursor != null && userIds.size() < 100_000);
+        if (userIds.isEmpty()) {
+            throw new IllegalStateException("No users to drive load with, seed the database first");
+        }
+        homes = owned(getJson(V1 + "/homes/search?limit=1000"));
+        autos = owned(getJson(V1 + "/autos/search?limit=1000"));
+        rates = fetch(V1 + "/quotes/rates");
+    }
+
+    /**
+     * Defines the request mix, weighted towards reads as in normal traffic.
+     */
+    void defineMix() {
+        // Reads
+        add("GET /users/{id}", 20, r -> get(V1 + "/users/" + anyUser(r)));
+        add("GET /users/{id}/homes", 12, r -> get(V1 + "/users/" + anyUser(r) + "/homes"));
+        add("GET /users/{id}/autos", 8, r -> get(V1 + "/users/" + anyUser(r) + "/autos"));
+        add("GET /users?limit", 4, r -> get(V1 + "/users?limit=100"));
+        add("GET /users/{id}/homes?limit", 2, r -> get(V1 + "/users/" + anyUser(r) + "/homes?limit=10"));
+        add("GET /users/{id}/autos?limit", 2, r -> get(V1 + "/users/" + anyUser(r) + "/autos?limit=10"));
+        add("GET /users/{id}/homes ndjson", 1, r -> ndjson(V1 + "/users/" + anyUser(r) + "/homes"));
+        add("GET /users/{id}/autos ndjson", 1, r -> ndjson(V1 + "/users/" + anyUser(r) + "/autos"));
+        add("GET /users", 0.2, r -> get(V1 + "/users"));
+        add("GET /users ndjson", 0.2, r -> ndjson(V1 + "/users"));
+        add("GET /users/{id}/summary", 5, r -> get(V1 + "/users/" + anyUser(r) + "/summary"));
+        add("GET /users/summary?ids", 2, r -> get(V1 + "/users/summary?ids=" + anyUsers(r, 20)));
+        add("GET /homes/search", 4, r -> get(V1 + "/homes/search?limit=50&location="
+                + (r.nextBoolean() ? "URBAN" : "RURAL") + "&minValue=" + r.nextInt(500_000)));
+        add("GET /autos/search", 3, r -> get(V1 + "/autos/search?limit=50&builtFrom="
+                + LocalDate.of(1950 + r.nextInt(70), 1, 1)));
+        add("GET /users/{id}?expand", 3, r -> get(V1 + "/users/" + anyUser(r) + "?expand=homes,autos"));
+        add("GET /users?ids", 2, r -> get(V1 + "/users?ids=" + anyUsers(r, 20) + "&expand=homes"));
+        add("GET /users/by-email", 2, r -> get(V1 + "/users/by-email?email="
+                + emails.get(r.nextInt(emails.size()))));
+        add("GET /homes?ids", 1, r -> get(V1 + "/homes?ids=" + anyOf(r, homes, 20)));
+        add("GET /autos?ids", 1, r -> get(V1 + "/autos?ids=" + anyOf(r, autos, 20)));
+        add("GET /quotes/rates", 1, r -> get(V1 + "/quotes/rates"));
+        add("GET /stats", 1, r -> get(V1 + "/stats"));
+        add("GET /analytics/homes/percentiles", 0.5, r -> get(V1 + "/analytics/homes/percentiles?location="
+                + (r.nextBoolean() ? "URBAN" : "RURAL")));
+        add("GET /analytics/homes/histogram", 0.25, r -> get(V1 + "/analytics/homes/histogram?width=50000"));
+        add("GET /analytics/homes/groups", 0.25, r -> get(V1 + "/analytics/homes/groups?by=decade"));
+        add("GET /analytics/autos/percentiles", 0.25, r -> get(V1 + "/analytics/autos/percentiles"));
+        add("GET /analytics/autos/histogram", 0.1, r -> get(V1 + "/analytics/autos/histogram?width=10000"));
+        add("GET /analytics/autos/groups", 0.1, r -> get(V1 + "/analytics/autos/groups"));
+        add("GET /export", 0.01, r -> get(V1 + "/export"));
+        add("GET /export?format=csv", 0.01, r -> request(V1 + "/export?format=csv")
+                .header("Accept-Encoding", "gzip").GET().build());
+
+        // Writes
+        add("POST /users", 3, r -> post(V1 + "/users?name=Load&email=load" + r.nextInt(1_000_000) + "@example.com"),
+                body -> createdUsers.add(JSON.readTree(body).get("id").asInt()));
+        add("POST /users/batch", 0.5, r -> postJson(V1 + "/users/batch", newUsers(r, 20)),
+                body -> JSON.readTree(body).forEach(id -> createdUsers.add(id.asInt())));
+        add("PUT /users/{id}", 2, r -> put(V1 + "/users/" + anyUser(r) + "?name=Updated&email=updated"
+                + r.nextInt(1_000_000) + "@example.com"));
+        add("PATCH /users/{id}", 1, r -> patch(V1 + "/users/" + anyUser(r) + "?name=Patched"));
+        add("POST /users/{id}/homes", 3, r -> post(V1 + "/users/" + anyUser(r) + "/homes?" + homeParams(r)),
+                body -> {
+            JsonNode home = JSON.readTree(body);
+            if (!home.isNull() && home.has("id")) {
+                createdHomes.add(new int[] {home.get("id").asInt(), home.at("/user/id").asInt()});
+            }
+        });
+        add("POST /users/{id}/autos", 2, r -> post(V1 + "/users/" + anyUser(r) + "/autos?" + autoParams(r)),
+                body -> {
+                    JsonNode auto = JSON.readTree(body);
+                    if (!auto.isNull() && auto.has("id")) {
+                        createdAutos.add(new int[] {auto.get("id").asInt(), auto.at("/user/id").asInt()});
+                    }
+                });
+        add("POST /users/{id}/homes?async", 2, r -> post(V1 + "/users/" + anyUser(r) + "/homes?async=true&"
+                + homeParams(r)));
+        add("POST /users/{id}/autos?async", 1, r -> post(V1 + "/users/" + anyUser(r) + "/autos?async=true&"
+                + autoParams(r)));
+        add("POST /users/{id}/homes/batch", 0.5, r -> postJson(V1 + "/users/" + anyUser(r) + "/homes/batch",
+                "[" + String.join(",", Collections.nCopies(10,
+                        "{\"dateBuilt\":\"1990-01-01\",\"value\":250000,\"heatingType\":\"OIL_HEATING\",\"location\":\"URBAN\"}")) + "]"));
+        add("POST /users/{id}/autos/batch", 0.5, r -> postJson(V1 + "/users/" + anyUser(r) + "/autos/batch",
+                "[" + String.join(",", Collections.nCopies(10,
+                        "{\"dateBuilt\":\"2015-01-01\",\"value\":20000}")) + "]"));
+        add("PUT /users/{id}/homes/{id}", 2, r -> {
+            int[] home = homes.get(r.nextInt(homes.size()));
+            return put(V1 + "/users/" + home[1] + "/homes/" + home[0] + "?" + homeParams(r));
+        });
+        add("PUT /users/{id}/autos/{id}", 2, r -> {
+            int[] auto = autos.get(r.nextInt(autos.size()));
+            return put(V1 + "/users/" + auto[1] + "/autos/" + auto[0] + "?" + autoParams(r));
+        });
+        add("PATCH /users/{id}/homes/{id}", 2, r -> {
+            int[] home = homes.get(r.nextInt(homes.size()));
+            return patch(V1 + "/users/" + home[1] + "/homes/" + home[0] + "?value=" + (50_000 + r.nextInt(950_000)));
+        });
+        add("PATCH /users/{id}/autos/{id}", 1, r -> {
+            int[] auto = autos.get(r.nextInt(autos.size()));
+            return patch(V1 + "/users/" + auto[1] + "/autos/" + auto[0] + "?value=" + (1_000 + r.nextInt(99_000)));
+        });
+        add("DELETE /users/{id}/homes/{id}", 1, r -> {
+            int[] home = createdHomes.poll();
+            return home == null ? null : delete(V1 + "/users/" + home[1] + "/homes/" + home[0]);
+        });
+        add("DELETE /users/{id}/autos/{id}", 1, r -> {
+            int[] auto = createdAutos.poll();
+            return auto == null ? null : delete(V1 + "/users/" + auto[1] + "/autos/" + auto[0]);
+        });
+        add("DELETE /users/{id}", 1, r -> {
+            Integer userId = createdUsers.poll();
+            return userId == null ? null : delete(V1 + "/users/" + userId);
+        });
+        add("DELETE /users/batch", 0.2, r -> deleteCreatedUsers(V1 + "/users/batch", 10));
+        add("DELETE /users/batch?async", 0.1, r -> deleteCreatedUsers(V1 + "/users/batch?async=true", 10));
+
+        // Admin
+        add("PUT /quotes/rates", 0.05, r -> putJson(V1 + "/quotes/rates", rates));
+        add("POST /quotes/jobs", 0.01, r -> post(V1 + "/quotes/jobs"));
+        add("POST /imports csv", 0.05, r -> request(V1 + "/imports").header("Content-Type", "text/csv")
+                .POST(HttpRequest.BodyPublishers.ofString(importCsv(r, 50))).build());
+    }
+
+    /**
+     * Sends requests for the given number of seconds.
+     * @param model closed or open
+     * @param concurrency closed-model workers, or the open-model in-flight cap
+     * @param rate open-model requests per second
+     * @param seconds how long to run
+     * @throws InterruptedException if interrupted while waiting for requests to finish
+     */
+    void run(String model, int concurrency, int rate, int seconds) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (model.equals("open")) {
+                Semaphore inFlight = new Semaphore(concurrency);
+                long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+                for (long next = System.nanoTime(); next < end; next += interval) {
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                    if (!inFlight.tryAcquire()) {
+                        dropped.incrementAndGet();
+                        continue;
+                    }
+                    long scheduled = next;
+                    workers.submit(() -> {
+                        try {
+                            send(scheduled);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                }
+            } else {
+                for (int i = 0; i < concurrency; i++) {
+                    workers.submit(() -> {
+                        while (System.nanoTime() < end) {
+                            send(System.nanoTime());
+                        }
+                    });
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks one request from the mix, sends it and records the outcome.
+     * @param start the time the request was due, latency is measured from here
+     */
+    private void send(long start) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Op op = pick(random);
+        HttpRequest request = op.request().apply(random);
+        if (request == null) {
+            return;
+        }
+        Stats result = stats.get(op.name());
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            result.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start),
+                    result.latency.getHighestTrackableValue()));
+            if (response.statusCode() >= 500) {
+                result.serverErrors.incrementAndGet();
+            } else if (response.statusCode() >= 400) {
+                result.clientErrors.incrementAndGet();
+            } else if (op.onSuccess() != null) {
+                op.onSuccess().accept(response.body());
+            }
+        } catch (IOException e) {
+            result.serverErrors.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Prints one line per request kind and a total line.
+     * @param seconds the measured wall-clock time
+     */
+    void report(double seconds) {
+        Histogram all = new Histogram(TimeUnit.MINUTES.toMicros(1), 3);
+        long clientErrors = 0;
+        long serverErrors = 0;
+        String format = "%-32s %9s %9s %7s %7s %9s %9s %9s %9s%n";
+        System.out.printf(format, "request", "count", "req/s", "4xx", "5xx", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map.Entry<String, Stats> entry : stats.entrySet()) {
+            Stats s = entry.getValue();
+            all.add(s.latency);
+            clientErrors += s.clientErrors.get();
+            serverErrors += s.serverErrors.get();
+            print(format, entry.getKey(), s.latency, s.clientErrors.get(), s.serverErrors.get(), seconds);
+        }
+        print(format, "TOTAL", all, clientErrors, serverErrors, seconds);
+        if (dropped.get() > 0) {
+            System.out.printf("%d scheduled requests were skipped because the in-flight cap was reached%n",
+                    dropped.get());
+        }
+    }
+
+    /**
+     * Prints one report line.
+     */
+    private static void print(String format, String name, Histogram latency, long clientErrors, long serverErrors,
+                              double seconds) {
+        System.out.printf(format, name, latency.getTotalCount(), String.format("%.1f", latency.getTotalCount() / seconds),
+                clientErrors, serverErrors, millis(latency, 50), millis(latency, 95), millis(latency, 99),
+                String.format("%.2f", latency.getMaxValue() / 1000.0));
+    }
+
+    /**
+     * Formats a latency percentile in milliseconds.
+     */
+    private static String millis(Histogram latency, double percentile) {
+        return String.format("%.2f", latency.getValueAtPercentile(percentile) / 1000.0);
+    }
+
+    /**
+     * Adds a request kind whose response body is not needed.
+     */
+    private void add(String name, double weight, Function<ThreadLocalRandom, HttpRequest> request) {
+        add(name, weight, request, null);
+    }
+
+    /**
+     * Adds a request kind to the mix.
+     */
+    private void add(String name, double weight, Function<ThreadLocalRandom, HttpRequest> request,
+                     ResponseHandler onSuccess) {
+        mix.add(new Op(name, weight, request, onSuccess));
+        stats.put(name, new Stats());
+        totalWeight += weight;
+    }
+
+    /**
+     * Picks a request kind with probability proportional to its weight.
+     */
+    private Op pick(ThreadLocalRandom random) {
+        double x = random.nextDouble(totalWeight);
+        for (Op op : mix) {
+            x -= op.weight();
+            if (x < 0) {
+                return op;
+            }
+        }
+        return mix.getLast();
+    }
+
+    /* *
+     *  RANDOM REQUEST DATA
+     * */
+
+    private int anyUser(ThreadLocalRandom random) {
+        return userIds.get(random.nextInt(userIds.size()));
+    }
+
+    private String anyUsers(ThreadLocalRandom random, int count) {
+        return random.ints(count, 0, userIds.size()).mapToObj(i -> userIds.get(i).toString())
+                .collect(Collectors.joining(","));
+    }
+
+    private static String anyOf(ThreadLocalRandom random, List<int[]> owned, int count) {
+        return random.ints(count, 0, owned.size()).mapToObj(i -> String.valueOf(owned.get(i)[0]))
+                .collect(Collectors.joining(","));
+    }
+
+    private static String homeParams(ThreadLocalRandom random) {
+        return "dateBuilt=" + LocalDate.of(1950 + random.nextInt(70), 1 + random.nextInt(12), 1)
+                + "&value=" + (50_000 + random.nextInt(950_000))
+                + "&heatingType=" + (random.nextBoolean() ? "OIL_HEATING" : "WOOD_HEATING")
+                + "&location=" + (random.nextBoolean() ? "URBAN" : "RURAL");
+    }
+
+    private static String autoParams(ThreadLocalRandom random) {
+        return "dateBuilt=" + LocalDate.of(1990 + random.nextInt(35), 1 + random.nextInt(12), 1)
+                + "&value=" + (1_000 + random.nextInt(99_000));
+    }
+
+    private static String newUsers(ThreadLocalRandom random, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"name\":\"Batch\",\"email\":\"batch")
+                    .append(random.nextInt(1_000_000)).append("@example.com\"}");
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Builds a CSV upload of homes and autos for random seeded users.
+     */
+    private String importCsv(ThreadLocalRandom random, int rows) {
+        StringBuilder csv = new StringBuilder("type,userId,email,dateBuilt,value,heatingType,location\n");
+        for (int i = 0; i < rows; i++) {
+            if (random.nextBoolean()) {
+                csv.append("home,").append(anyUser(random)).append(",,1990-01-01,").append(50_000 + random.nextInt(950_000))
+                        .append(",OIL_HEATING,URBAN\n");
+            } else {
+                csv.append("auto,").append(anyUser(random)).append(",,2015-01-01,").append(1_000 + random.nextInt(99_000))
+                        .append(",,\n");
+            }
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Collects [id, userId] pairs from a page of search results.
+     */
+    private static List<int[]> owned(JsonNode page) {
+        List<int[]> ids = new ArrayList<>();
+        page.get("items").forEach(row -> ids.add(new int[] {row.get("id").asInt(), row.get("userId").asInt()}));
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("No homes or autos to update, seed the database first");
+        }
+        return ids;
+    }
+
+    /**
+     * Sends a GET outside of the measured mix and parses the JSON body.
+     */
+    private JsonNode getJson(String path) throws Exception {
+        return JSON.readTree(fetch(path));
+    }
+
+    /**
+     * Sends a GET outside of the measured mix.
+     */
+    private String fetch(String path) throws Exception {
+        return client.send(get(path), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /* *
+     *  REQUEST BUILDERS
+     * */
+
+    private HttpRequest get(String path) {
+        return request(path).header("Accept", "application/json").GET().build();
+    }
+
+    private HttpRequest ndjson(String path) {
+        return request(path).header("Accept", "application/x-ndjson").GET().build();
+    }
+
+    private HttpRequest post(String path) {
+        return request(path).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest postJson(String path, String json) {
+        return request(path).header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest put(String path) {
+        return request(path).PUT(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest putJson(String path, String json) {
+        return request(path).header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(json)).build();
+    }
+
+    private HttpRequest patch(String path) {
+        return request(path).method("PATCH", HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest delete(String path) {
+        return request(path).DELETE().build();
+    }
+
+    /**
+     * Deletes up to count of the users created by the mix in one bulk request, or returns null if there are none.
+     */
+    private HttpRequest deleteCreatedUsers(String path, int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        for (Integer id; ids.size() < count && (id = createdUsers.poll()) != null; ) {
+            ids.add(id);
+        }
+        return ids.isEmpty() ? null : request(path).header("Content-Type", "application/json")
+                .method("DELETE", HttpRequest.BodyPublishers.ofString(ids.toString())).build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30));
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.spring2025demo3rest.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.example.spring2025demo3rest.dataaccess.HomeRepository;
+import org.example.spring2025demo3rest.dataaccess.UserRepository;
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.example.spring2025demo3rest.TestUsers.named;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//A database of its own, so no other test writes while the scans run
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:book-stats-test;MODE=MariaDB;DB_CLOSE_DELAY=-1;NON_KEYWORDS=USER,VALUE",
+        "app.stats.reconcile-interval=0"})
+class BookStatsTests {
+
+    @Autowired private DataSource dataSource;
+    @Autowired private UserRepository userRepository;
+    @Autowired private HomeRepository homeRepository;
+
+    private final AtomicInteger statements = new AtomicInteger();
+    private volatile Runnable duringScan;
+
+    @Test
+    void countsAWriteRacingTheSnapshotTwiceUntilTheNextScan() {
+        BookStats stats = new BookStats(new ScanHook(dataSource), new int[]{5000}, 100, Duration.ZERO,
+                new SimpleMeterRegistry());
+        stats.reconcile();
+        long before = homes(stats);
+
+        //Committed before the next snapshot, but applied only once the scan is under way
+        User owner = userRepository.save(named("Racing Owner"));
+        Home home = new Home();
+        home.setUser(owner);
+        home.setDateBuilt(LocalDate.of(1990, 1, 1));
+        home.setValue(100_000);
+        home.setHeatingType(Home.HeatingType.OIL_HEATING);
+        home.setLocation(Home.Location.URBAN);
+        homeRepository.save(home);
+        duringScan = () -> stats.homeAdded(Home.HeatingType.OIL_HEATING, Home.Location.URBAN, 100_000);
+        statements.set(0);
+        stats.reconcile();
+        assertEquals(before + 2, homes(stats));
+
+        duringScan = null;
+        stats.reconcile();
+        assertEquals(before + 1, homes(stats));
+    }
+
+    private static long homes(BookStats stats) {
+        return stats.snapshot().orElseThrow().homes().count();
+    }
+
+    /**
+     * Runs duringScan when the second statement of a scan is created: the home scan, after the
+     * snapshot has been pinned and the journal opened.
+     */
+    private class ScanHook extends DelegatingDataSource {
+
+        ScanHook(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Runnable hook = duringScan;
+                        if (method.getName().equals("createStatement") && statements.incrementAndGet() == 2
+                                && hook != null) {
+                            hook.run();
+                        }
+                        try {
+                            return method.invoke(connection, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                    });
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.example.spring2025demo3rest.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JobHistoryTests {
+
+    @Test
+    void dropsTheOldestFinishedJobsEvenBehindARunningOne() {
+        JobHistory<AtomicBoolean> history = new JobHistory<>(2, AtomicBoolean::get);
+        //The eldest job never finishes
+        history.add("stuck", new AtomicBoolean(false));
+        for (int i = 0; i < 10; i++) {
+            history.add("job-" + i, new AtomicBoolean(true));
+        }
+        assertEquals(3, history.all().size());
+        assertTrue(history.get("stuck").isPresent());
+        assertTrue(history.get("job-0").isEmpty());
+        assertTrue(history.get("job-8").isPresent());
+        assertTrue(history.get("job-9").isPresent());
+    }
+
+    @Test
+    void keepsJobsThatFinishAfterTheyWereAdded() {
+        JobHistory<AtomicBoolean> history = new JobHistory<>(1, AtomicBoolean::get);
+        AtomicBoolean first = new AtomicBoolean(false);
+        history.add("first", first);
+        history.add("second", new AtomicBoolean(false));
+        first.set(true);
+        history.add("third", new AtomicBoolean(true));
+        //first and third are both finished now, only the most recent is kept
+        assertTrue(history.get("first").isEmpty());
+        assertEquals(2, history.all().size());
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.spring2025demo3rest.services;
+
+import org.example.spring2025demo3rest.pojos.Home;
+import org.example.spring2025demo3rest.pojos.RateSpec;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateTablesTests {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 1);
+
+    private final RateTables tables = new RateTables(new RateSpec(2.0, 10, 0.05,
+            Map.of(Home.HeatingType.WOOD_HEATING, 1.5), Map.of(Home.Location.RURAL, 2.0),
+            10.0, 5, 0.1));
+
+    @Test
+    void pricesHomesByValueAgeHeatingAndLocation() {
+        //200000 * 2/1000 = 400, 30 years old is 20 past the free years: * 2.0, wood * 1.5, rural * 2.0
+        assertEquals(2400, tables.homePremium(200_000, LocalDate.of(1995, 1, 1),
+                Home.HeatingType.WOOD_HEATING, Home.Location.RURAL, TODAY));
+        //Missing factors and unknown fields count as 1.0
+        assertEquals(400, tables.homePremium(200_000, null, Home.HeatingType.OIL_HEATING, null, TODAY));
+    }
+
+    @Test
+    void pricesAutosByValueAndAge() {
+        assertEquals(200, tables.autoPremium(20_000, LocalDate.of(2024, 6, 1), TODAY));
+        //15 years old is 10 past the free years: * 2.0
+        assertEquals(400, tables.autoPremium(20_000, LocalDate.of(2010, 1, 1), TODAY));
+        //Ages are capped, so very old or future dates still price
+        tables.autoPremium(20_000, LocalDate.of(1700, 1, 1), TODAY);
+        assertEquals(200, tables.autoPremium(20_000, LocalDate.of(2030, 1, 1), TODAY));
+    }
+
+    @Test
+    void rejectsNegativeRates() {
+        assertThrows(IllegalArgumentException.class, () -> new RateTables(new RateSpec(-1, 0, 0, null, null, 1, 0, 0)));
+    }
+}